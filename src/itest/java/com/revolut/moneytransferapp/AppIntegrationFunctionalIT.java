@@ -9,10 +9,19 @@ import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
 import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AppIntegrationFunctionalIT {
 
@@ -52,6 +61,30 @@ public class AppIntegrationFunctionalIT {
         assertEquals(expectedResponse, resp.getResponseBody());
     }
 
+    @Test
+    public void getAccounts__givenPageParameters__returnsPageAndCursorOfTheNextOne(){
+        // given / when
+        var firstPage = req.makeReq("/accounts?limit=2", "GET");
+        var lastPage = req.makeReq("/accounts?after=1&limit=2", "GET");
+        // then
+        assertEquals(200, firstPage.getResponseCode());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[{\"balance\":0.01,\"id\":0},{\"balance\":1.01,\"id\":1}],\"next\":1}",
+                withoutTimestamps(firstPage.getResponseBody()));
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[{\"balance\":2.01,\"id\":2}]}", lastPage.getResponseBody());
+    }
+
+    @Test
+    public void getTransfers__givenInvalidPageParameters__returns422(){
+        // given / when
+        var response1 = req.makeReq("/transfers?limit=0", "GET");
+        var response2 = req.makeReq("/transfers?after=abc", "GET");
+        // then
+        var expectedResponse = "{\"status\":\"ERROR\",\"message\":\"Incorrect query parameters\"}";
+        assertEquals(422, response1.getResponseCode());
+        assertEquals(expectedResponse, response1.getResponseBody());
+        assertEquals(422, response2.getResponseCode());
+    }
+
     @Test
     public void getAccount__givenExistingAccountId__returnsCorrespondingAccount(){
         // given
@@ -64,6 +97,24 @@ public class AppIntegrationFunctionalIT {
         assertEquals(expectedResponse, resp.getResponseBody());
     }
 
+    @Test
+    public void getAccount__givenCurrentETag__returns304UntilTheAccountChanges(){
+        // given
+        var etag = req.makeReq("/accounts/1", "GET").getHeaders().get("ETag").get(0);
+
+        // when
+        var unchanged = req.makeReq("/accounts/1", "GET", null, Map.of("If-None-Match", etag));
+        req.makeReq("/accounts/1", "PUT", "{\"balance\":5}");
+        var changed = req.makeReq("/accounts/1", "GET", null, Map.of("If-None-Match", etag));
+
+        // then
+        assertEquals(304, unchanged.getResponseCode());
+        assertEquals(etag, unchanged.getHeaders().get("ETag").get(0));
+        assertEquals(200, changed.getResponseCode());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":{\"balance\":5,\"id\":1}}", changed.getResponseBody());
+        assertNotEquals(etag, changed.getHeaders().get("ETag").get(0));
+    }
+
     @Test
     public void getAccount__givenNonExistingAccountId__returns404(){
         // given
@@ -245,4 +296,195 @@ public class AppIntegrationFunctionalIT {
         assertEquals(404, response1.getResponseCode());
         assertEquals(expectedResponse, response1.getResponseBody());
     }
+
+    @Test
+    public void postTransferBatch__givenValidAndInvalidTransfers__returnsOutcomePerTransfer(){
+        // given
+        var urlPostfix = "/transfers/batch";
+        var requestBody = "[{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.99},"
+                        + " {\"benefactor\":1, \"beneficiary\":2, \"amount\":0.99},"
+                        + " {\"benefactor\":2, \"beneficiary\":5, \"amount\":0.01}]";
+        // when
+        var response1 = req.makeReq(urlPostfix, "POST", requestBody);
+
+        // then
+        var expectedResponse = "{\"status\":\"SUCCESS\",\"data\":["
+                + "{\"status\":\"SUCCESS\",\"data\":{\"benefactor\":1,\"beneficiary\":2,\"amount\":0.99,\"id\":0}},"
+                + "{\"status\":\"ERROR\",\"message\":\"Insufficient balance in benefactors account\"},"
+                + "{\"status\":\"ERROR\",\"message\":\"Account not found\"}]}";
+        assertEquals(200, response1.getResponseCode());
+        assertEquals(expectedResponse, withoutTimestamps(response1.getResponseBody()));
+    }
+
+    @Test
+    public void postTransferBatch__givenMalformedBody__returns422(){
+        // given / when
+        var response1 = req.makeReq("/transfers/batch", "POST", "{\"benefactor\":1}");
+
+        // then
+        var expectedResponse = "{\"status\":\"ERROR\",\"message\":\"Incorrect request body\"}";
+        assertEquals(422, response1.getResponseCode());
+        assertEquals(expectedResponse, response1.getResponseBody());
+    }
+
+    @Test
+    public void postTransfer__givenRetryWithSameIdempotencyKey__returnsFirstResponseAndTransfersOnce(){
+        // given
+        var requestBody = "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.5}";
+        var idempotencyKey = Map.of("Idempotency-Key", "7d4f2c1e-retry");
+
+        // when
+        var response1 = req.makeReq("/transfers", "POST", requestBody, idempotencyKey);
+        var response2 = req.makeReq("/transfers", "POST", requestBody, idempotencyKey);
+        var response3 = req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.1}",
+                idempotencyKey);
+
+        // then
+        var expectedResponse = "{\"status\":\"SUCCESS\",\"message\":\"Transfer successful\"}";
+        assertEquals(200, response1.getResponseCode());
+        assertEquals(expectedResponse, response1.getResponseBody());
+        assertEquals(200, response2.getResponseCode());
+        assertEquals(expectedResponse, response2.getResponseBody());
+        assertEquals("true", response2.getHeaders().get("Idempotent-Replayed").get(0));
+        assertEquals(422, response3.getResponseCode());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":{\"balance\":0.51,\"id\":1}}",
+                req.makeReq("/accounts/1", "GET").getResponseBody());
+    }
+
+    @Test
+    public void getAccountTransfers__afterTransfers__returnsOnlyThoseOfTheAccountPageByPage(){
+        // given
+        req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.1}");
+        req.makeReq("/transfers", "POST", "{\"benefactor\":2, \"beneficiary\":0, \"amount\":0.2}");
+        req.makeReq("/transfers", "POST", "{\"benefactor\":0, \"beneficiary\":1, \"amount\":0.01}");
+
+        // when
+        var firstPage = req.makeReq("/accounts/1/transfers?limit=1", "GET");
+        var lastPage = req.makeReq("/accounts/1/transfers?after=0&limit=1", "GET");
+        var unknownAccount = req.makeReq("/accounts/50/transfers", "GET");
+
+        // then
+        assertEquals(200, firstPage.getResponseCode());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[{\"benefactor\":1,\"beneficiary\":2,\"amount\":0.1,\"id\":0}],\"next\":0}",
+                withoutTimestamps(firstPage.getResponseBody()));
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[{\"benefactor\":0,\"beneficiary\":1,\"amount\":0.01,\"id\":2}],\"next\":2}",
+                withoutTimestamps(lastPage.getResponseBody()));
+        assertEquals(404, unknownAccount.getResponseCode());
+    }
+
+    @Test
+    public void getMetrics__afterTransfers__reportsOutcomesRouteLatenciesAndQueueDepth(){
+        // given
+        var root = new RequestUtil();
+        root.setBaseURL("http://localhost:4567");
+        req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.01}");
+        req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":50, \"amount\":0.01}");
+
+        // when
+        var response1 = root.makeReq("/metrics", "GET");
+
+        // then
+        var body = response1.getResponseBody();
+        assertEquals(200, response1.getResponseCode());
+        assertTrue(response1.getHeaders().get("Content-Type").get(0).startsWith("text/plain"));
+        assertTrue(body.contains("transfers_total{outcome=\"committed\"}"));
+        assertTrue(body.contains("transfers_total{outcome=\"AccountNotFoundException\"}"));
+        assertTrue(body.contains("http_request_duration_seconds_count{route=\"POST /api/v1/transfers\"}"));
+        assertTrue(body.contains("# TYPE account_lock_wait_seconds histogram"));
+        assertTrue(body.contains("jetty_queued_requests "));
+    }
+
+    @Test
+    public void getTransfers__givenTimeRange__returnsTransfersCommittedInIt() throws InterruptedException {
+        // given
+        req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.1}");
+        Thread.sleep(5);
+        long from = System.currentTimeMillis();
+        req.makeReq("/transfers", "POST", "{\"benefactor\":2, \"beneficiary\":0, \"amount\":0.2}");
+        long to = System.currentTimeMillis() + 1;
+        Thread.sleep(5);
+        req.makeReq("/transfers", "POST", "{\"benefactor\":0, \"beneficiary\":1, \"amount\":0.01}");
+
+        // when
+        var inRange = req.makeReq("/transfers?from=" + from + "&to=" + to, "GET");
+        var emptyRange = req.makeReq("/transfers?from=" + to + "&to=" + from, "GET");
+        var combined = req.makeReq("/transfers?from=" + from + "&limit=1", "GET");
+
+        // then
+        var body = inRange.getResponseBody();
+        assertEquals(200, inRange.getResponseCode());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[{\"benefactor\":2,\"beneficiary\":0,\"amount\":0.2,\"id\":1}]}",
+                withoutTimestamps(body));
+        long timestamp = Long.parseLong(body.replaceAll(".*\"timestamp\":(\\d+).*", "$1"));
+        assertTrue(from <= timestamp && timestamp < to);
+        assertEquals(422, emptyRange.getResponseCode());
+        assertEquals(422, combined.getResponseCode());
+    }
+
+    @Test
+    public void getTransfers__givenGzipAccepted__compressesOnlyResponsesOfAtLeastMinBytes() throws IOException {
+        // given - about 90 bytes per transfer, the default threshold is 1024
+        for (int i = 0; i < 20; i++)
+            req.makeReq("/transfers", "POST", "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.01}");
+        var gzip = Map.of("Accept-Encoding", "gzip");
+
+        // when
+        var large = req.makeReq("/transfers", "GET", null, gzip);
+        var small = req.makeReq("/transfers/0", "GET", null, gzip);
+
+        // then
+        assertEquals(200, large.getResponseCode());
+        assertEquals("gzip", large.getHeaders().get("Content-Encoding").get(0));
+        var body = new String(new GZIPInputStream(large.getResponseBodyStream()).readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(20, body.split("\"benefactor\":1").length - 1);
+        assertEquals(req.makeReq("/transfers", "GET").getResponseBody(), body);
+        assertEquals(200, small.getResponseCode());
+        assertNull(small.getHeaders().get("Content-Encoding"));
+        assertTrue(small.getHeaders().get("Vary").containsAll(List.of("Accept", "Accept-Encoding")));
+    }
+
+    @Test
+    public void transfers__givenBinaryContentTypeAndAccept__readAndWriteTheBinaryEncoding() throws IOException {
+        // given - transfer frames: length, id (-1), benefactor, beneficiary, scale, unscaled amount, timestamp
+        var binary = "application/x-moneytransfer";
+        var body = ByteBuffer.allocate(2 * 33)
+                .putInt(29).putInt(-1).putInt(1).putInt(2).put((byte) 2).putLong(50).putLong(Long.MIN_VALUE)
+                .putInt(29).putInt(-1).putInt(2).putInt(0).put((byte) 1).putLong(3).putLong(Long.MIN_VALUE)
+                .array();
+        var headers = Map.of("Content-Type", binary, "Accept", binary);
+
+        // when
+        var created = req.makeBinaryReq("/transfers/batch", "POST", body, headers);
+        var listed = req.makeReq("/transfers", "GET", null, Map.of("Accept", binary));
+        var notFound = req.makeReq("/transfers/99", "GET", null, Map.of("Accept", binary));
+
+        // then
+        for (var response : List.of(created, listed, notFound))
+            assertTrue(response.getHeaders().get("Vary").contains("Accept"));
+        assertEquals(404, notFound.getResponseCode());
+        assertEquals(200, created.getResponseCode());
+        assertEquals(binary, created.getHeaders().get("Content-Type").get(0));
+        var results = ByteBuffer.wrap(created.getResponseBodyStream().readAllBytes());
+        assertEquals(5 + 4 + 2 * (4 + 1 + 29), results.capacity());
+        assertEquals(200, listed.getResponseCode());
+        var in = ByteBuffer.wrap(listed.getResponseBodyStream().readAllBytes());
+        assertEquals(5, in.getInt());
+        assertEquals(0, in.get());
+        assertEquals(-1, in.getInt());
+        assertEquals(29, in.getInt());
+        assertEquals(0, in.getInt());
+        assertEquals(1, in.getInt());
+        assertEquals(2, in.getInt());
+        assertEquals(2, in.get());
+        assertEquals(50, in.getLong());
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":[" +
+                        "{\"benefactor\":1,\"beneficiary\":2,\"amount\":0.50,\"id\":0}," +
+                        "{\"benefactor\":2,\"beneficiary\":0,\"amount\":0.3,\"id\":1}]}",
+                withoutTimestamps(req.makeReq("/transfers", "GET").getResponseBody()));
+    }
+
+    // commit times differ from run to run
+    private static String withoutTimestamps(String body) {
+        return body.replaceAll("\"timestamp\":\\d+,", "");
+    }
 }
@@ -6,6 +6,7 @@ import java.io.OutputStream;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.net.URLEncoder;
+import java.util.Map;
 
 public class RequestUtil {
 
@@ -24,6 +25,28 @@ public class RequestUtil {
     }
 
     public Response makeReq(String urlPostfix, String reqMethod, String rawData){
+        return this.makeReq(urlPostfix, reqMethod, rawData, Map.of());
+    }
+
+    // the body is sent as it is, with the headers given (e.g. its Content-Type)
+    public Response makeBinaryReq(String urlPostfix, String reqMethod, byte[] body, Map<String, String> headers){
+        try {
+            var conn = (HttpURLConnection) new URL(baseURL + urlPostfix).openConnection();
+            conn.setRequestMethod(reqMethod);
+            headers.forEach(conn::setRequestProperty);
+            conn.setDoOutput(true);
+            try (var os = conn.getOutputStream()) {
+                os.write(body);
+            }
+            return new Response(conn.getResponseCode(), conn.getHeaderFields(),
+                    conn.getResponseCode() < HttpURLConnection.HTTP_BAD_REQUEST ? conn.getInputStream() : conn.getErrorStream());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public Response makeReq(String urlPostfix, String reqMethod, String rawData, Map<String, String> headers){
         URL url = null;
         HttpURLConnection conn = null;
         InputStream is = null;
@@ -32,6 +55,7 @@ public class RequestUtil {
             url = new URL(baseURL + urlPostfix);
             conn = (HttpURLConnection) url.openConnection();
             conn.setRequestMethod(reqMethod);
+            headers.forEach(conn::setRequestProperty);
             // send body, if passed in
             if(rawData != null){
                 String encodedData = URLEncoder.encode( rawData, "UTF-8" );
@@ -0,0 +1,84 @@
+package com.revolut.moneytransferapp;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Prints the primary score of every benchmark in two JMH JSON result files (e.g. of two releases) side by side.
+ * A benchmark is identified by its name, mode and parameters; the change is relative to the first file, so a
+ * positive change is an improvement for throughput and a regression for average time.
+ *
+ * Arguments: {@code <old result file> <new result file>}
+ */
+public class CompareBenchmarkResults {
+
+    private static final class Score {
+        final double value;
+        final double error;
+        final String unit;
+
+        Score(double value, double error, String unit) {
+            this.value = value;
+            this.error = error;
+            this.unit = unit;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("Usage: CompareBenchmarkResults <old result file> <new result file>");
+            System.exit(1);
+        }
+        var before = read(Path.of(args[0]));
+        var after = read(Path.of(args[1]));
+        var keys = new TreeMap<String, Boolean>();
+        before.keySet().forEach(key -> keys.put(key, true));
+        after.keySet().forEach(key -> keys.put(key, true));
+
+        System.out.printf("%-100s %16s %16s %9s  %s%n", "Benchmark", "old", "new", "change", "unit");
+        for (var key : keys.keySet()) {
+            var old = before.get(key);
+            var current = after.get(key);
+            var unit = (current != null ? current : old).unit;
+            var change = old == null || current == null || old.value == 0
+                    ? "" : String.format("%+.1f%%", (current.value - old.value) * 100 / old.value);
+            System.out.printf("%-100s %16s %16s %9s  %s%n", key, format(old), format(current), change, unit);
+        }
+    }
+
+    private static Map<String, Score> read(Path file) throws IOException {
+        var scores = new LinkedHashMap<String, Score>();
+        try (Reader reader = Files.newBufferedReader(file)) {
+            for (JsonElement element : new JsonParser().parse(reader).getAsJsonArray()) {
+                var result = element.getAsJsonObject();
+                var key = new StringBuilder(result.get("benchmark").getAsString())
+                        .append(" [").append(result.get("mode").getAsString());
+                if (result.has("params"))
+                    for (var param : result.getAsJsonObject("params").entrySet())
+                        key.append(", ").append(param.getKey()).append('=').append(param.getValue().getAsString());
+                key.append(']');
+                var metric = result.getAsJsonObject("primaryMetric");
+                var error = metric.get("scoreError");
+                scores.put(key.toString(), new Score(metric.get("score").getAsDouble(),
+                        error.isJsonPrimitive() && error.getAsJsonPrimitive().isNumber() ? error.getAsDouble() : Double.NaN,
+                        metric.get("scoreUnit").getAsString()));
+            }
+        }
+        return scores;
+    }
+
+    private static String format(Score score) {
+        if (score == null) return "-";
+        return Double.isNaN(score.error)
+                ? String.format("%.3f", score.value)
+                : String.format("%.3f ± %.3f", score.value, score.error);
+    }
+}
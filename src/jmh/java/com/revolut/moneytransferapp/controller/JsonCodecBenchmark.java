@@ -0,0 +1,85 @@
+package com.revolut.moneytransferapp.controller;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.revolut.moneytransferapp.controller.resthelpers.AccountJsonCache;
+import com.revolut.moneytransferapp.controller.resthelpers.JsonCodecs;
+import com.revolut.moneytransferapp.controller.resthelpers.JsonResponse;
+import com.revolut.moneytransferapp.controller.resthelpers.ResponseStatus;
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.UnsupportedEncodingException;
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request JSON work of the controllers: "reflective" is what a request used to do (a new Gson per response,
+ * reflection, an intermediate tree, URLDecoder over the whole body), "codecs" the shared hand-written adapters,
+ * "cached" the bytes of an account response rendered for the same version before.
+ * Run with {@code -prof gc} for the bytes allocated per operation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonCodecBenchmark {
+
+    private final Account account = new Account(42, new BigDecimal("1234.56"), 7);
+    private final AccountJsonCache accountJsonCache = new AccountJsonCache(AccountJsonCache.DEFAULT_MAX_ACCOUNTS);
+    private final Transfer transfer = transfer();
+    private final String requestBody = URLEncoder.encode(
+            "{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.99}", StandardCharsets.UTF_8);
+    private final byte[] requestBytes = requestBody.getBytes(StandardCharsets.UTF_8);
+
+    private static Transfer transfer() {
+        var transfer = new Transfer(1, 2, new BigDecimal("0.99"));
+        transfer.setId(12345);
+        return transfer;
+    }
+
+    @Benchmark
+    public String writeAccount_reflective() {
+        var gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+        var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, gson.toJsonTree(account));
+        return new Gson().toJson(jsonResponse);
+    }
+
+    @Benchmark
+    public String writeAccount_codecs() {
+        return JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, account));
+    }
+
+    @Benchmark
+    public byte[] writeAccount_cached() {
+        return accountJsonCache.render(account);
+    }
+
+    @Benchmark
+    public String writeTransfer_reflective() {
+        var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, new Gson().toJsonTree(transfer));
+        return new Gson().toJson(jsonResponse);
+    }
+
+    @Benchmark
+    public String writeTransfer_codecs() {
+        return JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, transfer));
+    }
+
+    @Benchmark
+    public Transfer readTransfer_reflective() throws UnsupportedEncodingException {
+        var decodedBody = URLDecoder.decode(new String(requestBytes, StandardCharsets.UTF_8), "UTF-8");
+        return new Gson().fromJson(decodedBody, Transfer.class);
+    }
+
+    @Benchmark
+    public Transfer readTransfer_codecs() {
+        return JsonCodecs.read(requestBytes, Transfer.class);
+    }
+}
@@ -0,0 +1,111 @@
+package com.revolut.moneytransferapp.controller;
+
+import com.revolut.moneytransferapp.App;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfers per second over HTTP: one request per transfer against POST /transfers/batch with 10, 100 and 1000
+ * transfers per request. The "transfers" counter is the number to compare, "ops" counts requests.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 5, time = 3)
+@Fork(1)
+@Threads(8)
+public class TransferBatchBenchmark {
+
+    private static final String URL = "http://localhost:4567/api/v1";
+    private static final int ACCOUNTS = 1000;
+
+    @State(Scope.Benchmark)
+    public static class Server {
+
+        HttpClient client;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException, InterruptedException {
+            App.main(new String[]{});
+            client = HttpClient.newHttpClient();
+            for (int i = 3; i < ACCOUNTS; i++)
+                send(client, "POST", "/accounts", null);
+            for (int id = 0; id < ACCOUNTS; id++)
+                send(client, "PUT", "/accounts/" + id, "{\"balance\":1000000000}");
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            App.stopService();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+
+        @Param({"10", "100", "1000"})
+        int batchSize;
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Transfers {
+
+        public long transfers;
+
+        SplittableRandom random = new SplittableRandom();
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            transfers = 0;
+        }
+
+        void append(StringBuilder body) {
+            body.append("{\"benefactor\":").append(random.nextInt(ACCOUNTS))
+                    .append(",\"beneficiary\":").append(random.nextInt(ACCOUNTS))
+                    .append(",\"amount\":0.01}");
+        }
+    }
+
+    @Benchmark
+    public int single(Server server, Transfers transfers) throws IOException, InterruptedException {
+        var body = new StringBuilder(64);
+        transfers.append(body);
+        transfers.transfers++;
+        return send(server.client, "POST", "/transfers", body.toString());
+    }
+
+    @Benchmark
+    public int batch(Server server, Batch batch, Transfers transfers) throws IOException, InterruptedException {
+        var body = new StringBuilder(batch.batchSize * 64).append('[');
+        for (int i = 0; i < batch.batchSize; i++) {
+            if (i > 0) body.append(',');
+            transfers.append(body);
+        }
+        body.append(']');
+        transfers.transfers += batch.batchSize;
+        return send(server.client, "POST", "/transfers/batch", body.toString());
+    }
+
+    private static int send(HttpClient client, String method, String path, String body)
+            throws IOException, InterruptedException {
+        // the controllers expect URL-encoded bodies, like the integration tests send them
+        var publisher = body == null
+                ? HttpRequest.BodyPublishers.noBody()
+                : HttpRequest.BodyPublishers.ofString(URLEncoder.encode(body, StandardCharsets.UTF_8));
+        var request = HttpRequest.newBuilder(URI.create(URL + path))
+                .header("Content-Type", "application/json;charset=UTF-8")
+                .method(method, publisher)
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
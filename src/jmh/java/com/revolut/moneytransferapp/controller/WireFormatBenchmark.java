@@ -0,0 +1,115 @@
+package com.revolut.moneytransferapp.controller;
+
+import com.revolut.moneytransferapp.controller.resthelpers.BinaryCodecs;
+import com.revolut.moneytransferapp.controller.resthelpers.JsonCodecs;
+import com.revolut.moneytransferapp.controller.resthelpers.JsonResponse;
+import com.revolut.moneytransferapp.controller.resthelpers.ResponseStatus;
+import com.revolut.moneytransferapp.model.Transfer;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON vs. the binary wire format on the hot transfer paths, both ways: "read" parses a request body (one transfer,
+ * or a batch of 100 as sent to {@code POST /transfers/batch}, URL-encoded JSON as the clients send it), "write"
+ * renders the response to the wire bytes (a transfer, or the results of the batch).
+ * Run with {@code -prof gc} for the bytes allocated per operation (gc.alloc.rate.norm).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class WireFormatBenchmark {
+
+    private static final int BATCH = 100;
+
+    private final Transfer transfer = transfer(12345, 1, 2, new BigDecimal("0.99"));
+    private final JsonResponse batchResults = batchResults();
+
+    private final byte[] jsonTransfer = urlEncoded("{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.99}");
+    private final byte[] binaryTransfer = binary(1);
+    private final byte[] jsonBatch = urlEncoded(jsonBatch());
+    private final byte[] binaryBatch = binary(BATCH);
+
+    private static Transfer transfer(int id, int benefactor, int beneficiary, BigDecimal amount) {
+        var transfer = new Transfer(benefactor, beneficiary, amount);
+        transfer.setId(id);
+        transfer.setTimestamp(1_577_836_800_000L + id);
+        return transfer;
+    }
+
+    private static JsonResponse batchResults() {
+        var results = new ArrayList<JsonResponse>();
+        for (int i = 0; i < BATCH; i++)
+            results.add(new JsonResponse(ResponseStatus.SUCCESS,
+                    transfer(1_000 + i, i, i + 1, BigDecimal.valueOf(100 + i, 2))));
+        return new JsonResponse(ResponseStatus.SUCCESS, results);
+    }
+
+    private static String jsonBatch() {
+        var items = new ArrayList<String>();
+        for (int i = 0; i < BATCH; i++)
+            items.add("{\"benefactor\":" + i + ", \"beneficiary\":" + (i + 1)
+                    + ", \"amount\":" + BigDecimal.valueOf(100 + i, 2) + "}");
+        return "[" + String.join(",", items) + "]";
+    }
+
+    private static byte[] urlEncoded(String json) {
+        return URLEncoder.encode(json, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+    }
+
+    // the frames a client sends, see BinaryCodecs
+    private static byte[] binary(int transfers) {
+        var out = ByteBuffer.allocate(transfers * (4 + 29));
+        for (int i = 0; i < transfers; i++)
+            out.putInt(29).putInt(-1).putInt(i).putInt(i + 1).put((byte) 2).putLong(100 + i).putLong(Long.MIN_VALUE);
+        return out.array();
+    }
+
+    @Benchmark
+    public Transfer readTransfer_json() {
+        return JsonCodecs.read(jsonTransfer, Transfer.class);
+    }
+
+    @Benchmark
+    public Transfer readTransfer_binary() {
+        return BinaryCodecs.read(binaryTransfer, Transfer.class);
+    }
+
+    @Benchmark
+    public Transfer[] readBatch_json() {
+        return JsonCodecs.read(jsonBatch, Transfer[].class);
+    }
+
+    @Benchmark
+    public Transfer[] readBatch_binary() {
+        return BinaryCodecs.read(binaryBatch, Transfer[].class);
+    }
+
+    @Benchmark
+    public byte[] writeTransfer_json() {
+        return JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, transfer)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeTransfer_binary() {
+        return BinaryCodecs.write(new JsonResponse(ResponseStatus.SUCCESS, transfer));
+    }
+
+    @Benchmark
+    public byte[] writeBatch_json() {
+        return JsonCodecs.GSON.toJson(batchResults).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] writeBatch_binary() {
+        return BinaryCodecs.write(batchResults);
+    }
+}
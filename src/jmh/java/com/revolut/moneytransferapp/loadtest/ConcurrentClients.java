@@ -0,0 +1,107 @@
+package com.revolut.moneytransferapp.loadtest;
+
+import com.revolut.moneytransferapp.App;
+import com.revolut.moneytransferapp.testutils.RequestUtil;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop load from a fixed number of concurrent clients, each sending its next durable transfer as soon as the
+ * previous one was answered, against an in-process service on platform threads (the default pool of
+ * {@code server.maxThreads}) and on virtual threads. Transfers are written to a write-ahead log, so every request
+ * blocks on an fsync: with a fixed pool at most that many of them can share one, with a thread per request all
+ * clients in flight do.
+ *
+ * Arguments (all optional, in this order): {@code threads=platform,virtual}, {@code clients=10,1000,10000},
+ * {@code seconds=10}. Virtual threads are skipped before Java 21. Every client holds a connection, so the open file
+ * limit ({@code ulimit -n}) has to be above twice the number of clients.
+ */
+public class ConcurrentClients {
+
+    private static final String URL = "http://localhost:4567/api/v1";
+    private static final int ACCOUNTS = 100;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        var threadModes = (args.length > 0 ? args[0] : "platform,virtual").split(",");
+        var clientCounts = (args.length > 1 ? args[1] : "10,1000,10000").split(",");
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        System.out.printf("%-9s %8s %10s %8s %9s %9s %9s  (microseconds)%n",
+                "threads", "clients", "req/s", "failed", "p50", "p99", "p99.9");
+        for (var threads : threadModes) {
+            if ("virtual".equals(threads) && Runtime.version().feature() < 21) {
+                System.out.printf("%-9s skipped, needs Java 21 (running on %s)%n", threads, Runtime.version());
+                continue;
+            }
+            for (var clients : clientCounts)
+                run(threads, Integer.parseInt(clients), seconds);
+        }
+    }
+
+    private static void run(String threads, int clients, int seconds) throws IOException, InterruptedException {
+        var directory = Files.createTempDirectory("concurrent-clients");
+        System.setProperty("server.threads", threads);
+        System.setProperty("wal.file", directory.resolve("wal").toString());
+        System.setProperty("snapshot.intervalSeconds", "0");
+        App.main(new String[]{});
+        try {
+            var request = new RequestUtil();
+            request.setBaseURL(URL);
+            for (int id = 3; id < ACCOUNTS; id++)
+                request.makeReq("/accounts", "POST").getResponseBody();
+            for (int id = 0; id < ACCOUNTS; id++)
+                request.makeReq("/accounts/" + id, "PUT", "{\"balance\":1000000000}").getResponseBody();
+
+            var client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+            var latency = new LatencyHistogram();
+            var failures = new LongAdder();
+            var finished = new CountDownLatch(clients);
+            long start = System.nanoTime();
+            long deadline = start + TimeUnit.SECONDS.toNanos(seconds);
+            for (int c = 0; c < clients; c++)
+                send(client, new SplittableRandom(c), deadline, latency, failures, finished);
+            finished.await();
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            System.out.printf("%-9s %8d %10.0f %8d %9d %9d %9d%n", threads, clients,
+                    latency.count() / elapsedSeconds, failures.sum(),
+                    latency.percentile(50), latency.percentile(99), latency.percentile(99.9));
+        } finally {
+            App.stopService();
+            try (var files = Files.list(directory)) {
+                for (var file : (Iterable<Path>) files::iterator)
+                    Files.delete(file);
+            }
+            Files.delete(directory);
+        }
+    }
+
+    // sends the next transfer of one client once the previous one completed, until the deadline
+    private static void send(HttpClient client, SplittableRandom random, long deadline,
+                             LatencyHistogram latency, LongAdder failures, CountDownLatch finished) {
+        int from = random.nextInt(ACCOUNTS);
+        int to = (from + 1 + random.nextInt(ACCOUNTS - 1)) % ACCOUNTS;
+        var transfer = HttpRequest.newBuilder(URI.create(URL + "/transfers"))
+                .POST(HttpRequest.BodyPublishers.ofString(
+                        "{\"benefactor\":" + from + ", \"beneficiary\":" + to + ", \"amount\":0.01}"))
+                .build();
+        long sent = System.nanoTime();
+        client.sendAsync(transfer, HttpResponse.BodyHandlers.discarding()).whenComplete((response, error) -> {
+            long done = System.nanoTime();
+            if (error != null || response.statusCode() != 200) failures.increment();
+            else latency.record(TimeUnit.NANOSECONDS.toMicros(done - sent));
+            if (done < deadline) send(client, random, deadline, latency, failures, finished);
+            else finished.countDown();
+        });
+    }
+}
@@ -0,0 +1,123 @@
+package com.revolut.moneytransferapp.loadtest;
+
+import com.revolut.moneytransferapp.App;
+import com.revolut.moneytransferapp.testutils.RequestUtil;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load against an in-process service: requests are scheduled at a fixed rate whether or not earlier
+ * ones have completed, and a mix of POST /transfers and GET /accounts/:id is sent through {@link RequestUtil}.
+ *
+ * Latency is measured from the time a request was scheduled to be sent, not from when a worker got round to
+ * sending it. A stalled service therefore shows up in the percentiles of every request that had to wait behind
+ * the stall (no coordinated omission); the service time, measured from the actual send, is printed next to it.
+ *
+ * Arguments (all optional, in this order):
+ * {@code rate=2000} requests per second, {@code seconds=30}, {@code accounts=1000}, {@code distribution=zipf}
+ * ({@code uniform} or {@code zipf}), {@code readPercent=20} share of GET requests, {@code workers=64} connections.
+ */
+public class LoadGenerator {
+
+    private static final String URL = "http://localhost:4567/api/v1";
+    private static final double ZIPF_EXPONENT = 0.99;
+
+    private static final class Endpoint {
+        final String name;
+        final LatencyHistogram latency = new LatencyHistogram();
+        final LatencyHistogram serviceTime = new LatencyHistogram();
+        final LongAdder failures = new LongAdder();
+
+        Endpoint(String name) {
+            this.name = name;
+        }
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int rate = args.length > 0 ? Integer.parseInt(args[0]) : 2_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 30;
+        int accounts = args.length > 2 ? Integer.parseInt(args[2]) : 1_000;
+        var distribution = args.length > 3 ? args[3] : "zipf";
+        int readPercent = args.length > 4 ? Integer.parseInt(args[4]) : 20;
+        int workers = args.length > 5 ? Integer.parseInt(args[5]) : 64;
+
+        // HttpURLConnection keeps only 5 idle connections per host by default
+        System.setProperty("http.maxConnections", String.valueOf(workers));
+        App.main(new String[]{});
+        var request = new RequestUtil();
+        request.setBaseURL(URL);
+        for (int id = 3; id < accounts; id++)
+            request.makeReq("/accounts", "POST").getResponseBody();
+        for (int id = 0; id < accounts; id++)
+            request.makeReq("/accounts/" + id, "PUT", "{\"balance\":1000000000}").getResponseBody();
+
+        var zipf = "zipf".equals(distribution) ? new ZipfDistribution(accounts, ZIPF_EXPONENT) : null;
+        if (zipf == null && !"uniform".equals(distribution))
+            throw new IllegalArgumentException("Unknown distribution: " + distribution);
+        var transfers = new Endpoint("POST /transfers");
+        var reads = new Endpoint("GET /accounts/:id");
+
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        long total = (long) rate * seconds;
+        var scheduled = new AtomicLong();
+        long start = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        var threads = new ArrayList<Thread>();
+        for (int w = 0; w < workers; w++) {
+            var thread = new Thread(() -> {
+                var random = new SplittableRandom();
+                var client = new RequestUtil();
+                client.setBaseURL(URL);
+                long i;
+                while ((i = scheduled.getAndIncrement()) < total) {
+                    long intended = start + i * intervalNanos;
+                    long delay;
+                    while ((delay = intended - System.nanoTime()) > 0)
+                        LockSupport.parkNanos(delay);
+                    int from = zipf != null ? zipf.sample(random) : random.nextInt(accounts);
+                    boolean read = random.nextInt(100) < readPercent;
+                    var endpoint = read ? reads : transfers;
+                    long sent = System.nanoTime();
+                    var response = read
+                            ? client.makeReq("/accounts/" + from, "GET")
+                            : client.makeReq("/transfers", "POST", "{\"benefactor\":" + from + ", \"beneficiary\":"
+                                    + (zipf != null ? zipf.sample(random) : random.nextInt(accounts))
+                                    + ", \"amount\":0.01}");
+                    if (response != null) response.getResponseBody();
+                    long done = System.nanoTime();
+                    if (response == null || response.getResponseCode() != 200) endpoint.failures.increment();
+                    endpoint.latency.record(TimeUnit.NANOSECONDS.toMicros(done - intended));
+                    endpoint.serviceTime.record(TimeUnit.NANOSECONDS.toMicros(done - sent));
+                }
+            }, "load-" + w);
+            thread.start();
+            threads.add(thread);
+        }
+        for (var thread : threads)
+            thread.join();
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+        App.stopService();
+
+        System.out.printf("target %d req/s for %d s, %d accounts (%s%s), %d%% reads, %d workers%n",
+                rate, seconds, accounts, distribution,
+                zipf != null ? String.format(", top 1%% of accounts get %.0f%% of picks", zipf.share(0.01) * 100) : "",
+                readPercent, workers);
+        System.out.printf("achieved %.0f req/s%n", total / elapsedSeconds);
+        System.out.printf("%-20s %9s %8s %9s %9s %9s %9s %9s  (microseconds)%n",
+                "", "requests", "failed", "mean", "p50", "p99", "p99.9", "max");
+        for (var endpoint : new Endpoint[]{transfers, reads}) {
+            print(endpoint.name, endpoint.latency, endpoint.failures.sum());
+            print("  service time", endpoint.serviceTime, endpoint.failures.sum());
+        }
+    }
+
+    private static void print(String name, LatencyHistogram histogram, long failures) {
+        System.out.printf("%-20s %9d %8d %9.0f %9d %9d %9d %9d%n", name, histogram.count(), failures,
+                histogram.mean(), histogram.percentile(50), histogram.percentile(99), histogram.percentile(99.9),
+                histogram.max());
+    }
+}
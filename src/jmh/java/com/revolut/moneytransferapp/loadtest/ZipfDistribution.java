@@ -0,0 +1,37 @@
+package com.revolut.moneytransferapp.loadtest;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Picks ids 0..n-1 with probability proportional to 1 / (rank + 1)^exponent: id 0 is the hottest account, and with
+ * the usual exponent of about 1 a few percent of the accounts get most of the traffic. Sampling is a binary search
+ * in the precomputed cumulative distribution.
+ */
+class ZipfDistribution {
+
+    private final double[] cumulative;
+
+    ZipfDistribution(int n, double exponent) {
+        cumulative = new double[n];
+        double sum = 0;
+        for (int rank = 0; rank < n; rank++) {
+            sum += 1 / Math.pow(rank + 1, exponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < n; rank++)
+            cumulative[rank] /= sum;
+    }
+
+    int sample(SplittableRandom random) {
+        int index = Arrays.binarySearch(cumulative, random.nextDouble());
+        int id = index >= 0 ? index : -index - 1;
+        return Math.min(id, cumulative.length - 1);
+    }
+
+    // share of all picks that go to the hottest fraction of the ids
+    double share(double hottestFraction) {
+        int top = Math.max(1, (int) (cumulative.length * hottestFraction));
+        return cumulative[top - 1];
+    }
+}
@@ -0,0 +1,88 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AccountRepositoryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Accounts {
+
+        @Param({"1000", "100000", "10000000"})
+        int accounts;
+
+        AccountRepository accountRepository;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var seeded = new ArrayList<Account>(accounts);
+            var balance = new BigDecimal("100.00");
+            for (int id = 0; id < accounts; id++)
+                seeded.add(new Account(id, balance));
+            accountRepository = new AccountRepository();
+            accountRepository.setAccounts(seeded);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    // updates that lost to a concurrent one, reported next to the timings of the update benchmarks
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Conflicts {
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    private static final BigDecimal BALANCE = new BigDecimal("42.00");
+
+    @Benchmark
+    public Account getById(Accounts state, Picker picker) {
+        return state.accountRepository.getById(picker.random.nextInt(state.accounts));
+    }
+
+    @Benchmark
+    public void update(Accounts state, Picker picker, Conflicts conflicts) throws AccountNotFoundException {
+        try {
+            state.accountRepository.update(new Account(picker.random.nextInt(state.accounts), BALANCE));
+        } catch (OptimisticLockException e) {
+            conflicts.conflicts++;
+        }
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public Account getById_maxThreads(Accounts state, Picker picker) {
+        return state.accountRepository.getById(picker.random.nextInt(state.accounts));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public void update_maxThreads(Accounts state, Picker picker, Conflicts conflicts) throws AccountNotFoundException {
+        try {
+            state.accountRepository.update(new Account(picker.random.nextInt(state.accounts), BALANCE));
+        } catch (OptimisticLockException e) {
+            conflicts.conflicts++;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.sun.management.GarbageCollectionNotificationInfo;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Heap footprint and GC pauses of an account store: fills the store, measures the live heap after a full GC,
+ * then runs a read/update workload and reports the p99 and max stop-the-world pause.
+ * Arguments: {@code <objects|minor-units|off-heap> [accounts] [seconds]}.
+ */
+public class AccountStoreFootprint {
+
+    public static void main(String[] args) throws Exception {
+        var store = args.length > 0 ? args[0] : "off-heap";
+        var accounts = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        var seconds = args.length > 2 ? Integer.parseInt(args[2]) : 30;
+
+        var heapBefore = usedHeapAfterGc();
+        var repository = create(store);
+        var balance = new BigDecimal("100.00");
+        for (int i = 0; i < accounts; i++)
+            repository.save(new Account(balance));
+        var heapAfter = usedHeapAfterGc();
+
+        var pauses = recordGcPauses();
+        var operations = new LongAdder();
+        var threads = Runtime.getRuntime().availableProcessors();
+        var executor = Executors.newFixedThreadPool(threads);
+        var deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        for (int t = 0; t < threads; t++)
+            executor.submit(() -> {
+                var random = new SplittableRandom();
+                while (System.nanoTime() < deadline) {
+                    int id = random.nextInt(accounts);
+                    if (random.nextBoolean()) {
+                        repository.getById(id);
+                    } else {
+                        try { repository.update(new Account(id, BigDecimal.valueOf(random.nextInt(1_000_000), 2))); }
+                        catch (OptimisticLockException | AccountNotFoundException e) { /* skip */ }
+                    }
+                    operations.increment();
+                }
+            });
+        executor.shutdown();
+        executor.awaitTermination(seconds + 60, TimeUnit.SECONDS);
+
+        List<Long> sorted;
+        synchronized (pauses) {
+            sorted = new ArrayList<>(pauses);
+        }
+        Collections.sort(sorted);
+        System.out.printf("store=%s accounts=%d heap=%d MB (%.1f B/account) ops/s=%d gc pauses=%d p99=%d ms max=%d ms%n",
+                store, accounts,
+                (heapAfter - heapBefore) >> 20, (double) (heapAfter - heapBefore) / accounts,
+                operations.sum() / seconds,
+                sorted.size(), percentile(sorted, 0.99), percentile(sorted, 1.0));
+        System.exit(0);
+    }
+
+    private static Repository<Account> create(String store) {
+        Repository<Account> repository;
+        switch (store) {
+            case "objects":
+                var objects = new AccountRepository();
+                objects.setAccounts(new ArrayList<>());
+                repository = objects;
+                break;
+            case "minor-units":
+                var minorUnits = new MinorUnitAccountRepository(MinorUnits.of("EUR"));
+                minorUnits.setAccounts(new ArrayList<>());
+                repository = minorUnits;
+                break;
+            case "off-heap":
+                var offHeap = new OffHeapAccountRepository(MinorUnits.of("EUR"));
+                offHeap.setAccounts(new ArrayList<>());
+                repository = offHeap;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+        return repository;
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static List<Long> recordGcPauses() {
+        var pauses = new ArrayList<Long>();
+        for (var gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (!GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType()))
+                    return;
+                var info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                // concurrent cycles do not stop application threads
+                if (info.getGcName().contains("Concurrent")) return;
+                synchronized (pauses) {
+                    pauses.add(info.getGcInfo().getDuration());
+                }
+            }, null, null);
+        }
+        return pauses;
+    }
+
+    private static long percentile(List<Long> sorted, double percentile) {
+        if (sorted.isEmpty()) return 0;
+        return sorted.get((int) Math.min(sorted.size() - 1, Math.ceil(percentile * sorted.size()) - 1));
+    }
+}
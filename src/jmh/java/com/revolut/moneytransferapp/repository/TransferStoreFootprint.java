@@ -0,0 +1,55 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+
+/**
+ * Heap footprint of the transfer history: records the given number of transfers, measures the live heap after
+ * a full GC and the average cost of a random lookup by id.
+ * Arguments: {@code <heap|journal> [transfers]}.
+ */
+public class TransferStoreFootprint {
+
+    public static void main(String[] args) throws Exception {
+        var store = args.length > 0 ? args[0] : "journal";
+        var transfers = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+
+        var dir = Files.createTempDirectory("transfer-journal");
+        var heapBefore = usedHeapAfterGc();
+        var repository = "journal".equals(store) ? new TransferRepository(dir) : new TransferRepository();
+        var random = new SplittableRandom(42);
+        for (int i = 0; i < transfers; i++)
+            repository.save(new Transfer(random.nextInt(1_000_000), random.nextInt(1_000_000),
+                    BigDecimal.valueOf(1 + random.nextInt(100_000), 2)));
+        var heapAfter = usedHeapAfterGc();
+
+        int lookups = 10_000_000;
+        long checksum = 0;
+        long started = System.nanoTime();
+        for (int i = 0; i < lookups; i++)
+            checksum += repository.getById(random.nextInt(transfers)).getBeneficiaryId();
+        long lookupNanos = (System.nanoTime() - started) / lookups;
+
+        System.out.printf("store=%s transfers=%d heap=%d MB (%.1f B/transfer) getById=%d ns (checksum %d)%n",
+                store, transfers, (heapAfter - heapBefore) >> 20, (double) (heapAfter - heapBefore) / transfers,
+                lookupNanos, checksum);
+
+        try (var files = Files.list(dir)) {
+            for (var path : (Iterable<Path>) files::iterator)
+                Files.delete(path);
+        }
+        Files.delete(dir);
+        System.exit(0);
+    }
+
+    private static long usedHeapAfterGc() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
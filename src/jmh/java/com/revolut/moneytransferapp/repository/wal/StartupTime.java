@@ -0,0 +1,159 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.MinorUnitAccountRepository;
+import com.revolut.moneytransferapp.repository.OffHeapAccountRepository;
+import com.revolut.moneytransferapp.repository.Repository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time from start to a fully recovered account store: writes a history of account creations and transfers to a
+ * log, then recovers it once by replaying the whole log and once from a snapshot plus a short log tail.
+ * Arguments: {@code <objects|minor-units|off-heap> [accounts] [transfers] [tail transfers]}.
+ */
+public class StartupTime {
+
+    public static void main(String[] args) throws Exception {
+        var store = args.length > 0 ? args[0] : "off-heap";
+        var accounts = args.length > 1 ? Integer.parseInt(args[1]) : 1_000_000;
+        var transfers = args.length > 2 ? Integer.parseInt(args[2]) : 5_000_000;
+        var tail = args.length > 3 ? Integer.parseInt(args[3]) : 100_000;
+
+        var dir = Files.createTempDirectory("startup-time");
+        var file = dir.resolve("wal.log");
+        var snapshotFile = new SnapshotFile(dir.resolve("wal.log.snapshot"));
+        var history = new History(accounts);
+
+        var log = open(file);
+        history.write(log, transfers);
+        log.close();
+
+        long started = System.nanoTime();
+        var accountRepository = create(store);
+        var transferRepository = new TransferRepository();
+        log = open(file);
+        Recovery.recover(snapshotFile, log, restoreInto(accountRepository, transferRepository));
+        var fullReplay = System.nanoTime() - started;
+
+        snapshotFile.write(log.roll().join(), accountRepository, transferRepository);
+        snapshotFile.publish();
+        log.deleteSegmentsBefore(log.getActiveSegment());
+        history.write(log, tail);
+        log.close();
+        accountRepository = null;
+        transferRepository = null;
+        System.gc();
+
+        started = System.nanoTime();
+        var recoveredAccounts = create(store);
+        var recoveredTransfers = new TransferRepository();
+        log = open(file);
+        Recovery.recover(snapshotFile, log, restoreInto(recoveredAccounts, recoveredTransfers));
+        var snapshotAndTail = System.nanoTime() - started;
+        log.close();
+
+        System.out.printf("store=%s accounts=%d transfers=%d full replay=%d ms, snapshot + %d tail transfers=%d ms " +
+                        "(snapshot %d MB, %d threads)%n",
+                store, accounts, recoveredTransfers.getAll().size(),
+                TimeUnit.NANOSECONDS.toMillis(fullReplay), tail, TimeUnit.NANOSECONDS.toMillis(snapshotAndTail),
+                Files.size(dir.resolve("wal.log.snapshot")) >> 20, Runtime.getRuntime().availableProcessors());
+
+        try (var files = Files.list(dir)) {
+            for (var path : (Iterable<Path>) files::iterator)
+                Files.delete(path);
+        }
+        Files.delete(dir);
+        System.exit(0);
+    }
+
+    private static WriteAheadLog open(Path file) throws IOException {
+        return new WriteAheadLog(file, 4096, 1, TimeUnit.MILLISECONDS);
+    }
+
+    private static LogRecords.Handler restoreInto(Repository<Account> accounts, Repository<Transfer> transfers) {
+        return new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) {
+                accounts.restore(account);
+            }
+
+            @Override
+            public void onTransfer(Transfer transfer) {
+                transfers.restore(transfer);
+            }
+        };
+    }
+
+    private static Repository<Account> create(String store) {
+        switch (store) {
+            case "objects":
+                var objects = new AccountRepository();
+                objects.setAccounts(new ArrayList<>());
+                return objects;
+            case "minor-units":
+                var minorUnits = new MinorUnitAccountRepository(MinorUnits.of("EUR"));
+                minorUnits.setAccounts(new ArrayList<>());
+                return minorUnits;
+            case "off-heap":
+                var offHeap = new OffHeapAccountRepository(MinorUnits.of("EUR"));
+                offHeap.setAccounts(new ArrayList<>());
+                return offHeap;
+            default:
+                throw new IllegalArgumentException("Unknown store: " + store);
+        }
+    }
+
+    /**
+     * Generates log entries the way the service would: accounts are created first, every transfer then
+     * logs itself with the new balance and version of both accounts.
+     */
+    private static final class History {
+
+        private final SplittableRandom random = new SplittableRandom(42);
+        private final long[] balances;
+        private final int[] versions;
+        private int transferId;
+
+        private History(int accounts) {
+            balances = new long[accounts];
+            versions = new int[accounts];
+        }
+
+        private void write(WriteAheadLog log, int transfers) {
+            CompletableFuture<Void> last = null;
+            if (transferId == 0) {
+                for (int id = 0; id < balances.length; id++) {
+                    balances[id] = 1_000_000;
+                    last = log.append(LogRecords.account(new Account(id, BigDecimal.valueOf(balances[id], 2), 0)));
+                }
+            }
+            for (int i = 0; i < transfers; i++) {
+                int from = random.nextInt(balances.length);
+                int to = random.nextInt(balances.length);
+                if (from == to) continue;
+                long amount = 1 + random.nextInt(100);
+                balances[from] -= amount;
+                balances[to] += amount;
+                var transfer = new Transfer(from, to, BigDecimal.valueOf(amount, 2));
+                transfer.setTimestamp((long) transferId);
+                transfer.setId(transferId++);
+                last = log.append(LogRecords.transfer(transfer,
+                        new Account(from, BigDecimal.valueOf(balances[from], 2), ++versions[from]),
+                        new Account(to, BigDecimal.valueOf(balances[to], 2), ++versions[to])));
+            }
+            if (last != null) last.join();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.service.AccountService;
+import com.revolut.moneytransferapp.service.TransferService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable transfers per second: every measured call returns only once its log entry is fsynced.
+ * A batch size of 1 is one fsync per transfer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(64)
+public class WriteAheadLogBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class DurableService {
+
+        @Param({"1", "8", "64", "512"})
+        int batchSize;
+
+        @Param({"200"})
+        long flushIntervalMicros;
+
+        @Param({"4096"})
+        int accounts;
+
+        Path file;
+        WriteAheadLog log;
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            file = Files.createTempFile("wal-benchmark", ".log");
+            log = new WriteAheadLog(file, batchSize, flushIntervalMicros, TimeUnit.MICROSECONDS);
+            var accountRepository = new AccountRepository();
+            var seeded = new ArrayList<Account>();
+            for (int id = 0; id < accounts; id++)
+                seeded.add(new Account(id, new BigDecimal("1000000000")));
+            accountRepository.setAccounts(seeded);
+            transferService = new TransferService(new AccountService(accountRepository, log), new TransferRepository());
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            log.close();
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Benchmark
+    public void durableTransfer(DurableService state, Picker picker) throws Throwable {
+        int from = picker.random.nextInt(state.accounts);
+        int to = picker.random.nextInt(state.accounts);
+        state.transferService.createTransfer(from, to, AMOUNT);
+    }
+}
@@ -0,0 +1,61 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.MinorUnitAccountRepository;
+import com.revolut.moneytransferapp.repository.Repository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BigDecimal account objects against long minor units on the transfer path.
+ * Run with {@code -prof gc} to compare allocations per transfer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BalanceRepresentationBenchmark {
+
+    @Param({"objects", "minor-units"})
+    String store;
+
+    @Param({"1024"})
+    int accounts;
+
+    TransferService transferService;
+    SplittableRandom random = new SplittableRandom(42);
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Setup(Level.Trial)
+    public void setup() {
+        var seeded = new ArrayList<Account>();
+        for (int id = 0; id < accounts; id++)
+            seeded.add(new Account(id, new BigDecimal("1000000000.00")));
+        Repository<Account> accountRepository;
+        if ("minor-units".equals(store)) {
+            var repository = new MinorUnitAccountRepository(MinorUnits.of("EUR"));
+            repository.setAccounts(seeded);
+            accountRepository = repository;
+        } else {
+            var repository = new AccountRepository();
+            repository.setAccounts(seeded);
+            accountRepository = repository;
+        }
+        transferService = new TransferService(new AccountService(accountRepository), new TransferRepository());
+    }
+
+    @Benchmark
+    public void createTransfer() throws Throwable {
+        transferService.createTransfer(random.nextInt(accounts), random.nextInt(accounts), AMOUNT);
+    }
+}
@@ -0,0 +1,90 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Goodput of transfers under heavy optimistic locking conflict: transfer threads move money between a few hot
+ * accounts while updater threads keep writing the same accounts back, the way account PUTs do. "committed" counts
+ * the transfers that succeeded, "conflicted" the ones that were handed back to the caller as a 409. With
+ * {@code maxAttempts=1} every conflict reaches the caller, with more the service retries it after a jittered backoff.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OccRetryBenchmark {
+
+    @State(Scope.Group)
+    public static class Engine {
+
+        @Param({"4"})
+        int accounts;
+
+        @Param({"1", "8"})
+        int maxAttempts;
+
+        AccountRepository accountRepository;
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            accountRepository = new AccountRepository();
+            var seeded = new ArrayList<Account>();
+            for (int id = 0; id < accounts; id++)
+                seeded.add(new Account(id, new BigDecimal("1000000000")));
+            accountRepository.setAccounts(seeded);
+            transferService = new TransferService(new AccountService(accountRepository), new TransferRepository());
+            transferService.setMaxAttempts(maxAttempts);
+        }
+    }
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Outcomes {
+
+        public long committed;
+        public long conflicted;
+
+        SplittableRandom random = new SplittableRandom();
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            committed = 0;
+            conflicted = 0;
+        }
+    }
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @Benchmark @Group("conflict") @GroupThreads(4)
+    public void transfer(Engine engine, Outcomes outcomes) throws InvalidTransferException, AccountNotFoundException {
+        int from = outcomes.random.nextInt(engine.accounts);
+        int to = (from + 1 + outcomes.random.nextInt(engine.accounts - 1)) % engine.accounts;
+        try {
+            engine.transferService.createTransfer(from, to, AMOUNT);
+            outcomes.committed++;
+        } catch (OptimisticLockException e) {
+            outcomes.conflicted++;
+        }
+    }
+
+    @Benchmark @Group("conflict") @GroupThreads(2)
+    public void update(Engine engine, Outcomes outcomes) throws AccountNotFoundException {
+        int id = outcomes.random.nextInt(engine.accounts);
+        try {
+            engine.accountRepository.update(new Account(id, engine.accountRepository.getById(id).getBalance()));
+        } catch (OptimisticLockException e) { /* the updaters only have to keep the accounts busy */ }
+    }
+}
@@ -0,0 +1,88 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the sharded execution by number of shards and by the share of transfers whose beneficiary lives
+ * on another shard than the benefactor. Every caller submits batches, so the shards are kept busy without needing
+ * one request thread per transfer in flight.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class ShardedTransferBenchmark {
+
+    private static final int BATCH_SIZE = 64;
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        @Param({"4096"})
+        int accounts;
+
+        @Param({"1", "2", "4", "8"})
+        int shards;
+
+        // percentage of transfers crossing shards
+        @Param({"0", "10", "50", "100"})
+        int crossShard;
+
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var accountRepository = new AccountRepository();
+            var seeded = new ArrayList<Account>();
+            for (int id = 0; id < accounts; id++)
+                seeded.add(new Account(id, new BigDecimal("1000000000")));
+            accountRepository.setAccounts(seeded);
+            transferService = new TransferService(new AccountService(accountRepository), new TransferRepository(),
+                    TransferService.ExecutionMode.SHARDED, shards);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            transferService.shutdown();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Batch {
+        SplittableRandom random = new SplittableRandom();
+        List<Transfer> transfers = new ArrayList<>(BATCH_SIZE);
+
+        List<Transfer> next(Engine engine) {
+            transfers.clear();
+            int perShard = engine.accounts / engine.shards;
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                int from = random.nextInt(engine.accounts);
+                int shard = from % engine.shards;
+                if (engine.shards > 1 && random.nextInt(100) < engine.crossShard)
+                    shard = (shard + 1 + random.nextInt(engine.shards - 1)) % engine.shards;
+                int to = random.nextInt(perShard) * engine.shards + shard;
+                transfers.add(new Transfer(from, to, AMOUNT));
+            }
+            return transfers;
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public List<TransferResult> transfer(Engine engine, Batch batch) {
+        return engine.transferService.createTransfers(batch.next(engine));
+    }
+}
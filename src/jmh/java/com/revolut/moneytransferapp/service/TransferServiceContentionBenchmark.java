@@ -0,0 +1,116 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Transfer throughput from 1 to N threads. The "uniform" workload picks both accounts uniformly,
+ * the "skewed" one concentrates most of the traffic on a handful of hot accounts. "locks" runs transfers on the
+ * calling threads, "ring-buffer" hands them to the single writer thread.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransferServiceContentionBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Engine {
+
+        @Param({"1024"})
+        int accounts;
+
+        @Param({"uniform", "skewed"})
+        String distribution;
+
+        @Param({"locks", "ring-buffer"})
+        String execution;
+
+        TransferService transferService;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            var accountRepository = new AccountRepository();
+            var seeded = new ArrayList<Account>();
+            for (int id = 0; id < accounts; id++)
+                seeded.add(new Account(id, new BigDecimal("1000000000")));
+            accountRepository.setAccounts(seeded);
+            var mode = "ring-buffer".equals(execution)
+                    ? TransferService.ExecutionMode.RING_BUFFER : TransferService.ExecutionMode.LOCKS;
+            transferService = new TransferService(new AccountService(accountRepository), new TransferRepository(), mode);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            transferService.shutdown();
+        }
+
+        int pick(SplittableRandom random) {
+            if ("skewed".equals(distribution))
+                return (int) (accounts * Math.pow(random.nextDouble(), 4));
+            return random.nextInt(accounts);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Picker {
+        SplittableRandom random = new SplittableRandom();
+    }
+
+    // transfers that lost to a concurrent one, reported next to the throughput
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Conflicts {
+
+        public long conflicts;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            conflicts = 0;
+        }
+    }
+
+    private static final BigDecimal AMOUNT = new BigDecimal("0.01");
+
+    private static void transfer(Engine engine, Picker picker, Conflicts conflicts)
+            throws InvalidTransferException, AccountNotFoundException {
+        int from = engine.pick(picker.random);
+        int to = engine.pick(picker.random);
+        try {
+            engine.transferService.createTransfer(from, to, AMOUNT);
+        } catch (OptimisticLockException e) {
+            conflicts.conflicts++;
+        }
+    }
+
+    @Benchmark @Threads(1)
+    public void transfer_1thread(Engine engine, Picker picker, Conflicts conflicts) throws Throwable {
+        transfer(engine, picker, conflicts);
+    }
+
+    @Benchmark @Threads(2)
+    public void transfer_2threads(Engine engine, Picker picker, Conflicts conflicts) throws Throwable {
+        transfer(engine, picker, conflicts);
+    }
+
+    @Benchmark @Threads(4)
+    public void transfer_4threads(Engine engine, Picker picker, Conflicts conflicts) throws Throwable {
+        transfer(engine, picker, conflicts);
+    }
+
+    @Benchmark @Threads(Threads.MAX)
+    public void transfer_maxThreads(Engine engine, Picker picker, Conflicts conflicts) throws Throwable {
+        transfer(engine, picker, conflicts);
+    }
+}
@@ -2,16 +2,52 @@ package com.revolut.moneytransferapp;
 
 import com.revolut.moneytransferapp.controller.AccountController;
 import com.revolut.moneytransferapp.controller.TransferController;
+import com.revolut.moneytransferapp.controller.resthelpers.AccountJsonCache;
+import com.revolut.moneytransferapp.controller.resthelpers.IdempotencyCache;
+import com.revolut.moneytransferapp.controller.resthelpers.TimedRoute;
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.model.Transfer;
 import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.MinorUnitAccountRepository;
+import com.revolut.moneytransferapp.repository.OffHeapAccountRepository;
+import com.revolut.moneytransferapp.repository.Repository;
 import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.wal.LogRecords;
+import com.revolut.moneytransferapp.repository.wal.Recovery;
+import com.revolut.moneytransferapp.repository.wal.SnapshotFile;
+import com.revolut.moneytransferapp.repository.wal.WriteAheadLog;
 import com.revolut.moneytransferapp.service.AccountService;
+import com.revolut.moneytransferapp.service.SnapshotService;
 import com.revolut.moneytransferapp.service.TransferService;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.slf4j.LoggerFactory;
+import spark.embeddedserver.EmbeddedServers;
+import spark.embeddedserver.jetty.EmbeddedJettyFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import static spark.Spark.*;
 
 public class App {
 
-    private AccountRepository accountRepository;
+    private static App app;
+
+    private WriteAheadLog writeAheadLog;
+    private SnapshotFile snapshotFile;
+    private List<Transfer> unfinishedHandOffs = List.of();
+    private ScheduledExecutorService snapshotScheduler;
+
+    private Repository<Account> accountRepository;
     private AccountService accountService;
     private AccountController accountController;
 
@@ -20,7 +56,7 @@ public class App {
     private TransferController transferController;
 
     public static void main(String[] args) {
-        App app = new App();
+        app = new App();
         app.setupSparkConfig();
         app.setupDependencies();
         app.setupRoutes();
@@ -30,38 +66,223 @@ public class App {
     public static void stopService(){
         stop();
         awaitStop();
+        if (app != null && app.snapshotScheduler != null) {
+            app.snapshotScheduler.shutdown();
+            try {
+                app.snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (app != null && app.transferService != null)
+            app.transferService.shutdown();
+        if (app != null && app.writeAheadLog != null) {
+            try {
+                app.writeAheadLog.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        if (app != null && app.accountRepository instanceof OffHeapAccountRepository) {
+            try {
+                ((OffHeapAccountRepository) app.accountRepository).close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
     }
 
     private void setupSparkConfig(){
-        threadPool(10);
-        after((req, res) -> res.type("application/json"));
+        // the pool is created here rather than by Spark so that it can be reported on /metrics
+        var requestThreads = createRequestThreadPool();
+        EmbeddedServers.add(EmbeddedServers.Identifiers.JETTY,
+                createServerFactory().withThreadPool(requestThreads));
+        registerThreadPoolMetrics(requestThreads);
+        after((req, res) -> {
+            if (res.type() == null) res.type("application/json");
+        });
         notFound((req, res) -> "{\"status\":\"ERROR\", \"message\":\"Not found\"}");
         internalServerError((req, res) -> "{\"status\":\"ERROR\", \"message\":\"Server error\"}");
     }
 
     private void setupDependencies(){
-        this.accountRepository = new AccountRepository();
-        this.accountService = new AccountService(accountRepository);
-        this.accountController = new AccountController(accountService);
+        try {
+            this.accountRepository = createAccountRepository();
+            this.transferRepository = createTransferRepository();
+            this.writeAheadLog = openWriteAheadLog();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.accountService = new AccountService(accountRepository, writeAheadLog);
+        this.accountController = new AccountController(accountService, createAccountJsonCache());
+
+        this.transferService = new TransferService(accountService, transferRepository, transferExecutionMode(),
+                Integer.getInteger("transfers.shards", Runtime.getRuntime().availableProcessors()));
+        try {
+            transferService.completeHandOffs(unfinishedHandOffs);
+        } catch (AccountNotFoundException e) {
+            throw new IllegalStateException("Log credits an unknown account", e);
+        }
+        this.transferController = new TransferController(transferService, createIdempotencyCache());
+
+        this.snapshotScheduler = scheduleSnapshots();
+    }
+
+    // -Daccounts.store=minor-units keeps balances as long minor units of -Daccounts.currency (EUR by default),
+    // -Daccounts.store=off-heap does the same outside of the heap, memory-mapped if -Daccounts.file is set (scratch
+    // space: emptied on start, deleted on stop)
+    private Repository<Account> createAccountRepository() throws IOException {
+        var store = System.getProperty("accounts.store", "objects");
+        var minorUnits = MinorUnits.of(System.getProperty("accounts.currency", "EUR"));
+        var file = System.getProperty("accounts.file");
+        switch (store) {
+            case "objects":
+                return new AccountRepository();
+            case "minor-units":
+                return new MinorUnitAccountRepository(minorUnits);
+            case "off-heap":
+                return file == null
+                        ? new OffHeapAccountRepository(minorUnits)
+                        : new OffHeapAccountRepository(minorUnits, Path.of(file));
+            default:
+                throw new IllegalArgumentException("Unknown accounts.store: " + store);
+        }
+    }
+
+    // -Dtransfers.execution=ring-buffer applies all transfers on a single writer thread instead of locking accounts,
+    // -Dtransfers.execution=sharded on -Dtransfers.shards writer threads (one per core by default) owning id % shards
+    private static TransferService.ExecutionMode transferExecutionMode() {
+        var execution = System.getProperty("transfers.execution", "locks");
+        switch (execution) {
+            case "locks":
+                return TransferService.ExecutionMode.LOCKS;
+            case "ring-buffer":
+                return TransferService.ExecutionMode.RING_BUFFER;
+            case "sharded":
+                return TransferService.ExecutionMode.SHARDED;
+            default:
+                throw new IllegalArgumentException("Unknown transfers.execution: " + execution);
+        }
+    }
+
+    // -Didempotency.maxKeys Idempotency-Key responses are kept for -Didempotency.ttlSeconds, the oldest ones are
+    // dropped early once there are more
+    private static IdempotencyCache createIdempotencyCache() {
+        return new IdempotencyCache(
+                Integer.getInteger("idempotency.maxKeys", IdempotencyCache.DEFAULT_MAX_KEYS),
+                Long.getLong("idempotency.ttlSeconds", IdempotencyCache.DEFAULT_TTL_SECONDS), TimeUnit.SECONDS);
+    }
+
+    // -Daccounts.cachedResponses GET /accounts/:id bodies are kept rendered for at most this many accounts
+    private static AccountJsonCache createAccountJsonCache() {
+        return new AccountJsonCache(
+                Integer.getInteger("accounts.cachedResponses", AccountJsonCache.DEFAULT_MAX_ACCOUNTS));
+    }
 
-        this.transferRepository = new TransferRepository();
-        this.transferService = new TransferService(accountService, transferRepository);
-        this.transferController = new TransferController(transferService);
+    // -Dtransfers.dir keeps the transfer history in memory-mapped segment files instead of on the heap
+    private TransferRepository createTransferRepository() throws IOException {
+        var directory = System.getProperty("transfers.dir");
+        return directory == null ? new TransferRepository() : new TransferRepository(Path.of(directory));
+    }
+
+    // -Dwal.file makes accounts and transfers durable: every change is fsynced before it is acknowledged, in groups
+    // of up to -Dwal.batchSize or after -Dwal.flushIntervalMicros. On startup the snapshot next to the log is loaded
+    // and only the log written after it is replayed
+    private WriteAheadLog openWriteAheadLog() throws IOException {
+        var file = System.getProperty("wal.file");
+        if (file == null) return null;
+        var log = new WriteAheadLog(Path.of(file),
+                Integer.getInteger("wal.batchSize", 256),
+                Long.getLong("wal.flushIntervalMicros", 200), TimeUnit.MICROSECONDS);
+        snapshotFile = new SnapshotFile(Path.of(file + ".snapshot"));
+        unfinishedHandOffs = Recovery.recover(snapshotFile, log, transferRepository, new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) {
+                accountRepository.restore(account);
+            }
+
+            @Override
+            public void onTransfer(Transfer transfer) {
+                transferRepository.restore(transfer);
+            }
+        });
+        return log;
+    }
+
+    // -Dsnapshot.intervalSeconds between snapshots of a durable (-Dwal.file) service, 0 turns them off
+    private ScheduledExecutorService scheduleSnapshots() {
+        long interval = Long.getLong("snapshot.intervalSeconds", 60);
+        if (writeAheadLog == null || interval <= 0) return null;
+        var snapshotService = new SnapshotService(accountService, transferService, snapshotFile);
+        var scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            var thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshotService.takeSnapshot();
+            } catch (IOException | RuntimeException e) {
+                // the log still has everything, the next attempt starts from scratch
+                LoggerFactory.getLogger(App.class).error("Snapshot failed", e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+        return scheduler;
+    }
+
+    // -Dserver.threads=virtual serves every request on its own virtual thread (Java 21+), by default requests queue
+    // for a pool of -Dserver.maxThreads platform threads
+    private static ThreadPool createRequestThreadPool() {
+        var threads = System.getProperty("server.threads", "platform");
+        switch (threads) {
+            case "platform":
+                return new QueuedThreadPool(Integer.getInteger("server.maxThreads", 10), 8, 60_000);
+            case "virtual":
+                return ThreadPerTaskPool.virtual();
+            default:
+                throw new IllegalArgumentException("Unknown server.threads: " + threads);
+        }
+    }
+
+    // -Dcompression.minBytes responses at least this long are compressed with gzip at -Dcompression.level
+    // (1-9) if the client accepts it, 0 turns compression off
+    private static EmbeddedJettyFactory createServerFactory() {
+        int minBytes = Integer.getInteger("compression.minBytes", CompressionHandler.DEFAULT_MIN_BYTES);
+        if (minBytes <= 0) return new EmbeddedJettyFactory();
+        return new EmbeddedJettyFactory(CompressionHandler.serverFactory(minBytes,
+                Integer.getInteger("compression.level", CompressionHandler.DEFAULT_LEVEL)));
+    }
+
+    private static void registerThreadPoolMetrics(ThreadPool pool) {
+        var metrics = MetricRegistry.DEFAULT;
+        // a thread per request never queues
+        metrics.gauge("jetty_queued_requests", "Requests waiting for a request thread",
+                pool instanceof QueuedThreadPool ? ((QueuedThreadPool) pool)::getQueueSize : () -> 0);
+        metrics.gauge("jetty_threads_busy", "Request threads handling a request",
+                () -> pool.getThreads() - pool.getIdleThreads());
+        metrics.gauge("jetty_threads", "Request threads started", pool::getThreads);
     }
 
     private void setupRoutes(){
         path("/api/v1", () -> {
             path("/accounts", () -> {
-                post("", accountController.createAccount);
-                get("", accountController.getAllAccounts);
-                get("/:id", accountController.getAccount);
-                put("/:id", accountController.updateAccount);
+                post("", TimedRoute.of("POST /api/v1/accounts", accountController.createAccount));
+                get("", TimedRoute.of("GET /api/v1/accounts", accountController.getAllAccounts));
+                get("/:id", TimedRoute.of("GET /api/v1/accounts/:id", accountController.getAccount));
+                put("/:id", TimedRoute.of("PUT /api/v1/accounts/:id", accountController.updateAccount));
+                get("/:id/transfers", TimedRoute.of("GET /api/v1/accounts/:id/transfers",
+                        transferController.getAccountTransfers));
             });
             path("/transfers", () -> {
-                post("", transferController.createTransfer);
-                get("", transferController.getAllTransfers);
-                get("/:id", transferController.getTransfer);
+                post("", TimedRoute.of("POST /api/v1/transfers", transferController.createTransfer));
+                post("/batch", TimedRoute.of("POST /api/v1/transfers/batch", transferController.createTransfers));
+                get("", TimedRoute.of("GET /api/v1/transfers", transferController.getAllTransfers));
+                get("/:id", TimedRoute.of("GET /api/v1/transfers/:id", transferController.getTransfer));
             });
         });
+        get("/metrics", (req, res) -> {
+            res.type("text/plain; version=0.0.4; charset=utf-8");
+            return MetricRegistry.DEFAULT.render();
+        });
     }
 }
@@ -0,0 +1,126 @@
+package com.revolut.moneytransferapp;
+
+import org.eclipse.jetty.server.Handler;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.handler.gzip.GzipHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import spark.embeddedserver.jetty.JettyServerFactory;
+
+import javax.servlet.ServletException;
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpServletResponseWrapper;
+import java.io.IOException;
+
+/**
+ * Jetty's {@link GzipHandler} set up for the API: a response of at least {@code minBytes} is gzipped while it is
+ * written if the request's {@code Accept-Encoding} allows it, so a streamed list is never held in full. Deflaters
+ * are pooled by Jetty. Responses carry {@code Vary: Accept-Encoding}; the {@code ETag} of a gzipped one gets a
+ * {@code --gzip} suffix that is stripped from {@code If-None-Match} again before the request reaches a route.
+ *
+ * Spark flushes every body it writes, which would make Jetty commit the response before it knows whether the body
+ * reaches {@code minBytes} and so compress even the smallest one; a route's flushes are therefore ignored until it
+ * has written {@code minBytes}, after that they go through and a streamed list goes out as it is flushed.
+ */
+final class CompressionHandler extends GzipHandler {
+
+    static final int DEFAULT_MIN_BYTES = 1024;
+    // on a transfer list level 1 saves 77% of the bytes, 6 saves 80% for three times the CPU (CompressionBenchmark)
+    static final int DEFAULT_LEVEL = 1;
+
+    CompressionHandler(Handler handler, int minBytes, int level) {
+        setMinGzipSize(minBytes);
+        setCompressionLevel(level);
+        // the results of POST /transfers/batch are as long as its request
+        setIncludedMethods("GET", "POST");
+        // the API has no browsers to exclude, the responses then vary by Accept-Encoding only
+        setExcludedAgentPatterns();
+        // what a route flushes is sent right away rather than kept in the deflater until its buffer fills up
+        setSyncFlush(true);
+        setHandler(handler);
+    }
+
+    @Override
+    public void handle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        super.handle(target, baseRequest, request, new HttpServletResponseWrapper(response) {
+            private DeferredFlushOutputStream out;
+
+            @Override
+            public ServletOutputStream getOutputStream() throws IOException {
+                if (out == null) out = new DeferredFlushOutputStream(super.getOutputStream(), getMinGzipSize());
+                return out;
+            }
+        });
+    }
+
+    private static final class DeferredFlushOutputStream extends ServletOutputStream {
+        private final ServletOutputStream out;
+        private final int minBytes;
+        private long written;
+
+        DeferredFlushOutputStream(ServletOutputStream out, int minBytes) {
+            this.out = out;
+            this.minBytes = minBytes;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            written++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            written += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            // see the class comment, below minBytes closing the response flushes it
+            if (written >= minBytes) out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return out.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            out.setWriteListener(writeListener);
+        }
+    }
+
+    /**
+     * Creates Spark's Jetty server with a compression handler around whatever handler Spark sets on it.
+     */
+    static JettyServerFactory serverFactory(int minBytes, int level) {
+        return new JettyServerFactory() {
+            @Override
+            public Server create(int maxThreads, int minThreads, int threadTimeoutMillis) {
+                return create(new QueuedThreadPool(maxThreads, minThreads, threadTimeoutMillis));
+            }
+
+            @Override
+            public Server create(ThreadPool threadPool) {
+                return new Server(threadPool) {
+                    @Override
+                    public void setHandler(Handler handler) {
+                        super.setHandler(new CompressionHandler(handler, minBytes, level));
+                    }
+                };
+            }
+        };
+    }
+}
@@ -0,0 +1,143 @@
+package com.revolut.moneytransferapp;
+
+import org.eclipse.jetty.util.component.AbstractLifeCycle;
+import org.eclipse.jetty.util.thread.ThreadPool;
+import org.eclipse.jetty.util.thread.TryExecutor;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Jetty thread pool that starts a new thread for every task instead of queueing it for a fixed set of workers.
+ * With virtual threads a request blocked on I/O (e.g. the fsync of a durable transfer) only parks its own
+ * thread, so the number of requests in flight is no longer capped by the size of the pool.
+ *
+ * The project is compiled for Java 11, so virtual threads are looked up reflectively; {@link #virtual()}
+ * fails on a JVM without them (before 21).
+ */
+final class ThreadPerTaskPool extends AbstractLifeCycle implements ThreadPool, TryExecutor {
+
+    private final ThreadFactory threadFactory;
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    // notified whenever a thread leaves threads
+    private final Object finished = new Object();
+    private volatile CountDownLatch stopped = new CountDownLatch(1);
+
+    ThreadPerTaskPool(ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+    }
+
+    static ThreadPerTaskPool virtual() {
+        return new ThreadPerTaskPool(virtualThreadFactory("request-"));
+    }
+
+    static boolean virtualThreadsSupported() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    // Thread.ofVirtual().name(prefix, 0).factory()
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        if (!virtualThreadsSupported())
+            throw new IllegalStateException("Virtual threads need Java 21 or later, running on "
+                    + System.getProperty("java.version"));
+        try {
+            var builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            var builderType = Class.forName("java.lang.Thread$Builder");
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can not create virtual threads", e);
+        }
+    }
+
+    @Override
+    protected void doStart() {
+        stopped = new CountDownLatch(1);
+    }
+
+    @Override
+    protected void doStop() throws InterruptedException {
+        // no thread is added any more (see execute); the ones still handling a request get the stop timeout to
+        // finish, then they are interrupted and get the stop timeout again to return
+        long timeout = TimeUnit.MILLISECONDS.toNanos(getStopTimeout());
+        if (!awaitFinished(timeout)) {
+            for (var thread : threads)
+                thread.interrupt();
+            awaitFinished(timeout);
+        }
+        stopped.countDown();
+    }
+
+    // true once every thread has left threads
+    private boolean awaitFinished(long timeoutNanos) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutNanos;
+        synchronized (finished) {
+            while (!threads.isEmpty()) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) return false;
+                finished.wait(Math.max(1, TimeUnit.NANOSECONDS.toMillis(remaining)));
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (!isRunning())
+            throw new RejectedExecutionException("Thread pool is not running");
+        var thread = threadFactory.newThread(() -> {
+            try {
+                task.run();
+            } finally {
+                threads.remove(Thread.currentThread());
+                synchronized (finished) {
+                    finished.notifyAll();
+                }
+            }
+        });
+        // registered before it starts, so it can not be removed before it was added
+        threads.add(thread);
+        thread.start();
+    }
+
+    // a thread can always be started, so Jetty may hand work over instead of running it on the selector
+    @Override
+    public boolean tryExecute(Runnable task) {
+        try {
+            execute(task);
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void join() throws InterruptedException {
+        stopped.await();
+    }
+
+    // threads currently running a task, including Jetty's acceptors and selectors
+    @Override
+    public int getThreads() {
+        return threads.size();
+    }
+
+    @Override
+    public int getIdleThreads() {
+        return 0;
+    }
+
+    @Override
+    public boolean isLowOnThreads() {
+        return false;
+    }
+}
@@ -1,10 +1,10 @@
 package com.revolut.moneytransferapp.controller;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
-import com.google.gson.reflect.TypeToken;
+import com.revolut.moneytransferapp.controller.resthelpers.AccountJsonCache;
 import com.revolut.moneytransferapp.controller.resthelpers.JsonResponse;
+import com.revolut.moneytransferapp.controller.resthelpers.PageRequest;
 import com.revolut.moneytransferapp.controller.resthelpers.ResponseStatus;
+import com.revolut.moneytransferapp.controller.resthelpers.WireFormat;
 import com.revolut.moneytransferapp.model.Account;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
 import com.revolut.moneytransferapp.service.AccountService;
@@ -13,48 +13,68 @@ import spark.Request;
 import spark.Response;
 import spark.Route;
 
-import java.net.URLDecoder;
-import java.util.List;
-
 public class AccountController {
 
     private AccountService accountService;
-    private Gson gson;
+    private AccountJsonCache accountJsonCache;
 
     public AccountController(AccountService service) {
+        this(service, new AccountJsonCache(AccountJsonCache.DEFAULT_MAX_ACCOUNTS));
+    }
+
+    public AccountController(AccountService service, AccountJsonCache accountJsonCache) {
         accountService = service;
-        gson = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+        this.accountJsonCache = accountJsonCache;
     }
 
+    // ?after=<id>&limit=<n> returns one page and the cursor of the next one, no parameters the whole list
     public Route getAllAccounts = (Request request, Response response) -> {
-                var accounts = accountService.getAccounts();
-                var token = new TypeToken<List<Account>>(){}.getType();
-                var responseData = gson.toJsonTree(accounts, token);
-                var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, responseData);
-                return new Gson().toJson(jsonResponse);
+                var format = WireFormat.ofResponse(request, response);
+                PageRequest page;
+                try {
+                    page = PageRequest.of(request);
+                } catch (IllegalArgumentException e) {
+                    response.status(422);
+                    var respString = "Incorrect query parameters";
+                    var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+                    return format.write(response, jsonResponse);
+                }
+                // streamed, the response never holds more than one account
+                if (page == null)
+                    return format.writeList(response, Account.class, accountService::forEachAccount, null);
+                var accounts = accountService.getAccounts(page.getAfterId(), page.getLimit());
+                var next = accounts.size() < page.getLimit() ? null : accounts.get(accounts.size() - 1).getId();
+                return format.writeList(response, Account.class, accounts::forEach, next);
             };
 
+    // the version is the ETag: If-None-Match with it is answered with a 304, otherwise the rendered JSON is reused
     public Route getAccount = (Request request, Response response) -> {
+                var format = WireFormat.ofResponse(request, response);
                 var accountId = Integer.parseInt(request.params("id"));
                 try {
                     var account = accountService.getAccountById(accountId);
+                    var etag = accountJsonCache.etag(account, format);
+                    response.header("ETag", etag);
+                    if (AccountJsonCache.notModified(request, etag)) {
+                        response.status(304);
+                        return "";
+                    }
                     response.status(200);
-                    var responseData = gson.toJsonTree(account);
-                    var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, responseData);
-                    return new Gson().toJson(jsonResponse);
+                    return format == WireFormat.JSON ? accountJsonCache.render(account)
+                            : format.write(response, new JsonResponse(ResponseStatus.SUCCESS, account));
                 } catch (AccountNotFoundException e){
                     response.status(404);
                     var respString = "Account not found";
                     var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-                    return new Gson().toJson(jsonResponse);
+                    return format.write(response, jsonResponse);
                 }
             };
 
     public Route createAccount = (Request request, Response response) -> accountService.createAccount();
 
     public Route updateAccount = (Request request, Response response) -> {
-                var decodedBody = URLDecoder.decode(request.body(), "UTF-8");
-                var accFromRequest = new Gson().fromJson(decodedBody, Account.class);
+                var format = WireFormat.ofResponse(request, response);
+                var accFromRequest = WireFormat.ofBody(request).read(request, Account.class);
                 var idToUpdate = Integer.parseInt(request.params("id"));
                 accFromRequest.setId(idToUpdate);
 
@@ -62,24 +82,29 @@ public class AccountController {
                     response.status(422);
                     var respString = "Incorrect body info";
                     var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-                    return new Gson().toJson(jsonResponse);
+                    return format.write(response, jsonResponse);
                 } else {
                     try {
                         accountService.updateAccount(accFromRequest);
                         response.status(200);
                         var respString = "Account updated";
                         var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, respString);
-                        return new Gson().toJson(jsonResponse);
+                        return format.write(response, jsonResponse);
                     } catch(AccountNotFoundException e) {
                         response.status(404);
                         var respString = "Account not found";
                         var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-                        return new Gson().toJson(jsonResponse);
+                        return format.write(response, jsonResponse);
+                    } catch (ArithmeticException e) {
+                        response.status(422);
+                        var respString = "Incorrect body info";
+                        var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+                        return format.write(response, jsonResponse);
                     } catch (OptimisticLockException e) {
                         response.status(409);
                         var respString = "Information changed during the execution of your request, please retry";
                         var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-                        return new Gson().toJson(jsonResponse);
+                        return format.write(response, jsonResponse);
                     }
                 }
             };
@@ -1,9 +1,12 @@
 package com.revolut.moneytransferapp.controller;
 
-import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.JsonParseException;
+import com.revolut.moneytransferapp.controller.resthelpers.IdempotencyCache;
 import com.revolut.moneytransferapp.controller.resthelpers.JsonResponse;
+import com.revolut.moneytransferapp.controller.resthelpers.PageRequest;
 import com.revolut.moneytransferapp.controller.resthelpers.ResponseStatus;
+import com.revolut.moneytransferapp.controller.resthelpers.TimeRange;
+import com.revolut.moneytransferapp.controller.resthelpers.WireFormat;
 import com.revolut.moneytransferapp.model.Transfer;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
 import com.revolut.moneytransferapp.service.TransferService;
@@ -14,69 +17,167 @@ import spark.Request;
 import spark.Response;
 import spark.Route;
 
-import java.net.URLDecoder;
-import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
 
 public class TransferController {
 
     private TransferService transferService;
+    private IdempotencyCache idempotencyCache;
 
     public TransferController(TransferService service){
+        this(service, new IdempotencyCache(IdempotencyCache.DEFAULT_MAX_KEYS,
+                IdempotencyCache.DEFAULT_TTL_SECONDS, TimeUnit.SECONDS));
+    }
+
+    public TransferController(TransferService service, IdempotencyCache idempotencyCache){
         transferService = service;
+        this.idempotencyCache = idempotencyCache;
     }
 
+    // ?after=<id>&limit=<n> returns one page and the cursor of the next one, ?from=<millis>&to=<millis> every
+    // transfer committed in that time range, no parameters the whole list
     public Route getAllTransfers = (Request request, Response response) -> {
-        var transfers = transferService.getTransfers();
-        var token = new TypeToken<List<Transfer>>(){}.getType();
-        var responseData = new Gson().toJsonTree(transfers, token);
-        var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, responseData);
-        return new Gson().toJson(jsonResponse);
+        var format = WireFormat.ofResponse(request, response);
+        PageRequest page;
+        TimeRange range;
+        try {
+            page = PageRequest.of(request);
+            range = TimeRange.of(request);
+            if (page != null && range != null)
+                throw new IllegalArgumentException("Pages and time ranges can not be combined");
+        } catch (IllegalArgumentException e) {
+            response.status(422);
+            var respString = "Incorrect query parameters";
+            var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+            return format.write(response, jsonResponse);
+        }
+        // streamed, the response never holds more than one transfer
+        if (range != null)
+            return format.writeList(response, Transfer.class,
+                    action -> transferService.forEachTransferBetween(range.getFrom(), range.getTo(), action), null);
+        if (page == null)
+            return format.writeList(response, Transfer.class, transferService::forEachTransfer, null);
+        var transfers = transferService.getTransfers(page.getAfterId(), page.getLimit());
+        var next = transfers.size() < page.getLimit() ? null : transfers.get(transfers.size() - 1).getId();
+        return format.writeList(response, Transfer.class, transfers::forEach, next);
+    };
+
+    // GET /accounts/:id/transfers?after=<id>&limit=<n>, always one page: without parameters the first one
+    public Route getAccountTransfers = (Request request, Response response) -> {
+        var format = WireFormat.ofResponse(request, response);
+        var accountId = Integer.parseInt(request.params("id"));
+        PageRequest page;
+        try {
+            page = PageRequest.of(request);
+        } catch (IllegalArgumentException e) {
+            response.status(422);
+            var respString = "Incorrect query parameters";
+            var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+            return format.write(response, jsonResponse);
+        }
+        if (page == null) page = PageRequest.first();
+        try {
+            var transfers = transferService.getTransfersOfAccount(accountId, page.getAfterId(), page.getLimit());
+            var next = transfers.size() < page.getLimit() ? null : transfers.get(transfers.size() - 1).getId();
+            return format.writeList(response, Transfer.class, transfers::forEach, next);
+        } catch (AccountNotFoundException e) {
+            response.status(404);
+            var respString = "Account not found";
+            var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+            return format.write(response, jsonResponse);
+        }
     };
 
     public Route getTransfer = (Request request, Response response) -> {
+        var format = WireFormat.ofResponse(request, response);
         var transferId = Integer.parseInt(request.params("id"));
         try {
             var account = transferService.getTransfer(transferId);
             response.status(200);
-            var responseData = new Gson().toJsonTree(account);
-            var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, responseData);
-            return new Gson().toJson(jsonResponse);
+            var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, account);
+            return format.write(response, jsonResponse);
         } catch (TransferNotFoundException e){
             response.status(404);
             var respString = "Transfer not found";
             var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-            return new Gson().toJson(jsonResponse);
+            return format.write(response, jsonResponse);
         }
     };
 
+    // a retry with the same Idempotency-Key header gets the response of the first request, the transfer runs once
     public Route createTransfer = (Request request, Response response) -> {
+        var idempotencyKey = request.headers("Idempotency-Key");
+        return idempotencyKey == null
+                ? transfer(request, response)
+                : idempotencyCache.handle(idempotencyKey, request, response, this::transfer);
+    };
+
+    private Object transfer(Request request, Response response) {
+        var format = WireFormat.ofResponse(request, response);
         try {
-            var decodedBody = URLDecoder.decode(request.body(), "UTF-8");
-            var t = new Gson().fromJson(decodedBody, Transfer.class);
+            var t = WireFormat.ofBody(request).read(request, Transfer.class);
             transferService.createTransfer(t.getBenefactorId(), t.getBeneficiaryId(), t.getAmount());
             response.status(200);
             var respString = "Transfer successful";
             var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, respString);
-            return new Gson().toJson(jsonResponse);
+            return format.write(response, jsonResponse);
         } catch (InvalidTransferException e) {
             response.status(400);
             var jsonResponse = new JsonResponse(ResponseStatus.ERROR, e.getMessage());
-            return new Gson().toJson(jsonResponse);
+            return format.write(response, jsonResponse);
         } catch (AccountNotFoundException e) {
             response.status(404);
             var respString = "Account not found";
             var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-            return new Gson().toJson(jsonResponse);
-        } catch (NullPointerException e){
+            return format.write(response, jsonResponse);
+        } catch (NullPointerException | ArithmeticException | IllegalArgumentException e){
             response.status(422);
             var respString = "Incorrect request body";
             var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-            return new Gson().toJson(jsonResponse);
+            return format.write(response, jsonResponse);
         } catch (OptimisticLockException e) {
             response.status(409);
             var respString = "Information changed during the execution of your request, please retry";
             var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
-            return new Gson().toJson(jsonResponse);
+            return format.write(response, jsonResponse);
+        }
+    }
+
+    // POST body: [{"benefactor":1, "beneficiary":2, "amount":0.5}, ...], every transfer gets its own outcome
+    public Route createTransfers = (Request request, Response response) -> {
+        var format = WireFormat.ofResponse(request, response);
+        Transfer[] transfers;
+        try {
+            transfers = WireFormat.ofBody(request).read(request, Transfer[].class);
+            if (transfers == null) throw new JsonParseException("Empty body");
+        } catch (JsonParseException | IllegalArgumentException e) {
+            response.status(422);
+            var respString = "Incorrect request body";
+            var jsonResponse = new JsonResponse(ResponseStatus.ERROR, respString);
+            return format.write(response, jsonResponse);
         }
+        var results = transferService.createTransfers(Arrays.asList(transfers));
+        var responseData = new ArrayList<JsonResponse>(results.size());
+        for (var result : results) {
+            responseData.add(result.isSuccessful()
+                    ? new JsonResponse(ResponseStatus.SUCCESS, result.getTransfer())
+                    : new JsonResponse(ResponseStatus.ERROR, failureMessage(result.getFailure())));
+        }
+        response.status(200);
+        var jsonResponse = new JsonResponse(ResponseStatus.SUCCESS, responseData);
+        return format.write(response, jsonResponse);
     };
+
+    // same messages as the single transfer route
+    private static String failureMessage(Throwable failure) {
+        if (failure instanceof InvalidTransferException) return failure.getMessage();
+        if (failure instanceof AccountNotFoundException) return "Account not found";
+        if (failure instanceof NullPointerException || failure instanceof ArithmeticException)
+            return "Incorrect request body";
+        if (failure instanceof OptimisticLockException)
+            return "Information changed during the execution of your request, please retry";
+        return "Server error";
+    }
 }
@@ -0,0 +1,54 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.moneytransferapp.model.Account;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * {@code {"balance":1.01,"id":1}}, the exposed fields of an account in the order reflection wrote them.
+ * The version stays internal; unknown fields in a request body are skipped.
+ */
+class AccountAdapter extends TypeAdapter<Account> {
+
+    @Override
+    public void write(JsonWriter out, Account account) throws IOException {
+        if (account == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (account.getBalance() != null) out.name("balance").value(account.getBalance());
+        if (account.getId() != null) out.name("id").value(account.getId());
+        out.endObject();
+    }
+
+    @Override
+    public Account read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Integer id = null;
+        BigDecimal balance = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "balance":
+                    balance = JsonCodecs.readDecimal(in);
+                    break;
+                case "id":
+                    id = JsonCodecs.readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        return new Account(id, balance);
+    }
+}
@@ -0,0 +1,128 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+import com.revolut.moneytransferapp.model.Account;
+import spark.Request;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Rendered {@code GET /accounts/:id} responses, keyed by account id and version. A stored account never changes
+ * without a new version, so the bytes rendered for a version are reused until the version moves on; only the
+ * latest rendered version of at most {@code maxAccounts} accounts is kept, the account rendered first is dropped
+ * first. The version doubles as the {@code ETag} of the response, a client sending it back in
+ * {@code If-None-Match} gets a 304 without any rendering at all.
+ *
+ * Versions start over when a service without a write-ahead log restarts, so the tag also carries an epoch drawn
+ * for every cache: a tag of an earlier process never matches.
+ */
+public final class AccountJsonCache {
+
+    public static final int DEFAULT_MAX_ACCOUNTS = 100_000;
+
+    private static final LongAdder CACHED = response("cached");
+    private static final LongAdder RENDERED = response("rendered");
+    private static final LongAdder NOT_MODIFIED = response("not_modified");
+
+    private static final class Rendered {
+        final int version;
+        final byte[] body;
+
+        Rendered(int version, byte[] body) {
+            this.version = version;
+            this.body = body;
+        }
+    }
+
+    private final int maxAccounts;
+    private final String epoch = Integer.toHexString(ThreadLocalRandom.current().nextInt());
+    private final Map<Integer, Rendered> rendered = new ConcurrentHashMap<>();
+    // the ids in rendered, in the order they were added
+    private final Queue<Integer> arrivals = new ConcurrentLinkedQueue<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public AccountJsonCache(int maxAccounts) {
+        if (maxAccounts <= 0) throw new IllegalArgumentException("maxAccounts has to be positive");
+        this.maxAccounts = maxAccounts;
+    }
+
+    /**
+     * @return the UTF-8 bytes of {@code {"status":"SUCCESS","data":<account>}}
+     */
+    public byte[] render(Account account) {
+        var cached = rendered.get(account.getId());
+        if (cached != null && cached.version == account.getVersion()) {
+            CACHED.increment();
+            return cached.body;
+        }
+        RENDERED.increment();
+        var body = JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, account))
+                .getBytes(StandardCharsets.UTF_8);
+        var entry = new Rendered(account.getVersion(), body);
+        while (true) {
+            var previous = rendered.putIfAbsent(account.getId(), entry);
+            if (previous == null) {
+                arrivals.add(account.getId());
+                if (rendered.size() > maxAccounts) evictOldest();
+                break;
+            }
+            // a reader of an older version must not replace a newer one rendered meanwhile
+            if (previous.version >= entry.version || rendered.replace(account.getId(), previous, entry)) break;
+        }
+        return body;
+    }
+
+    int size() {
+        return rendered.size();
+    }
+
+    private void evictOldest() {
+        // one evictor at a time; the others carry on, the size bound is overshot by at most one account per thread
+        if (!evictionLock.tryLock()) return;
+        try {
+            Integer oldest;
+            while (rendered.size() > maxAccounts && (oldest = arrivals.poll()) != null)
+                rendered.remove(oldest);
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the tag of the account's version in the format; the binary body is another representation of the same
+     *         version, so it gets a tag of its own
+     */
+    public String etag(Account account, WireFormat format) {
+        var suffix = format == WireFormat.JSON ? "" : "-binary";
+        return "\"" + epoch + "-" + account.getVersion() + suffix + "\"";
+    }
+
+    /**
+     * @return true if the request's {@code If-None-Match} lists the tag (weak or strong) or is {@code *}
+     */
+    public static boolean notModified(Request request, String etag) {
+        var ifNoneMatch = request.headers("If-None-Match");
+        if (ifNoneMatch == null) return false;
+        for (var tag : ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals("*") || tag.equals(etag)) {
+                NOT_MODIFIED.increment();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static LongAdder response(String body) {
+        return MetricRegistry.DEFAULT.counter("account_responses_total",
+                "GET /accounts/:id responses by how the body was produced", "body", body);
+    }
+}
@@ -0,0 +1,225 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import spark.Response;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Compact binary encoding of the REST API for high-volume clients, {@value #MEDIA_TYPE}. A body is a sequence of
+ * frames, each an {@code int} length followed by that many bytes; numbers are big endian and fixed width, amounts
+ * a {@code byte} scale and a {@code long} unscaled value. A reader skips the bytes of a frame it does not know.
+ * <pre>
+ * response := header, item*             request := item*
+ * header   := byte status (0 SUCCESS, 1 ERROR), int next (-1 none), utf-8 message (the rest, may be empty)
+ * account  := int id, amount balance
+ * transfer := int id (-1 none), int benefactor, int beneficiary, amount, long timestamp (Long.MIN_VALUE none)
+ * result   := byte status, transfer if SUCCESS or utf-8 message if ERROR   (items of a batch response)
+ * </pre>
+ * Nothing is parsed as text or URL-decoded, an item is read in a few array accesses.
+ */
+public final class BinaryCodecs {
+
+    public static final String MEDIA_TYPE = "application/x-moneytransfer";
+
+    static final int LENGTH_SIZE = Integer.BYTES;
+    static final int AMOUNT_SIZE = Byte.BYTES + Long.BYTES;
+    static final int HEADER_SIZE = Byte.BYTES + Integer.BYTES;
+    static final int ACCOUNT_SIZE = Integer.BYTES + AMOUNT_SIZE;
+    static final int TRANSFER_SIZE = 3 * Integer.BYTES + AMOUNT_SIZE + Long.BYTES;
+
+    private static final int NONE = -1;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+    private static final byte[] NO_MESSAGE = new byte[0];
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private BinaryCodecs() {
+    }
+
+    /**
+     * Reads a request body of {@link Account}, {@link Transfer} or {@code Transfer[]} items.
+     * @return null for an empty body
+     * @throws IllegalArgumentException if the body is not a sequence of complete frames of the type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T read(byte[] body, Class<T> type) {
+        if (body.length == 0) return null;
+        var in = ByteBuffer.wrap(body);
+        try {
+            if (type == Transfer[].class) {
+                var transfers = new ArrayList<Transfer>();
+                while (in.hasRemaining())
+                    transfers.add(readTransfer(in, frame(in, TRANSFER_SIZE)));
+                return (T) transfers.toArray(new Transfer[0]);
+            }
+            T item;
+            if (type == Transfer.class) item = (T) readTransfer(in, frame(in, TRANSFER_SIZE));
+            else if (type == Account.class) item = (T) readAccount(in, frame(in, ACCOUNT_SIZE));
+            else throw new IllegalArgumentException("No binary encoding of " + type.getSimpleName());
+            if (in.hasRemaining()) throw new IllegalArgumentException("Body holds more than one item");
+            return item;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Truncated frame", e);
+        }
+    }
+
+    /**
+     * @return the header frame, then a frame for the data: an {@link Account}, a {@link Transfer} or a list of
+     *         {@link JsonResponse}s holding transfers or messages (the results of a batch)
+     */
+    public static byte[] write(JsonResponse response) {
+        var message = response.getMessage() == null ? NO_MESSAGE : response.getMessage().getBytes(StandardCharsets.UTF_8);
+        var data = response.getData();
+        var out = ByteBuffer.allocate(LENGTH_SIZE + HEADER_SIZE + message.length + sizeOf(data));
+        putHeader(out, response.getStatus(), null, message);
+        if (data instanceof List) {
+            for (var item : (List<?>) data)
+                putItem(out, item);
+        } else if (data != null) {
+            putItem(out, data);
+        }
+        return out.array();
+    }
+
+    /**
+     * Binary counterpart of {@link JsonListWriter#write}: the header frame, then a frame per item, streamed to the
+     * servlet output stream in chunks while the items are being read.
+     */
+    public static <T> String writeList(Response response, Class<T> itemType, Consumer<Consumer<T>> items,
+                                       Integer next) throws IOException {
+        response.status(200);
+        response.type(MEDIA_TYPE);
+        var out = response.raw().getOutputStream();
+        var buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        putHeader(buffer, ResponseStatus.SUCCESS, next, NO_MESSAGE);
+        int itemSize = LENGTH_SIZE + (itemType == Account.class ? ACCOUNT_SIZE : TRANSFER_SIZE);
+        try {
+            items.accept(item -> {
+                if (buffer.remaining() < itemSize) drain(buffer, out);
+                putItem(buffer, item);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        drain(buffer, out);
+        out.flush();
+        return "";
+    }
+
+    private static void drain(ByteBuffer buffer, OutputStream out) {
+        try {
+            out.write(buffer.array(), 0, buffer.position());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        buffer.clear();
+    }
+
+    private static int sizeOf(Object data) {
+        if (data == null) return 0;
+        if (data instanceof Account) return LENGTH_SIZE + ACCOUNT_SIZE;
+        if (data instanceof Transfer) return LENGTH_SIZE + TRANSFER_SIZE;
+        if (data instanceof JsonResponse) {
+            var result = (JsonResponse) data;
+            return LENGTH_SIZE + Byte.BYTES + (result.getData() != null
+                    ? TRANSFER_SIZE : result.getMessage().getBytes(StandardCharsets.UTF_8).length);
+        }
+        if (data instanceof List) {
+            int size = 0;
+            for (var item : (List<?>) data)
+                size += sizeOf(item);
+            return size;
+        }
+        throw new IllegalArgumentException("No binary encoding of " + data.getClass().getSimpleName());
+    }
+
+    private static void putItem(ByteBuffer out, Object item) {
+        if (item instanceof Account) {
+            putAccount(out.putInt(ACCOUNT_SIZE), (Account) item);
+        } else if (item instanceof Transfer) {
+            putTransfer(out.putInt(TRANSFER_SIZE), (Transfer) item);
+        } else if (item instanceof JsonResponse && ((JsonResponse) item).getData() != null) {
+            var result = (JsonResponse) item;
+            out.putInt(Byte.BYTES + TRANSFER_SIZE).put(status(result.getStatus()));
+            putTransfer(out, (Transfer) result.getData());
+        } else if (item instanceof JsonResponse) {
+            var result = (JsonResponse) item;
+            var message = result.getMessage().getBytes(StandardCharsets.UTF_8);
+            out.putInt(Byte.BYTES + message.length).put(status(result.getStatus())).put(message);
+        } else {
+            throw new IllegalArgumentException("No binary encoding of " + item.getClass().getSimpleName());
+        }
+    }
+
+    private static void putHeader(ByteBuffer out, ResponseStatus status, Integer next, byte[] message) {
+        out.putInt(HEADER_SIZE + message.length)
+                .put(status(status))
+                .putInt(next == null ? NONE : next)
+                .put(message);
+    }
+
+    private static void putAccount(ByteBuffer out, Account account) {
+        out.putInt(account.getId() == null ? NONE : account.getId());
+        putAmount(out, account.getBalance());
+    }
+
+    private static void putTransfer(ByteBuffer out, Transfer transfer) {
+        out.putInt(transfer.getId() == null ? NONE : transfer.getId())
+                .putInt(transfer.getBenefactorId())
+                .putInt(transfer.getBeneficiaryId());
+        putAmount(out, transfer.getAmount());
+        out.putLong(transfer.getTimestamp() == null ? NO_TIMESTAMP : transfer.getTimestamp());
+    }
+
+    /**
+     * @throws ArithmeticException if the unscaled value does not fit a long or the scale a byte
+     */
+    private static void putAmount(ByteBuffer out, BigDecimal amount) {
+        int scale = amount.scale();
+        if (scale != (byte) scale) throw new ArithmeticException("Scale out of range: " + scale);
+        out.put((byte) scale).putLong(amount.unscaledValue().longValueExact());
+    }
+
+    private static byte status(ResponseStatus status) {
+        return (byte) (status == ResponseStatus.SUCCESS ? 0 : 1);
+    }
+
+    // position after the frame, the item is read from the current position
+    private static int frame(ByteBuffer in, int minLength) {
+        int length = in.getInt();
+        if (length < minLength || length > in.remaining())
+            throw new IllegalArgumentException("Frame of " + length + " bytes, expected at least " + minLength);
+        return in.position() + length;
+    }
+
+    private static Account readAccount(ByteBuffer in, int end) {
+        int id = in.getInt();
+        var account = new Account(id == NONE ? null : id, readAmount(in));
+        in.position(end);
+        return account;
+    }
+
+    // the timestamp of a request is left out, a transfer gets it when it is committed
+    private static Transfer readTransfer(ByteBuffer in, int end) {
+        int id = in.getInt();
+        var transfer = new Transfer(in.getInt(), in.getInt(), readAmount(in));
+        transfer.setId(id == NONE ? null : id);
+        in.position(end);
+        return transfer;
+    }
+
+    private static BigDecimal readAmount(ByteBuffer in) {
+        int scale = in.get();
+        return BigDecimal.valueOf(in.getLong(), scale);
+    }
+}
@@ -0,0 +1,235 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+import spark.Request;
+import spark.Response;
+import spark.Route;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Responses of requests sent with an {@code Idempotency-Key} header, so that a retried request gets the original
+ * response instead of being executed again. A duplicate arriving while the original is still running waits for it.
+ *
+ * Keys are kept for {@code ttl} and at most {@code maxKeys} of them: all keys live equally long, so the order in
+ * which they were first seen is also the order in which they expire, and one FIFO queue serves both the TTL and the
+ * size bound. Memory therefore stays at {@code maxKeys} entries (about 350 bytes each with a UUID key) however
+ * many keys arrive; under a higher rate keys simply leave before their TTL. A key whose request is still running is
+ * never dropped, a retry has to wait for it rather than run it a second time; until it completes the keys behind it
+ * stay too and the bound is overshot by the requests in flight.
+ *
+ * Responses that ask the client to try again (409, 5xx) are not kept, the retry runs the request. Their keys do not
+ * count against {@code maxKeys}; the queue drops them once they reach its head, or all at once when there are more
+ * than {@code maxKeys} of them.
+ */
+public final class IdempotencyCache {
+
+    public static final int DEFAULT_MAX_KEYS = 100_000;
+    public static final long DEFAULT_TTL_SECONDS = 3600;
+    // keeps a single entry bounded no matter what the client sends
+    static final int MAX_KEY_LENGTH = 255;
+
+    private static final LongAdder REPLAYS = MetricRegistry.DEFAULT.counter("idempotent_replays_total",
+            "Requests answered with the stored response of an earlier request with the same Idempotency-Key");
+
+    /**
+     * Status, content type (null for the default) and body of a response, as returned by the request that ran or
+     * replayed from the cache.
+     */
+    static final class Reply {
+        final int status;
+        final String type;
+        final Object body;
+        final boolean replayed;
+
+        Reply(int status, Object body) {
+            this(status, null, body, false);
+        }
+
+        Reply(int status, String type, Object body) {
+            this(status, type, body, false);
+        }
+
+        private Reply(int status, String type, Object body, boolean replayed) {
+            this.status = status;
+            this.type = type;
+            this.body = body;
+            this.replayed = replayed;
+        }
+    }
+
+    /**
+     * The key was already used for a request with a different body.
+     */
+    static final class KeyReusedException extends IllegalArgumentException {
+        KeyReusedException() {
+            super("Idempotency-Key was already used for a different request");
+        }
+    }
+
+    private static final class Entry {
+        final String key;
+        final long fingerprint;
+        final long expiresAt;
+        // completed with null if the response is not kept
+        final CompletableFuture<Reply> reply = new CompletableFuture<>();
+
+        Entry(String key, long fingerprint, long expiresAt) {
+            this.key = key;
+            this.fingerprint = fingerprint;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    private final int maxKeys;
+    private final long ttlNanos;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    // every entry ever added and not evicted yet, oldest first; dropped entries are skipped when they come up
+    private final Queue<Entry> arrivals = new ConcurrentLinkedQueue<>();
+    // entries dropped from the map (not kept, expired) that are still in arrivals
+    private final AtomicInteger dropped = new AtomicInteger();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    public IdempotencyCache(int maxKeys, long ttl, TimeUnit unit) {
+        if (maxKeys <= 0) throw new IllegalArgumentException("maxKeys has to be positive");
+        this.maxKeys = maxKeys;
+        this.ttlNanos = unit.toNanos(ttl);
+        MetricRegistry.DEFAULT.gauge("idempotency_keys", "Idempotency keys kept", entries::size);
+    }
+
+    /**
+     * Runs the route once per key, duplicates get the status and body it returned.
+     * The key has to be non-empty and at most {@value #MAX_KEY_LENGTH} characters long.
+     */
+    public Object handle(String key, Request request, Response response, Route route) throws Exception {
+        if (key.isEmpty() || key.length() > MAX_KEY_LENGTH)
+            return error(request, response, "Incorrect Idempotency-Key");
+        Reply reply;
+        try {
+            reply = handle(key, request.bodyAsBytes(), () -> {
+                var body = route.handle(request, response);
+                return new Reply(response.status(), response.type(), body);
+            });
+        } catch (KeyReusedException e) {
+            return error(request, response, e.getMessage());
+        }
+        if (reply.replayed) {
+            REPLAYS.increment();
+            response.status(reply.status);
+            if (reply.type != null) response.type(reply.type);
+            // the stored body was negotiated by Accept, see WireFormat.ofResponse
+            response.raw().addHeader("Vary", "Accept");
+            response.header("Idempotent-Replayed", "true");
+        }
+        return reply.body;
+    }
+
+    /**
+     * @throws KeyReusedException if the key was used for a request with a different body
+     */
+    Reply handle(String key, byte[] requestBody, Callable<Reply> action) throws Exception {
+        long fingerprint = fingerprint(requestBody);
+        while (true) {
+            long now = System.nanoTime();
+            var entry = new Entry(key, fingerprint, now + ttlNanos);
+            var existing = entries.putIfAbsent(key, entry);
+            if (existing == null) {
+                arrivals.add(entry);
+                evict(now);
+                return execute(entry, action);
+            }
+            if (existing.expiresAt - now <= 0 && existing.reply.isDone()) {
+                drop(existing);
+                continue;
+            }
+            if (existing.fingerprint != fingerprint)
+                throw new KeyReusedException();
+            var stored = existing.reply.join();
+            // the original was not kept (e.g. a conflict), the first duplicate to get here runs it again
+            if (stored == null) continue;
+            return new Reply(stored.status, stored.type, stored.body, true);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    private Reply execute(Entry entry, Callable<Reply> action) throws Exception {
+        Reply reply;
+        try {
+            reply = action.call();
+        } catch (Exception | Error e) {
+            forget(entry);
+            throw e;
+        }
+        // a JSON or a binary body can be replayed, anything else (a stream already written) can not
+        boolean replayable = reply.body instanceof String || reply.body instanceof byte[];
+        if (reply.status == 409 || reply.status >= 500 || !replayable)
+            forget(entry);
+        else
+            entry.reply.complete(reply);
+        return reply;
+    }
+
+    private void forget(Entry entry) {
+        drop(entry);
+        entry.reply.complete(null);
+    }
+
+    private void drop(Entry entry) {
+        if (entries.remove(entry.key, entry)) dropped.incrementAndGet();
+    }
+
+    private void evict(long now) {
+        // one evictor at a time; the others carry on, the size bound is overshot by at most one entry per thread
+        if (!evictionLock.tryLock()) return;
+        try {
+            Entry oldest;
+            while ((oldest = arrivals.peek()) != null) {
+                boolean kept = entries.get(oldest.key) == oldest;
+                if (kept && (!oldest.reply.isDone() || entries.size() <= maxKeys && oldest.expiresAt - now > 0))
+                    break;
+                arrivals.poll();
+                // whoever removes it from the map counts it, see drop
+                if (!entries.remove(oldest.key, oldest)) dropped.decrementAndGet();
+            }
+            // dropped entries behind a kept one only leave with it, keep the queue within twice the bound
+            if (dropped.get() > maxKeys) {
+                for (var it = arrivals.iterator(); it.hasNext(); ) {
+                    var entry = it.next();
+                    if (entries.get(entry.key) != entry) {
+                        it.remove();
+                        dropped.decrementAndGet();
+                    }
+                }
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    private static Object error(Request request, Response response, String message) {
+        response.status(422);
+        return WireFormat.ofResponse(request, response).write(response, new JsonResponse(ResponseStatus.ERROR, message));
+    }
+
+    // FNV-1a, tells a reused key from a retry of the same request
+    private static long fingerprint(byte[] body) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : body) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+}
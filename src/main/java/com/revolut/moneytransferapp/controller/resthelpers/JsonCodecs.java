@@ -0,0 +1,69 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import spark.Request;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * JSON encoding of the REST API: hand-written adapters for the model and the response envelope, so neither
+ * writing nor parsing goes through reflection. Gson instances are immutable and thread-safe, all requests share one.
+ */
+public final class JsonCodecs {
+
+    public static final Gson GSON = new GsonBuilder()
+            .registerTypeAdapter(Account.class, new AccountAdapter())
+            .registerTypeAdapter(Transfer.class, new TransferAdapter())
+            .registerTypeAdapterFactory(JsonResponseAdapter.FACTORY)
+            .create();
+
+    private JsonCodecs() {
+    }
+
+    /**
+     * Parses the URL-encoded JSON body of the request, decoding it while the parser reads it.
+     * @return null for an empty body
+     * @throws com.google.gson.JsonParseException if the body is not valid JSON for the type
+     * @throws IllegalArgumentException if the body is not validly URL-encoded
+     */
+    public static <T> T read(Request request, Class<T> type) {
+        return read(request.bodyAsBytes(), type);
+    }
+
+    public static <T> T read(byte[] urlEncodedBody, Class<T> type) {
+        return GSON.fromJson(new UrlDecodingReader(urlEncodedBody), type);
+    }
+
+    // same leniency and errors as Gson's built-in Integer adapter
+    static Integer readInteger(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return in.nextInt();
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+
+    // same leniency and errors as Gson's built-in BigDecimal adapter
+    static BigDecimal readDecimal(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        try {
+            return new BigDecimal(in.nextString());
+        } catch (NumberFormatException e) {
+            throw new JsonSyntaxException(e);
+        }
+    }
+}
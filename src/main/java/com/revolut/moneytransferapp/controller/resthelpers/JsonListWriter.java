@@ -0,0 +1,60 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.Gson;
+import spark.Response;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+/**
+ * Writes a successful list response ({@code {"status":"SUCCESS","data":[...]}}, the same bytes as a
+ * rendered {@link JsonResponse}, plus the {@code "next"} cursor of a page) straight to the servlet output stream
+ * while the items are being read.
+ * Nothing holds the whole list, and without a content length the container sends it chunked once its buffer fills.
+ */
+public final class JsonListWriter {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private JsonListWriter() {
+    }
+
+    /**
+     * @param items  passes every item of the list to the given consumer, in order
+     * @param next   cursor of the next page, left out if null
+     * @return the empty string, for the route to return once the body has been written
+     */
+    public static <T> String write(Response response, Gson gson, Class<T> itemType,
+                                   Consumer<Consumer<T>> items, Integer next) throws IOException {
+        // the headers go out with the first chunk, after that the after-filters can not change them anymore
+        response.status(200);
+        response.type("application/json");
+        var out = new BufferedWriter(
+                new OutputStreamWriter(response.raw().getOutputStream(), StandardCharsets.UTF_8), BUFFER_SIZE);
+        var writer = gson.newJsonWriter(out);
+        writer.beginObject();
+        writer.name("status").value(ResponseStatus.SUCCESS.name());
+        writer.name("data").beginArray();
+        try {
+            items.accept(item -> {
+                try {
+                    gson.toJson(item, itemType, writer);
+                } catch (RuntimeException e) {
+                    // Gson wraps the IOException of a client that went away
+                    throw e.getCause() instanceof IOException ? new UncheckedIOException((IOException) e.getCause()) : e;
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.endArray();
+        if (next != null) writer.name("next").value(next);
+        writer.endObject();
+        writer.flush();
+        return "";
+    }
+}
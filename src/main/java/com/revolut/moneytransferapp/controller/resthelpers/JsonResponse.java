@@ -1,11 +1,10 @@
 package com.revolut.moneytransferapp.controller.resthelpers;
 
-import com.google.gson.JsonElement;
-
 public class JsonResponse {
     private ResponseStatus status;
     private String message;
-    private JsonElement data;
+    // an entity, a list or a JsonElement, written with the adapter registered for its runtime type
+    private Object data;
 
     public JsonResponse(ResponseStatus status) {
         this.status = status;
@@ -16,7 +15,7 @@ public class JsonResponse {
         this.message = message;
     }
 
-    public JsonResponse(ResponseStatus status, JsonElement data) {
+    public JsonResponse(ResponseStatus status, Object data) {
         this.status = status;
         this.data = data;
     }
@@ -37,11 +36,11 @@ public class JsonResponse {
         this.message = message;
     }
 
-    public JsonElement getData() {
+    public Object getData() {
         return data;
     }
 
-    public void setData(JsonElement data) {
+    public void setData(Object data) {
         this.data = data;
     }
 }
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.TypeAdapterFactory;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * {@code {"status":"SUCCESS","message":"...","data":...}} with absent fields left out. The data is written by the
+ * adapter of its runtime type, straight into the same writer instead of through an intermediate tree. Reading is
+ * left to Gson's reflective adapter, the data then comes back as a tree of maps, lists and numbers.
+ */
+class JsonResponseAdapter extends TypeAdapter<JsonResponse> {
+
+    static final TypeAdapterFactory FACTORY = new TypeAdapterFactory() {
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
+            if (type.getRawType() != JsonResponse.class) return null;
+            return (TypeAdapter<T>) new JsonResponseAdapter(gson,
+                    gson.getDelegateAdapter(this, TypeToken.get(JsonResponse.class)));
+        }
+    };
+
+    private final Gson gson;
+    private final TypeAdapter<JsonResponse> reflective;
+
+    private JsonResponseAdapter(Gson gson, TypeAdapter<JsonResponse> reflective) {
+        this.gson = gson;
+        this.reflective = reflective;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void write(JsonWriter out, JsonResponse response) throws IOException {
+        if (response == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (response.getStatus() != null) out.name("status").value(response.getStatus().name());
+        if (response.getMessage() != null) out.name("message").value(response.getMessage());
+        var data = response.getData();
+        if (data != null) {
+            out.name("data");
+            // Gson caches adapters per type, the lookup is a map hit after the first response
+            ((TypeAdapter<Object>) gson.getAdapter(data.getClass())).write(out, data);
+        }
+        out.endObject();
+    }
+
+    @Override
+    public JsonResponse read(JsonReader in) throws IOException {
+        return reflective.read(in);
+    }
+}
@@ -0,0 +1,49 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import spark.Request;
+
+/**
+ * Keyset page parameters of a list request: {@code ?after=<id>&limit=<n>}. The next page starts after the
+ * last id of the current one, so a page never depends on how many entities were created before it.
+ */
+public class PageRequest {
+
+    public static final int DEFAULT_LIMIT = 100;
+    public static final int MAX_LIMIT = 1000;
+
+    private final int afterId;
+    private final int limit;
+
+    private PageRequest(int afterId, int limit) {
+        this.afterId = afterId;
+        this.limit = limit;
+    }
+
+    /**
+     * @return null if the request has neither parameter, i.e. asks for the whole list
+     * @throws IllegalArgumentException if a parameter is not a number or the limit is not between 1 and MAX_LIMIT
+     */
+    public static PageRequest of(Request request) {
+        var after = request.queryParams("after");
+        var limit = request.queryParams("limit");
+        if (after == null && limit == null) return null;
+        var page = new PageRequest(after == null ? -1 : Integer.parseInt(after),
+                limit == null ? DEFAULT_LIMIT : Integer.parseInt(limit));
+        if (page.limit < 1 || page.limit > MAX_LIMIT)
+            throw new IllegalArgumentException("Limit out of range: " + page.limit);
+        return page;
+    }
+
+    // the first page of DEFAULT_LIMIT entities, for lists too long to be returned whole
+    public static PageRequest first() {
+        return new PageRequest(-1, DEFAULT_LIMIT);
+    }
+
+    public int getAfterId() {
+        return afterId;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+}
@@ -0,0 +1,41 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import spark.Request;
+
+/**
+ * Commit time parameters of a list request: {@code ?from=<millis>&to=<millis>}, milliseconds since the epoch.
+ * The range includes {@code from} and excludes {@code to}, either may be left out.
+ */
+public class TimeRange {
+
+    private final long from;
+    private final long to;
+
+    private TimeRange(long from, long to) {
+        this.from = from;
+        this.to = to;
+    }
+
+    /**
+     * @return null if the request has neither parameter
+     * @throws IllegalArgumentException if a parameter is not a number or from is after to
+     */
+    public static TimeRange of(Request request) {
+        var from = request.queryParams("from");
+        var to = request.queryParams("to");
+        if (from == null && to == null) return null;
+        var range = new TimeRange(from == null ? Long.MIN_VALUE : Long.parseLong(from),
+                to == null ? Long.MAX_VALUE : Long.parseLong(to));
+        if (range.from > range.to)
+            throw new IllegalArgumentException("Empty time range: " + range.from + " > " + range.to);
+        return range;
+    }
+
+    public long getFrom() {
+        return from;
+    }
+
+    public long getTo() {
+        return to;
+    }
+}
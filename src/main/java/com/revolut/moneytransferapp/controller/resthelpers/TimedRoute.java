@@ -0,0 +1,30 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+import spark.Route;
+
+/**
+ * Records how long a route takes, from the request being matched to the response body being returned
+ * (streamed list responses are written by then).
+ */
+public final class TimedRoute {
+
+    private TimedRoute() {
+    }
+
+    /**
+     * @param name the route label, e.g. {@code GET /api/v1/accounts/:id}
+     */
+    public static Route of(String name, Route route) {
+        var latency = MetricRegistry.DEFAULT.histogram("http_request_duration_seconds",
+                "Time spent handling a request, by route", "route", name);
+        return (request, response) -> {
+            long start = System.nanoTime();
+            try {
+                return route.handle(request, response);
+            } finally {
+                latency.record(System.nanoTime() - start);
+            }
+        };
+    }
+}
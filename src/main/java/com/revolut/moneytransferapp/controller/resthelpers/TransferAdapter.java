@@ -0,0 +1,68 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * {@code {"benefactor":1,"beneficiary":2,"amount":0.5,"timestamp":1577836800000,"id":0}}, fields in the order
+ * reflection wrote them.
+ * Missing fields are read as null and left for the service to reject, like before.
+ */
+class TransferAdapter extends TypeAdapter<Transfer> {
+
+    @Override
+    public void write(JsonWriter out, Transfer transfer) throws IOException {
+        if (transfer == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (transfer.getBenefactorId() != null) out.name("benefactor").value(transfer.getBenefactorId());
+        if (transfer.getBeneficiaryId() != null) out.name("beneficiary").value(transfer.getBeneficiaryId());
+        if (transfer.getAmount() != null) out.name("amount").value(transfer.getAmount());
+        if (transfer.getTimestamp() != null) out.name("timestamp").value(transfer.getTimestamp());
+        if (transfer.getId() != null) out.name("id").value(transfer.getId());
+        out.endObject();
+    }
+
+    @Override
+    public Transfer read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        Integer id = null;
+        Integer benefactor = null;
+        Integer beneficiary = null;
+        BigDecimal amount = null;
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "benefactor":
+                    benefactor = JsonCodecs.readInteger(in);
+                    break;
+                case "beneficiary":
+                    beneficiary = JsonCodecs.readInteger(in);
+                    break;
+                case "amount":
+                    amount = JsonCodecs.readDecimal(in);
+                    break;
+                case "id":
+                    id = JsonCodecs.readInteger(in);
+                    break;
+                default:
+                    in.skipValue();
+            }
+        }
+        in.endObject();
+        var transfer = new Transfer(benefactor, beneficiary, amount);
+        transfer.setId(id);
+        return transfer;
+    }
+}
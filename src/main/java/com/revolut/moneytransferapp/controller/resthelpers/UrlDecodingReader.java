@@ -0,0 +1,95 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import java.io.Reader;
+
+/**
+ * Reads an {@code application/x-www-form-urlencoded} UTF-8 body as characters, decoding it on the fly:
+ * {@code +} is a space, {@code %XY} a byte, and the bytes are UTF-8. The result is what {@code URLDecoder.decode}
+ * returns, without copying the body into a String first or going through a charset decoder and its buffers.
+ */
+class UrlDecodingReader extends Reader {
+
+    private static final char REPLACEMENT = '�';
+
+    private final byte[] body;
+    private int position;
+    // second half of a surrogate pair that did not fit into the caller's buffer
+    private char pendingLowSurrogate;
+
+    UrlDecodingReader(byte[] body) {
+        this.body = body;
+    }
+
+    /**
+     * @throws IllegalArgumentException on an incomplete or non-hexadecimal escape, like URLDecoder
+     */
+    @Override
+    public int read(char[] buffer, int offset, int length) {
+        if (length == 0) return 0;
+        int count = 0;
+        if (pendingLowSurrogate != 0) {
+            buffer[offset + count++] = pendingLowSurrogate;
+            pendingLowSurrogate = 0;
+        }
+        while (count < length) {
+            int b = nextByte();
+            if (b < 0) break;
+            int codePoint = b < 0x80 ? b : decodeMultiByte(b);
+            if (codePoint < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                buffer[offset + count++] = (char) codePoint;
+            } else {
+                buffer[offset + count++] = Character.highSurrogate(codePoint);
+                if (count < length) buffer[offset + count++] = Character.lowSurrogate(codePoint);
+                else pendingLowSurrogate = Character.lowSurrogate(codePoint);
+            }
+        }
+        return count == 0 ? -1 : count;
+    }
+
+    private int decodeMultiByte(int lead) {
+        int continuationBytes;
+        int codePoint;
+        if ((lead & 0xE0) == 0xC0) {
+            continuationBytes = 1;
+            codePoint = lead & 0x1F;
+        } else if ((lead & 0xF0) == 0xE0) {
+            continuationBytes = 2;
+            codePoint = lead & 0x0F;
+        } else if ((lead & 0xF8) == 0xF0) {
+            continuationBytes = 3;
+            codePoint = lead & 0x07;
+        } else {
+            return REPLACEMENT;
+        }
+        for (int i = 0; i < continuationBytes; i++) {
+            int mark = position;
+            int b = nextByte();
+            if (b < 0 || (b & 0xC0) != 0x80) {
+                // not a continuation, it starts the next character
+                position = mark;
+                return REPLACEMENT;
+            }
+            codePoint = (codePoint << 6) | (b & 0x3F);
+        }
+        return codePoint > Character.MAX_CODE_POINT ? REPLACEMENT : codePoint;
+    }
+
+    private int nextByte() {
+        if (position >= body.length) return -1;
+        int b = body[position++] & 0xFF;
+        if (b == '+') return ' ';
+        if (b != '%') return b;
+        if (position + 2 > body.length)
+            throw new IllegalArgumentException("Incomplete trailing escape (%) pattern");
+        int high = Character.digit(body[position], 16);
+        int low = Character.digit(body[position + 1], 16);
+        if (high < 0 || low < 0)
+            throw new IllegalArgumentException("Illegal hex characters in escape (%) pattern");
+        position += 2;
+        return (high << 4) | low;
+    }
+
+    @Override
+    public void close() {
+    }
+}
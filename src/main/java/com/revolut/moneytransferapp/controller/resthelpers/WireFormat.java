@@ -0,0 +1,95 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import spark.Request;
+import spark.Response;
+
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Encoding of a request or response body: JSON unless the request asks for {@link BinaryCodecs#MEDIA_TYPE}, with
+ * {@code Content-Type} for its own body and with {@code Accept} for the response. The controllers read and write
+ * every body through one of these, the services never see the difference.
+ */
+public enum WireFormat {
+
+    JSON {
+        @Override
+        public <T> T read(Request request, Class<T> type) {
+            return JsonCodecs.read(request, type);
+        }
+
+        @Override
+        public Object write(Response response, JsonResponse body) {
+            return JsonCodecs.GSON.toJson(body);
+        }
+
+        @Override
+        public <T> String writeList(Response response, Class<T> itemType, Consumer<Consumer<T>> items, Integer next)
+                throws IOException {
+            return JsonListWriter.write(response, JsonCodecs.GSON, itemType, items, next);
+        }
+    },
+
+    BINARY {
+        @Override
+        public <T> T read(Request request, Class<T> type) {
+            return BinaryCodecs.read(request.bodyAsBytes(), type);
+        }
+
+        @Override
+        public Object write(Response response, JsonResponse body) {
+            response.type(BinaryCodecs.MEDIA_TYPE);
+            return BinaryCodecs.write(body);
+        }
+
+        @Override
+        public <T> String writeList(Response response, Class<T> itemType, Consumer<Consumer<T>> items, Integer next)
+                throws IOException {
+            return BinaryCodecs.writeList(response, itemType, items, next);
+        }
+    };
+
+    public static WireFormat ofBody(Request request) {
+        return isBinary(request.contentType()) ? BINARY : JSON;
+    }
+
+    /**
+     * Also marks the response as varying by {@code Accept}, whichever format it gets, so that caches keep the JSON
+     * and the binary representation apart.
+     */
+    public static WireFormat ofResponse(Request request, Response response) {
+        response.raw().addHeader("Vary", "Accept");
+        var accept = request.headers("Accept");
+        if (accept == null) return JSON;
+        for (var mediaRange : accept.split(","))
+            if (isBinary(mediaRange)) return BINARY;
+        return JSON;
+    }
+
+    /**
+     * @return null for an empty body
+     * @throws IllegalArgumentException if the body is not valid for the type (JSON parse errors are
+     *                                  {@link com.google.gson.JsonParseException}s)
+     */
+    public abstract <T> T read(Request request, Class<T> type);
+
+    /**
+     * @return the body for the route to return, a {@code String} of JSON or the binary {@code byte[]}
+     */
+    public abstract Object write(Response response, JsonResponse body);
+
+    /**
+     * Streams a successful list response, see {@link JsonListWriter#write}.
+     */
+    public abstract <T> String writeList(Response response, Class<T> itemType, Consumer<Consumer<T>> items,
+                                         Integer next) throws IOException;
+
+    // the media type without its parameters
+    private static boolean isBinary(String mediaType) {
+        if (mediaType == null) return false;
+        int parameters = mediaType.indexOf(';');
+        var type = parameters < 0 ? mediaType : mediaType.substring(0, parameters);
+        return type.trim().equalsIgnoreCase(BinaryCodecs.MEDIA_TYPE);
+    }
+}
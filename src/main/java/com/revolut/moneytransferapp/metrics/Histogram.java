@@ -0,0 +1,57 @@
+package com.revolut.moneytransferapp.metrics;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets from 50µs to 10s. Recording is one comparison per bucket below the value and
+ * a {@link LongAdder} increment, so concurrent recorders never contend on a single counter.
+ */
+public final class Histogram {
+
+    static final double[] BOUNDS_SECONDS = {
+            0.00005, 0.0001, 0.00025, 0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    // the le label of each bucket, written out without an exponent
+    static final String[] BOUND_LABELS = new String[BOUNDS_SECONDS.length];
+
+    private static final long[] BOUNDS_NANOS = new long[BOUNDS_SECONDS.length];
+
+    static {
+        for (int i = 0; i < BOUNDS_SECONDS.length; i++) {
+            BOUND_LABELS[i] = BigDecimal.valueOf(BOUNDS_SECONDS[i]).stripTrailingZeros().toPlainString();
+            BOUNDS_NANOS[i] = Math.round(BOUNDS_SECONDS[i] * 1e9);
+        }
+    }
+
+    // the last bucket counts everything above the highest bound
+    private final LongAdder[] buckets = new LongAdder[BOUNDS_NANOS.length + 1];
+    private final LongAdder sumNanos = new LongAdder();
+
+    Histogram() {
+        for (int i = 0; i < buckets.length; i++)
+            buckets[i] = new LongAdder();
+    }
+
+    public void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS_NANOS.length && nanos > BOUNDS_NANOS[bucket])
+            bucket++;
+        buckets[bucket].increment();
+        sumNanos.add(nanos);
+    }
+
+    /**
+     * @return the number of values recorded in each bucket, not cumulative; the last entry is above the highest bound
+     */
+    long[] counts() {
+        var counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++)
+            counts[i] = buckets[i].sum();
+        return counts;
+    }
+
+    long sumNanos() {
+        return sumNanos.sum();
+    }
+}
@@ -0,0 +1,130 @@
+package com.revolut.moneytransferapp.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms, rendered in the Prometheus text format.
+ *
+ * Registration looks the metric up in a map and is meant to happen once, callers keep the returned recorder in a
+ * field; recording itself only touches {@link LongAdder}s. Labels are passed as alternating names and values.
+ */
+public final class MetricRegistry {
+
+    // what the service records into and GET /metrics renders
+    public static final MetricRegistry DEFAULT = new MetricRegistry();
+
+    private enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    private static final class Family {
+        final String help;
+        final Type type;
+        final Map<String, Object> series = new ConcurrentSkipListMap<>();
+
+        Family(String help, Type type) {
+            this.help = help;
+            this.type = type;
+        }
+    }
+
+    private final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    public LongAdder counter(String name, String help, String... labels) {
+        return (LongAdder) family(name, help, Type.COUNTER).series
+                .computeIfAbsent(labels(labels), key -> new LongAdder());
+    }
+
+    public Histogram histogram(String name, String help, String... labels) {
+        return (Histogram) family(name, help, Type.HISTOGRAM).series
+                .computeIfAbsent(labels(labels), key -> new Histogram());
+    }
+
+    /**
+     * Registers a value read when the metrics are rendered; registering the same name and labels again replaces it.
+     */
+    public void gauge(String name, String help, LongSupplier value, String... labels) {
+        family(name, help, Type.GAUGE).series.put(labels(labels), value);
+    }
+
+    public String render() {
+        var out = new StringBuilder(4096);
+        writeTo(out);
+        return out.toString();
+    }
+
+    public void writeTo(Appendable out) {
+        try {
+            for (var entry : families.entrySet())
+                write(out, entry.getKey(), entry.getValue());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Family family(String name, String help, Type type) {
+        var family = families.computeIfAbsent(name, key -> new Family(help, type));
+        if (family.type != type)
+            throw new IllegalArgumentException(name + " is already registered as a " + family.type);
+        return family;
+    }
+
+    private static void write(Appendable out, String name, Family family) throws IOException {
+        out.append("# HELP ").append(name).append(' ').append(family.help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(family.type.name().toLowerCase()).append('\n');
+        for (var series : family.series.entrySet()) {
+            var labels = series.getKey();
+            var metric = series.getValue();
+            if (metric instanceof LongAdder)
+                sample(out, name, labels, Long.toString(((LongAdder) metric).sum()));
+            else if (metric instanceof LongSupplier)
+                sample(out, name, labels, Long.toString(((LongSupplier) metric).getAsLong()));
+            else
+                writeHistogram(out, name, labels, (Histogram) metric);
+        }
+    }
+
+    private static void writeHistogram(Appendable out, String name, String labels, Histogram histogram)
+            throws IOException {
+        var counts = histogram.counts();
+        var separator = labels.isEmpty() ? "" : ",";
+        long cumulative = 0;
+        for (int i = 0; i < Histogram.BOUNDS_SECONDS.length; i++) {
+            cumulative += counts[i];
+            var le = labels + separator + "le=\"" + Histogram.BOUND_LABELS[i] + "\"";
+            sample(out, name + "_bucket", le, Long.toString(cumulative));
+        }
+        cumulative += counts[counts.length - 1];
+        sample(out, name + "_bucket", labels + separator + "le=\"+Inf\"", Long.toString(cumulative));
+        sample(out, name + "_sum", labels, Double.toString(histogram.sumNanos() / 1e9));
+        sample(out, name + "_count", labels, Long.toString(cumulative));
+    }
+
+    private static void sample(Appendable out, String name, String labels, String value) throws IOException {
+        out.append(name);
+        if (!labels.isEmpty()) out.append('{').append(labels).append('}');
+        out.append(' ').append(value).append('\n');
+    }
+
+    private static String labels(String... labels) {
+        if (labels.length % 2 != 0)
+            throw new IllegalArgumentException("Labels have to be name / value pairs");
+        var joined = new StringBuilder();
+        for (int i = 0; i < labels.length; i += 2) {
+            if (i > 0) joined.append(',');
+            joined.append(labels[i]).append("=\"");
+            var value = labels[i + 1];
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '\\' || ch == '"') joined.append('\\').append(ch);
+                else if (ch == '\n') joined.append("\\n");
+                else joined.append(ch);
+            }
+            joined.append('"');
+        }
+        return joined.toString();
+    }
+}
@@ -7,7 +7,7 @@ import java.math.BigDecimal;
 public class Account extends VersionedEntity {
 
     @Expose(serialize = true)
-    private BigDecimal balance;
+    private final BigDecimal balance;
 
     public Account(BigDecimal balance) {
         super(0, 0);
@@ -28,10 +28,6 @@ public class Account extends VersionedEntity {
         return balance;
     }
 
-    public void setBalance(BigDecimal balance) {
-        this.balance = balance;
-    }
-
     @Override
     public String toString() {
         return "Account{" +
@@ -0,0 +1,65 @@
+package com.revolut.moneytransferapp.model;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Currency;
+
+/**
+ * Fixed-scale representation of money as a {@code long} count of minor units (e.g. cents for EUR).
+ * Conversion to and from {@link BigDecimal} happens only at the edges, arithmetic in between is
+ * overflow-checked primitive math.
+ */
+public final class MinorUnits {
+
+    private final Currency currency;
+    private final int scale;
+
+    private MinorUnits(Currency currency) {
+        this.currency = currency;
+        this.scale = Math.max(0, currency.getDefaultFractionDigits());
+    }
+
+    public static MinorUnits of(Currency currency) {
+        return new MinorUnits(currency);
+    }
+
+    public static MinorUnits of(String currencyCode) {
+        return of(Currency.getInstance(currencyCode));
+    }
+
+    public Currency getCurrency() {
+        return currency;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * @throws ArithmeticException if the amount has more fraction digits than the currency allows
+     *                             or does not fit into a long
+     */
+    public long toMinor(BigDecimal amount) {
+        return amount.setScale(scale, RoundingMode.UNNECESSARY).unscaledValue().longValueExact();
+    }
+
+    public BigDecimal toDecimal(long minorUnits) {
+        return BigDecimal.valueOf(minorUnits, scale);
+    }
+
+    public static long credit(long balance, long amount) {
+        return Math.addExact(balance, amount);
+    }
+
+    public static long debit(long balance, long amount) {
+        return Math.subtractExact(balance, amount);
+    }
+
+    @Override
+    public String toString() {
+        return "MinorUnits{" +
+                "currency=" + currency +
+                ", scale=" + scale +
+                '}';
+    }
+}
@@ -6,6 +6,8 @@ public class Transfer extends Entity {
     private Integer benefactor;
     private Integer beneficiary;
     private BigDecimal amount;
+    // commit time in milliseconds since the epoch, never lower than that of a transfer with a lower id
+    private Long timestamp;
 
     public Transfer(Integer id) {
         super(id);
@@ -29,6 +31,14 @@ public class Transfer extends Entity {
         return amount;
     }
 
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+
     @Override
     public String toString() {
         return "Transfer{" +
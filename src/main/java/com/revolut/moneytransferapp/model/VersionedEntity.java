@@ -5,14 +5,14 @@ import com.google.gson.annotations.Expose;
 abstract class VersionedEntity extends Entity {
 
     @Expose(serialize = false)
-    private volatile Integer version;
+    private final Integer version;
 
     public VersionedEntity(Integer id, Integer version) {
         super(id);
         this.version = version;
     }
 
-    public synchronized Integer getVersion() {
+    public Integer getVersion() {
         return version;
     }
 }
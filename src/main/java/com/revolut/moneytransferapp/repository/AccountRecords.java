@@ -0,0 +1,15 @@
+package com.revolut.moneytransferapp.repository;
+
+/**
+ * Fixed-width (stamp, balance) records addressed by account id. The stamp is a per-record
+ * sequence lock: even while the record is stable, odd while a writer owns it.
+ */
+interface AccountRecords {
+    void ensureCapacity(int id);
+    long getStamp(int id);
+    boolean compareAndSetStamp(int id, long expected, long stamp);
+    void setStamp(int id, long stamp);
+    long getBalance(int id);
+    void setBalance(int id, long balance);
+    void clear();
+}
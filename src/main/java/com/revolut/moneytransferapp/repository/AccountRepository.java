@@ -1,5 +1,6 @@
 package com.revolut.moneytransferapp.repository;
 
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
 import com.revolut.moneytransferapp.model.Account;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
 import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
@@ -7,69 +8,188 @@ import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundExce
 import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
-public class AccountRepository implements Repository<Account>{
+public class AccountRepository implements Repository<Account>, DecimalLedger {
 
-    private List<Account> accounts;
-    private int accountCount;
+    private static final LongAdder CONFLICTS = MetricRegistry.DEFAULT.counter("account_update_conflicts_total",
+            "Account updates rejected by optimistic locking", "store", "objects");
+
+    /**
+     * Put into the slot of an account while a transfer commits it together with a second one. Readers see the
+     * account as it was before, writers treat it as a conflict.
+     */
+    private static final class Claim extends Account {
+        final Account committed;
+
+        Claim(Account committed) {
+            super(committed.getId(), committed.getBalance(), committed.getVersion());
+            this.committed = committed;
+        }
+    }
+
+    // accounts are addressed directly by their (dense) id, lookups and updates are O(1)
+    private final ChunkedIndex<Account> accounts = new ChunkedIndex<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger accountCount = new AtomicInteger();
 
     public AccountRepository() {
-        accounts = new ArrayList<>(){{
+        setAccounts(new ArrayList<>(){{
             add(new Account(0, new BigDecimal("0.01")));
             add(new Account(1, new BigDecimal("1.01")));
             add(new Account(2, new BigDecimal("2.01")));
-        }};
-        accountCount = accounts.size();
+        }});
     }
 
     @Override
     public List<Account> getAll() {
-        return this.accounts;
+        int upperBound = nextId.get();
+        var all = new ArrayList<Account>(accountCount.get());
+        for (int id = 0; id < upperBound; id++) {
+            var account = getById(id);
+            if (account != null) all.add(account);
+        }
+        return all;
+    }
+
+    @Override
+    public List<Account> getPage(int afterId, int limit) {
+        // the bound is read once, accounts created meanwhile are left to a later page
+        int upperBound = nextId.get();
+        var page = new ArrayList<Account>(Math.min(limit, 1024));
+        for (long id = Math.max(0L, afterId + 1L); id < upperBound && page.size() < limit; id++) {
+            var account = getById((int) id);
+            if (account != null) page.add(account);
+        }
+        return page;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Account> action) {
+        int upperBound = nextId.get();
+        for (int id = 0; id < upperBound; id++) {
+            var account = getById(id);
+            if (account != null) action.accept(account);
+        }
     }
 
     @Override
     public Account getById(int id) {
-        for (Account account : accounts)
-            if(account.getId() == id)
-                return account;
-        return null;
+        var account = accounts.get(id);
+        return account instanceof Claim ? ((Claim) account).committed : account;
     }
 
     @Override
     public int save(Account account) {
-        int id = accounts.size();
+        int id = nextId.getAndIncrement();
         account.setId(id);
-        accounts.add(account);
-        ++accountCount;
+        accounts.set(id, account);
+        accountCount.incrementAndGet();
         return id;
     }
 
     @Override
     public void update(Account account) throws OptimisticLockException, AccountNotFoundException {
-        boolean found = false;
-        for (int i = 0; i < accounts.size(); i++){
-            var tempAccount = accounts.get(i);
-            var version = tempAccount.getVersion();
-            if(tempAccount.getId().equals(account.getId())){
-                found = true;
-                var accountToBePersisted = new Account(account.getId(), account.getBalance(), ++version);
-                // imitating database transaction w/ OCC
-                synchronized (this){
-                    if (accounts.get(i).getVersion().equals(tempAccount.getVersion()))
-                        accounts.set(i, accountToBePersisted);
-                    else throw new OptimisticLockException();
-                }
+        int id = account.getId();
+        var current = committed(id);
+        var accountToBePersisted = new Account(id, account.getBalance(), current.getVersion() + 1);
+        // OCC commit: stored accounts are never mutated, so the swap only succeeds
+        // if no other writer replaced the snapshot we have read
+        if (!accounts.compareAndSet(id, current, accountToBePersisted))
+            throw conflict();
+    }
+
+    @Override
+    public boolean transfer(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws OptimisticLockException, AccountNotFoundException {
+        var benefactor = committed(benefactorId);
+        if (benefactorId == beneficiaryId) {
+            // nothing moves, the commit only records that the account was read and found covering the amount
+            if (benefactor.getBalance().compareTo(amount) < 0) return false;
+            var unchanged = new Account(benefactorId, benefactor.getBalance(), benefactor.getVersion() + 1);
+            if (!accounts.compareAndSet(benefactorId, benefactor, unchanged)) throw conflict();
+            return true;
+        }
+        var beneficiary = committed(beneficiaryId);
+        if (benefactor.getBalance().compareTo(amount) < 0) return false;
+        var debited = new Account(benefactorId, benefactor.getBalance().subtract(amount), benefactor.getVersion() + 1);
+        var credited = new Account(beneficiaryId, beneficiary.getBalance().add(amount), beneficiary.getVersion() + 1);
+
+        // both slots are claimed before either is written, no other writer can get in between the two legs;
+        // claiming the lower id first means that of two transfers racing for the same pair one always gets both
+        var first = benefactorId < beneficiaryId ? benefactor : beneficiary;
+        var second = first == benefactor ? beneficiary : benefactor;
+        if (!accounts.compareAndSet(first.getId(), first, new Claim(first))) throw conflict();
+        if (!accounts.compareAndSet(second.getId(), second, new Claim(second))) {
+            accounts.set(first.getId(), first);
+            throw conflict();
+        }
+        accounts.set(beneficiaryId, credited);
+        accounts.set(benefactorId, debited);
+        return true;
+    }
+
+    @Override
+    public boolean debit(int accountId, BigDecimal amount) throws OptimisticLockException, AccountNotFoundException {
+        var current = committed(accountId);
+        if (current.getBalance().compareTo(amount) < 0) return false;
+        var debited = new Account(accountId, current.getBalance().subtract(amount), current.getVersion() + 1);
+        if (!accounts.compareAndSet(accountId, current, debited)) throw conflict();
+        return true;
+    }
+
+    @Override
+    public void credit(int accountId, BigDecimal amount) throws OptimisticLockException, AccountNotFoundException {
+        var current = committed(accountId);
+        var credited = new Account(accountId, current.getBalance().add(amount), current.getVersion() + 1);
+        if (!accounts.compareAndSet(accountId, current, credited)) throw conflict();
+    }
+
+    // the account as a writer may replace it, i.e. unless a transfer is committing it right now
+    private Account committed(int id) throws OptimisticLockException, AccountNotFoundException {
+        var current = accounts.get(id);
+        if (current == null) throw new AccountNotFoundException();
+        if (current instanceof Claim) throw conflict();
+        return current;
+    }
+
+    private static OptimisticLockException conflict() {
+        CONFLICTS.increment();
+        return new OptimisticLockException();
+    }
+
+    @Override
+    public void restore(Account account) {
+        int id = account.getId();
+        while (true) {
+            var current = accounts.get(id);
+            if (current instanceof Claim) {
+                Thread.onSpinWait();
+                continue;
+            }
+            if (current != null && current.getVersion() >= account.getVersion()) return;
+            if (accounts.compareAndSet(id, current, account)) {
+                if (current == null) accountCount.incrementAndGet();
+                nextId.accumulateAndGet(id + 1, Math::max);
+                return;
             }
         }
-        if(!found)  throw new AccountNotFoundException();
     }
 
-    public void setAccounts(List<Account> accounts) {
-        this.accounts = accounts;
-        this.accountCount = accounts.size();
+    public synchronized void setAccounts(List<Account> accounts) {
+        this.accounts.clear();
+        int maxId = -1;
+        for (var account : accounts) {
+            this.accounts.set(account.getId(), account);
+            maxId = Math.max(maxId, account.getId());
+        }
+        this.nextId.set(maxId + 1);
+        this.accountCount.set(accounts.size());
     }
 
     public int getAccountCount() {
-        return accountCount;
+        return accountCount.get();
     }
 }
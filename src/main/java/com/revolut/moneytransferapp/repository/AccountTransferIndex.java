@@ -0,0 +1,97 @@
+package com.revolut.moneytransferapp.repository;
+
+/**
+ * Ids of the transfers of every account, as benefactor or beneficiary, in ascending order. Each account has its own
+ * append-only list of primitive ints kept in chunks of doubling size (4, 8, 16, ...), so adding an id never copies
+ * the ones before it and a page of an account's history costs a binary search plus the page itself, however long
+ * the history of the other accounts is.
+ *
+ * Ids have to be added in ascending order by a single writer at a time; reads do not lock.
+ */
+class AccountTransferIndex {
+
+    private final ChunkedIndex<TransferIds> accounts = new ChunkedIndex<>();
+
+    void add(int transferId, int benefactorId, int beneficiaryId) {
+        idsOf(benefactorId).add(transferId);
+        if (beneficiaryId != benefactorId) idsOf(beneficiaryId).add(transferId);
+    }
+
+    /**
+     * @return up to {@code limit} ids greater than {@code afterId}, ascending
+     */
+    int[] page(int accountId, int afterId, int limit) {
+        var ids = accountId < 0 ? null : accounts.get(accountId);
+        return ids == null ? new int[0] : ids.page(afterId, limit);
+    }
+
+    private TransferIds idsOf(int accountId) {
+        var ids = accounts.get(accountId);
+        if (ids == null) {
+            ids = new TransferIds();
+            accounts.set(accountId, ids);
+        }
+        return ids;
+    }
+
+    private static final class TransferIds {
+
+        private static final int FIRST_CHUNK_BITS = 2;
+        private static final int FIRST_CHUNK_SIZE = 1 << FIRST_CHUNK_BITS;
+
+        // chunk k holds 4 * 2^k ids; replaced, never changed, when a chunk is added
+        private volatile int[][] chunks = new int[1][];
+        // ids at positions below size are written and visible to readers
+        private volatile int size;
+
+        void add(int id) {
+            int position = size;
+            int chunk = chunkOf(position);
+            var directory = chunks;
+            if (chunk >= directory.length) {
+                var grown = new int[directory.length * 2][];
+                System.arraycopy(directory, 0, grown, 0, directory.length);
+                chunks = directory = grown;
+            }
+            if (directory[chunk] == null) directory[chunk] = new int[FIRST_CHUNK_SIZE << chunk];
+            directory[chunk][offsetOf(position)] = id;
+            // publishes the id, and a new chunk with it
+            size = position + 1;
+        }
+
+        int[] page(int afterId, int limit) {
+            int end = size;
+            var directory = chunks;
+            int from = firstAfter(directory, end, afterId);
+            var page = new int[Math.min(limit, end - from)];
+            for (int i = 0; i < page.length; i++)
+                page[i] = get(directory, from + i);
+            return page;
+        }
+
+        // position of the first id greater than afterId, end if there is none
+        private static int firstAfter(int[][] directory, int end, int afterId) {
+            int low = 0, high = end;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (get(directory, middle) <= afterId) low = middle + 1;
+                else high = middle;
+            }
+            return low;
+        }
+
+        private static int get(int[][] directory, int position) {
+            return directory[chunkOf(position)][offsetOf(position)];
+        }
+
+        // position + 4 has its highest bit at 2 + chunk, the bits below it are the offset within the chunk
+        private static int chunkOf(int position) {
+            return 31 - Integer.numberOfLeadingZeros(position + FIRST_CHUNK_SIZE) - FIRST_CHUNK_BITS;
+        }
+
+        private static int offsetOf(int position) {
+            int shifted = position + FIRST_CHUNK_SIZE;
+            return shifted - Integer.highestOneBit(shifted);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.revolut.moneytransferapp.repository;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Concurrent array indexed by a dense, non-negative integer id. Slots live in fixed-size chunks,
+ * so growing never copies existing entries and reads are two array dereferences without locking.
+ */
+class ChunkedIndex<T> {
+
+    private static final int CHUNK_BITS = 14;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private volatile AtomicReferenceArray<T>[] chunks = newDirectory(0);
+
+    T get(int id) {
+        var chunk = chunkOrNull(id);
+        return chunk == null ? null : chunk.get(id & CHUNK_MASK);
+    }
+
+    void set(int id, T value) {
+        chunkFor(id).set(id & CHUNK_MASK, value);
+    }
+
+    boolean compareAndSet(int id, T expected, T value) {
+        return chunkFor(id).compareAndSet(id & CHUNK_MASK, expected, value);
+    }
+
+    void clear() {
+        chunks = newDirectory(0);
+    }
+
+    private AtomicReferenceArray<T> chunkOrNull(int id) {
+        if (id < 0) return null;
+        var directory = chunks;
+        int chunkIndex = id >>> CHUNK_BITS;
+        return chunkIndex < directory.length ? directory[chunkIndex] : null;
+    }
+
+    private AtomicReferenceArray<T> chunkFor(int id) {
+        if (id < 0) throw new IndexOutOfBoundsException("Negative id: " + id);
+        var chunk = chunkOrNull(id);
+        return chunk != null ? chunk : grow(id >>> CHUNK_BITS);
+    }
+
+    private synchronized AtomicReferenceArray<T> grow(int chunkIndex) {
+        var directory = chunks;
+        if (chunkIndex >= directory.length) {
+            var grown = ChunkedIndex.<T>newDirectory(Math.max(chunkIndex + 1, directory.length * 2));
+            System.arraycopy(directory, 0, grown, 0, directory.length);
+            directory = grown;
+        }
+        if (directory[chunkIndex] == null)
+            directory[chunkIndex] = new AtomicReferenceArray<>(CHUNK_SIZE);
+        // republishing the directory makes the new chunk visible to lock-free readers
+        chunks = directory;
+        return directory[chunkIndex];
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> AtomicReferenceArray<T>[] newDirectory(int length) {
+        return (AtomicReferenceArray<T>[]) new AtomicReferenceArray[length];
+    }
+}
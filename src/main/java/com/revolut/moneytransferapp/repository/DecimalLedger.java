@@ -0,0 +1,31 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+
+import java.math.BigDecimal;
+
+/**
+ * Account store keeping balances as {@link BigDecimal}s, the counterpart of {@link MinorUnitLedger}. Each method
+ * reads the accounts it changes itself, so a conflict means nothing was written and the call can simply be repeated.
+ */
+public interface DecimalLedger {
+
+    /**
+     * Debits the benefactor and credits the beneficiary as one commit: either both legs are applied or none.
+     * @return false if the benefactor does not have enough funds, nothing is changed in that case
+     */
+    boolean transfer(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws OptimisticLockException, AccountNotFoundException;
+
+    /**
+     * Debits one account on its own, the first leg of a transfer whose credit is committed separately.
+     * @return false if the account does not have enough funds, nothing is changed in that case
+     */
+    boolean debit(int accountId, BigDecimal amount) throws OptimisticLockException, AccountNotFoundException;
+
+    /**
+     * Credits one account on its own, the second leg of a transfer debited with {@link #debit(int, BigDecimal)}.
+     */
+    void credit(int accountId, BigDecimal amount) throws OptimisticLockException, AccountNotFoundException;
+}
@@ -0,0 +1,67 @@
+package com.revolut.moneytransferapp.repository;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * {@link AccountRecords} kept in chunked primitive arrays on the heap.
+ */
+class HeapAccountRecords implements AccountRecords {
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static final VarHandle STAMPS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final VarHandle BALANCES = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private volatile long[][] stamps = new long[0][];
+    private volatile long[][] balances = new long[0][];
+
+    @Override
+    public synchronized void ensureCapacity(int id) {
+        int chunks = (id >>> CHUNK_BITS) + 1;
+        if (chunks <= stamps.length) return;
+        var grownStamps = new long[chunks][];
+        var grownBalances = new long[chunks][];
+        System.arraycopy(stamps, 0, grownStamps, 0, stamps.length);
+        System.arraycopy(balances, 0, grownBalances, 0, balances.length);
+        for (int i = stamps.length; i < chunks; i++) {
+            grownStamps[i] = new long[CHUNK_SIZE];
+            grownBalances[i] = new long[CHUNK_SIZE];
+        }
+        balances = grownBalances;
+        stamps = grownStamps;
+    }
+
+    @Override
+    public long getStamp(int id) {
+        return (long) STAMPS.getAcquire(stamps[id >>> CHUNK_BITS], id & CHUNK_MASK);
+    }
+
+    @Override
+    public boolean compareAndSetStamp(int id, long expected, long stamp) {
+        return STAMPS.compareAndSet(stamps[id >>> CHUNK_BITS], id & CHUNK_MASK, expected, stamp);
+    }
+
+    @Override
+    public void setStamp(int id, long stamp) {
+        STAMPS.setRelease(stamps[id >>> CHUNK_BITS], id & CHUNK_MASK, stamp);
+    }
+
+    @Override
+    public long getBalance(int id) {
+        return (long) BALANCES.getOpaque(balances[id >>> CHUNK_BITS], id & CHUNK_MASK);
+    }
+
+    @Override
+    public void setBalance(int id, long balance) {
+        BALANCES.setOpaque(balances[id >>> CHUNK_BITS], id & CHUNK_MASK, balance);
+    }
+
+    @Override
+    public synchronized void clear() {
+        stamps = new long[0][];
+        balances = new long[0][];
+    }
+}
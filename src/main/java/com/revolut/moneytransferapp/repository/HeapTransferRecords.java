@@ -0,0 +1,62 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * {@link TransferRecords} holding the {@link Transfer} objects themselves, indexed by id. Reads do not lock.
+ */
+class HeapTransferRecords implements TransferRecords {
+
+    private final ChunkedIndex<Transfer> transfers = new ChunkedIndex<>();
+    // highest id stored + 1, only raised once the transfer is in its slot
+    private final AtomicInteger size = new AtomicInteger();
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public Transfer get(int id) {
+        return transfers.get(id);
+    }
+
+    @Override
+    public long timestamp(int id) {
+        var transfer = transfers.get(id);
+        return transfer == null ? NO_TIMESTAMP : transfer.getTimestamp();
+    }
+
+    @Override
+    public boolean putIfAbsent(Transfer transfer) {
+        int id = transfer.getId();
+        if (!transfers.compareAndSet(id, null, transfer)) return false;
+        size.accumulateAndGet(id + 1, Math::max);
+        return true;
+    }
+
+    @Override
+    public void remove(int id) {
+        transfers.set(id, null);
+        int count = size.get();
+        while (count > 0 && transfers.get(count - 1) == null)
+            count--;
+        size.set(count);
+    }
+
+    @Override
+    public void checkAmount(BigDecimal amount) {
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return false;
+    }
+
+    @Override
+    public void force() {
+    }
+}
@@ -0,0 +1,254 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Account repository storing balances as {@code long} minor units in fixed-width records.
+ * {@link Account} objects only exist at the edge (getById / getAll / update); transfers go
+ * through {@link #transfer(int, int, long)} and do not allocate.
+ *
+ * Every record carries a stamp that works as a sequence lock: writers move it from even to odd
+ * with a CAS, write the balance and release it at the next even value. Readers never block, they
+ * retry when the stamp changed under them. The account version is the number of commits (stamp / 2); the stamp
+ * is a {@code long} so that it never runs into the {@code ABSENT} marker of an id without an account.
+ */
+public class MinorUnitAccountRepository implements Repository<Account>, MinorUnitLedger {
+
+    private static final long ABSENT = Long.MIN_VALUE;
+    private static final LongAdder CONFLICTS = MetricRegistry.DEFAULT.counter("account_update_conflicts_total",
+            "Account updates rejected by optimistic locking", "store", "minor-units");
+
+    private final MinorUnits minorUnits;
+    private final AccountRecords records;
+    private volatile int accountCount;
+
+    public MinorUnitAccountRepository(MinorUnits minorUnits) {
+        this(minorUnits, new HeapAccountRecords());
+    }
+
+    MinorUnitAccountRepository(MinorUnits minorUnits, AccountRecords records) {
+        this.minorUnits = minorUnits;
+        this.records = records;
+        setAccounts(new ArrayList<>(){{
+            add(new Account(0, new BigDecimal("0.01")));
+            add(new Account(1, new BigDecimal("1.01")));
+            add(new Account(2, new BigDecimal("2.01")));
+        }});
+    }
+
+    @Override
+    public MinorUnits getMinorUnits() {
+        return minorUnits;
+    }
+
+    @Override
+    public List<Account> getAll() {
+        int count = accountCount;
+        var all = new ArrayList<Account>(count);
+        for (int id = 0; id < count; id++) {
+            var account = getById(id);
+            if (account != null) all.add(account);
+        }
+        return all;
+    }
+
+    @Override
+    public List<Account> getPage(int afterId, int limit) {
+        int count = accountCount;
+        var page = new ArrayList<Account>(Math.min(limit, 1024));
+        for (long id = Math.max(0L, afterId + 1L); id < count && page.size() < limit; id++) {
+            var account = getById((int) id);
+            if (account != null) page.add(account);
+        }
+        return page;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Account> action) {
+        int count = accountCount;
+        for (int id = 0; id < count; id++) {
+            var account = getById(id);
+            if (account != null) action.accept(account);
+        }
+    }
+
+    @Override
+    public Account getById(int id) {
+        if (id < 0 || id >= accountCount) return null;
+        while (true) {
+            long stamp = records.getStamp(id);
+            if (stamp == ABSENT) return null;
+            if ((stamp & 1) != 0) {
+                Thread.onSpinWait();
+                continue;
+            }
+            long balance = records.getBalance(id);
+            VarHandle.acquireFence();
+            if (records.getStamp(id) == stamp)
+                return new Account(id, minorUnits.toDecimal(balance), (int) (stamp >>> 1));
+        }
+    }
+
+    @Override
+    public synchronized int save(Account account) {
+        int id = accountCount;
+        records.ensureCapacity(id);
+        records.setBalance(id, minorUnits.toMinor(account.getBalance()));
+        records.setStamp(id, 0);
+        account.setId(id);
+        accountCount = id + 1;
+        return id;
+    }
+
+    @Override
+    public void update(Account account) throws OptimisticLockException, AccountNotFoundException {
+        int id = account.getId();
+        long balance = minorUnits.toMinor(account.getBalance());
+        long stamp = acquire(id);
+        records.setBalance(id, balance);
+        records.setStamp(id, stamp + 2);
+    }
+
+    @Override
+    public synchronized void restore(Account account) {
+        int id = account.getId();
+        if (id >= accountCount) {
+            records.ensureCapacity(id);
+            for (int gap = accountCount; gap < id; gap++)
+                records.setStamp(gap, ABSENT);
+            records.setStamp(id, ABSENT);
+            accountCount = id + 1;
+        }
+        long stamp = records.getStamp(id);
+        long restoredStamp = account.getVersion() * 2L;
+        if (stamp != ABSENT && stamp >= restoredStamp) return;
+        records.setBalance(id, minorUnits.toMinor(account.getBalance()));
+        records.setStamp(id, restoredStamp);
+    }
+
+    @Override
+    public boolean transfer(int benefactorId, int beneficiaryId, long amount)
+            throws OptimisticLockException, AccountNotFoundException {
+        if (benefactorId == beneficiaryId)
+            return transferToSelf(benefactorId, amount);
+
+        long benefactorStamp = acquire(benefactorId);
+        long beneficiaryStamp;
+        try {
+            beneficiaryStamp = acquire(beneficiaryId);
+        } catch (OptimisticLockException | AccountNotFoundException e) {
+            records.setStamp(benefactorId, benefactorStamp);
+            throw e;
+        }
+
+        long benefactorBalance = records.getBalance(benefactorId);
+        long beneficiaryBalance = records.getBalance(beneficiaryId);
+        if (benefactorBalance < amount) {
+            records.setStamp(beneficiaryId, beneficiaryStamp);
+            records.setStamp(benefactorId, benefactorStamp);
+            return false;
+        }
+        long debited;
+        long credited;
+        try {
+            debited = MinorUnits.debit(benefactorBalance, amount);
+            credited = MinorUnits.credit(beneficiaryBalance, amount);
+        } catch (ArithmeticException e) {
+            records.setStamp(beneficiaryId, beneficiaryStamp);
+            records.setStamp(benefactorId, benefactorStamp);
+            throw e;
+        }
+        records.setBalance(benefactorId, debited);
+        records.setBalance(beneficiaryId, credited);
+        records.setStamp(beneficiaryId, beneficiaryStamp + 2);
+        records.setStamp(benefactorId, benefactorStamp + 2);
+        return true;
+    }
+
+    @Override
+    public boolean debit(int accountId, long amount) throws OptimisticLockException, AccountNotFoundException {
+        long stamp = acquire(accountId);
+        long balance = records.getBalance(accountId);
+        long debited;
+        try {
+            debited = MinorUnits.debit(balance, amount);
+        } catch (ArithmeticException e) {
+            records.setStamp(accountId, stamp);
+            throw e;
+        }
+        if (balance < amount) {
+            records.setStamp(accountId, stamp);
+            return false;
+        }
+        records.setBalance(accountId, debited);
+        records.setStamp(accountId, stamp + 2);
+        return true;
+    }
+
+    @Override
+    public void credit(int accountId, long amount) throws OptimisticLockException, AccountNotFoundException {
+        long stamp = acquire(accountId);
+        long credited;
+        try {
+            credited = MinorUnits.credit(records.getBalance(accountId), amount);
+        } catch (ArithmeticException e) {
+            records.setStamp(accountId, stamp);
+            throw e;
+        }
+        records.setBalance(accountId, credited);
+        records.setStamp(accountId, stamp + 2);
+    }
+
+    private boolean transferToSelf(int accountId, long amount)
+            throws OptimisticLockException, AccountNotFoundException {
+        long stamp = acquire(accountId);
+        boolean covered = records.getBalance(accountId) >= amount;
+        records.setStamp(accountId, covered ? stamp + 2 : stamp);
+        return covered;
+    }
+
+    /**
+     * Takes the record's sequence lock, the returned stamp is the (even) value it had before.
+     */
+    private long acquire(int id) throws OptimisticLockException, AccountNotFoundException {
+        if (id < 0 || id >= accountCount) throw new AccountNotFoundException();
+        long stamp = records.getStamp(id);
+        if (stamp == ABSENT) throw new AccountNotFoundException();
+        if ((stamp & 1) != 0 || !records.compareAndSetStamp(id, stamp, stamp + 1)) {
+            CONFLICTS.increment();
+            throw new OptimisticLockException();
+        }
+        return stamp;
+    }
+
+    public synchronized void setAccounts(List<Account> accounts) {
+        records.clear();
+        accountCount = 0;
+        int maxId = -1;
+        for (var account : accounts)
+            maxId = Math.max(maxId, account.getId());
+        records.ensureCapacity(Math.max(0, maxId));
+        for (int id = 0; id <= maxId; id++)
+            records.setStamp(id, ABSENT);
+        for (var account : accounts) {
+            records.setBalance(account.getId(), minorUnits.toMinor(account.getBalance()));
+            records.setStamp(account.getId(), account.getVersion() * 2L);
+        }
+        accountCount = maxId + 1;
+    }
+
+    public int getAccountCount() {
+        return accountCount;
+    }
+}
@@ -0,0 +1,31 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+
+/**
+ * Account store keeping balances as primitive minor units, able to move money between
+ * two accounts without allocating.
+ */
+public interface MinorUnitLedger {
+    MinorUnits getMinorUnits();
+
+    /**
+     * Debits the benefactor and credits the beneficiary as one commit: either both legs are applied or none.
+     * @return false if the benefactor does not have enough funds, nothing is changed in that case
+     */
+    boolean transfer(int benefactorId, int beneficiaryId, long amount)
+            throws OptimisticLockException, AccountNotFoundException;
+
+    /**
+     * Debits one account on its own, the first leg of a transfer whose credit is committed separately.
+     * @return false if the account does not have enough funds, nothing is changed in that case
+     */
+    boolean debit(int accountId, long amount) throws OptimisticLockException, AccountNotFoundException;
+
+    /**
+     * Credits one account on its own, the second leg of a transfer debited with {@link #debit(int, long)}.
+     */
+    void credit(int accountId, long amount) throws OptimisticLockException, AccountNotFoundException;
+}
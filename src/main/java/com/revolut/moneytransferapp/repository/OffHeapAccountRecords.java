@@ -0,0 +1,113 @@
+package com.revolut.moneytransferapp.repository;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link AccountRecords} kept outside of the Java heap, either in direct buffers or in a memory-mapped file.
+ * Every account is a 16 byte record (stamp:long, balance:long) at offset {@code id * 16}
+ * of fixed-size segments, so the garbage collector never sees individual accounts.
+ *
+ * A file is scratch space, not a store: the repository seeds its records on every start and recovery restores them
+ * from the snapshot and the log, so whatever the file held is discarded when it is opened and the file is deleted
+ * on {@link #close()}. It is never truncated while open, a mapping handed out before stays valid.
+ */
+class OffHeapAccountRecords implements AccountRecords, Closeable {
+
+    static final int RECORD_SIZE = 16;
+    private static final int STAMP_OFFSET = 0;
+    private static final int BALANCE_OFFSET = 8;
+
+    private static final int SEGMENT_BITS = 20;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final FileChannel channel;
+    private volatile ByteBuffer[] segments = new ByteBuffer[0];
+
+    OffHeapAccountRecords() {
+        this.file = null;
+        this.channel = null;
+    }
+
+    OffHeapAccountRecords(Path file) throws IOException {
+        this.file = file;
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public synchronized void ensureCapacity(int id) {
+        int required = (id >>> SEGMENT_BITS) + 1;
+        if (required <= segments.length) return;
+        var grown = new ByteBuffer[required];
+        System.arraycopy(segments, 0, grown, 0, segments.length);
+        for (int i = segments.length; i < required; i++)
+            grown[i] = allocate(i);
+        segments = grown;
+    }
+
+    private ByteBuffer allocate(int segment) {
+        if (channel == null) return ByteBuffer.allocateDirect(SEGMENT_BYTES);
+        try {
+            return channel.map(FileChannel.MapMode.READ_WRITE, (long) segment * SEGMENT_BYTES, SEGMENT_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public long getStamp(int id) {
+        return (long) LONGS.getAcquire(segments[id >>> SEGMENT_BITS], offset(id) + STAMP_OFFSET);
+    }
+
+    @Override
+    public boolean compareAndSetStamp(int id, long expected, long stamp) {
+        return LONGS.compareAndSet(segments[id >>> SEGMENT_BITS], offset(id) + STAMP_OFFSET, expected, stamp);
+    }
+
+    @Override
+    public void setStamp(int id, long stamp) {
+        LONGS.setRelease(segments[id >>> SEGMENT_BITS], offset(id) + STAMP_OFFSET, stamp);
+    }
+
+    @Override
+    public long getBalance(int id) {
+        return (long) LONGS.getOpaque(segments[id >>> SEGMENT_BITS], offset(id) + BALANCE_OFFSET);
+    }
+
+    @Override
+    public void setBalance(int id, long balance) {
+        LONGS.setOpaque(segments[id >>> SEGMENT_BITS], offset(id) + BALANCE_OFFSET, balance);
+    }
+
+    // the segments are mapped again as they are needed, the records in them are rewritten by the repository
+    @Override
+    public synchronized void clear() {
+        segments = new ByteBuffer[0];
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (channel == null) return;
+        channel.close();
+        Files.deleteIfExists(file);
+    }
+
+    private static int offset(int id) {
+        return (id & SEGMENT_MASK) * RECORD_SIZE;
+    }
+}
@@ -0,0 +1,35 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.MinorUnits;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * Minor-unit account repository whose records live off-heap: in direct memory, or in a memory-mapped
+ * file when one is given. Heap usage stays constant in the number of accounts. The file is scratch space, see
+ * {@link OffHeapAccountRecords}: it starts empty and is deleted on {@link #close()}.
+ */
+public class OffHeapAccountRepository extends MinorUnitAccountRepository implements Closeable {
+
+    private final OffHeapAccountRecords records;
+
+    public OffHeapAccountRepository(MinorUnits minorUnits) {
+        this(minorUnits, new OffHeapAccountRecords());
+    }
+
+    public OffHeapAccountRepository(MinorUnits minorUnits, Path file) throws IOException {
+        this(minorUnits, new OffHeapAccountRecords(file));
+    }
+
+    private OffHeapAccountRepository(MinorUnits minorUnits, OffHeapAccountRecords records) {
+        super(minorUnits, records);
+        this.records = records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        records.close();
+    }
+}
@@ -3,11 +3,20 @@ package com.revolut.moneytransferapp.repository;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
 import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
 
-import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
 
 public interface Repository<T> {
-    Collection<T> getAll();
+    List<T> getAll();
+    // keyset page: the entities with an id above afterId in id order, at most limit of them; reads O(limit) entries
+    List<T> getPage(int afterId, int limit);
     T getById(int id);
     int save(T t);
     void update(T t) throws OptimisticLockException, AccountNotFoundException;
+    // puts a recovered entity back under its own id (and version), used when replaying the write-ahead log
+    void restore(T t);
+    // visits every entity without copying the whole store, used when writing snapshots
+    default void forEach(Consumer<? super T> action) {
+        getAll().forEach(action);
+    }
 }
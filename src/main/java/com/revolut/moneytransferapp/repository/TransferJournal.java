@@ -0,0 +1,197 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.math.BigDecimal;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * {@link TransferRecords} in fixed-size memory-mapped segment files {@code transfers.<n>}, so recorded transfers
+ * stay on disk (and in the page cache) instead of on the heap. Every transfer is a 32 byte record
+ * (state:int, benefactor:int, beneficiary:int, scale:int, unscaled amount:long, timestamp:long) at offset
+ * {@code id * 32};
+ * a lookup is offset arithmetic and decodes the fields straight from the mapping.
+ *
+ * The state is written last with release semantics, a record is either complete or still empty to a reader,
+ * and after a crash a half-written record is simply empty and recovered from the write-ahead log. A record is
+ * written before the log entry of its transfer is fsynced, so a crash can also leave complete records the log never
+ * got; the recovery removes those again (see {@code Recovery}). A segment of another size was written with another
+ * record layout and is refused.
+ */
+class TransferJournal implements TransferRecords {
+
+    static final int RECORD_SIZE = 32;
+    private static final int STATE_OFFSET = 0;
+    private static final int BENEFACTOR_OFFSET = 4;
+    private static final int BENEFICIARY_OFFSET = 8;
+    private static final int SCALE_OFFSET = 12;
+    private static final int AMOUNT_OFFSET = 16;
+    private static final int TIMESTAMP_OFFSET = 24;
+    private static final int PRESENT = 1;
+
+    private static final int SEGMENT_BITS = 20;
+    private static final int SEGMENT_RECORDS = 1 << SEGMENT_BITS;
+    private static final int SEGMENT_MASK = SEGMENT_RECORDS - 1;
+    private static final int SEGMENT_BYTES = SEGMENT_RECORDS * RECORD_SIZE;
+
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final Path directory;
+    private volatile MappedByteBuffer[] segments;
+    private volatile int size;
+    // segments written to since the last force, only touched by (serialised) writers
+    private int firstDirtySegment = Integer.MAX_VALUE;
+    private int lastDirtySegment = -1;
+
+    TransferJournal(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+        int count = 0;
+        while (Files.exists(segmentPath(count)))
+            count++;
+        var mapped = new MappedByteBuffer[count];
+        for (int i = 0; i < count; i++)
+            mapped[i] = map(i);
+        this.segments = mapped;
+        this.size = recoveredSize();
+    }
+
+    private int recoveredSize() {
+        for (int segment = segments.length - 1; segment >= 0; segment--) {
+            for (int slot = SEGMENT_RECORDS - 1; slot >= 0; slot--) {
+                if ((int) INTS.get(segments[segment], slot * RECORD_SIZE + STATE_OFFSET) == PRESENT)
+                    return (segment << SEGMENT_BITS) + slot + 1;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Transfer get(int id) {
+        if (id < 0 || id >= size) return null;
+        var segment = segments[id >>> SEGMENT_BITS];
+        int offset = offset(id);
+        if ((int) INTS.getAcquire(segment, offset + STATE_OFFSET) != PRESENT) return null;
+        var transfer = new Transfer(
+                (int) INTS.get(segment, offset + BENEFACTOR_OFFSET),
+                (int) INTS.get(segment, offset + BENEFICIARY_OFFSET),
+                BigDecimal.valueOf((long) LONGS.get(segment, offset + AMOUNT_OFFSET),
+                        (int) INTS.get(segment, offset + SCALE_OFFSET)));
+        transfer.setId(id);
+        transfer.setTimestamp((long) LONGS.get(segment, offset + TIMESTAMP_OFFSET));
+        return transfer;
+    }
+
+    @Override
+    public long timestamp(int id) {
+        if (id < 0 || id >= size) return NO_TIMESTAMP;
+        var segment = segments[id >>> SEGMENT_BITS];
+        int offset = offset(id);
+        if ((int) INTS.getAcquire(segment, offset + STATE_OFFSET) != PRESENT) return NO_TIMESTAMP;
+        return (long) LONGS.get(segment, offset + TIMESTAMP_OFFSET);
+    }
+
+    @Override
+    public boolean putIfAbsent(Transfer transfer) {
+        int id = transfer.getId();
+        long unscaled = transfer.getAmount().unscaledValue().longValueExact();
+        int segmentIndex = id >>> SEGMENT_BITS;
+        var segment = segmentFor(segmentIndex);
+        int offset = offset(id);
+        if ((int) INTS.get(segment, offset + STATE_OFFSET) == PRESENT) return false;
+        INTS.set(segment, offset + BENEFACTOR_OFFSET, transfer.getBenefactorId());
+        INTS.set(segment, offset + BENEFICIARY_OFFSET, transfer.getBeneficiaryId());
+        INTS.set(segment, offset + SCALE_OFFSET, transfer.getAmount().scale());
+        LONGS.set(segment, offset + AMOUNT_OFFSET, unscaled);
+        LONGS.set(segment, offset + TIMESTAMP_OFFSET, (long) transfer.getTimestamp());
+        INTS.setRelease(segment, offset + STATE_OFFSET, PRESENT);
+        firstDirtySegment = Math.min(firstDirtySegment, segmentIndex);
+        lastDirtySegment = Math.max(lastDirtySegment, segmentIndex);
+        if (id >= size) size = id + 1;
+        return true;
+    }
+
+    @Override
+    public void remove(int id) {
+        if (id < 0 || id >= size) return;
+        int segmentIndex = id >>> SEGMENT_BITS;
+        INTS.setRelease(segments[segmentIndex], offset(id) + STATE_OFFSET, 0);
+        firstDirtySegment = Math.min(firstDirtySegment, segmentIndex);
+        lastDirtySegment = Math.max(lastDirtySegment, segmentIndex);
+        int count = size;
+        while (count > 0 && (int) INTS.get(segments[(count - 1) >>> SEGMENT_BITS],
+                offset(count - 1) + STATE_OFFSET) != PRESENT)
+            count--;
+        size = count;
+    }
+
+    @Override
+    public void checkAmount(BigDecimal amount) {
+        amount.unscaledValue().longValueExact();
+    }
+
+    @Override
+    public boolean isPersistent() {
+        return true;
+    }
+
+    @Override
+    public void force() {
+        var mapped = segments;
+        for (int i = firstDirtySegment; i <= lastDirtySegment; i++)
+            mapped[i].force();
+        firstDirtySegment = Integer.MAX_VALUE;
+        lastDirtySegment = -1;
+    }
+
+    private MappedByteBuffer segmentFor(int segmentIndex) {
+        var mapped = segments;
+        if (segmentIndex < mapped.length) return mapped[segmentIndex];
+        var grown = new MappedByteBuffer[segmentIndex + 1];
+        System.arraycopy(mapped, 0, grown, 0, mapped.length);
+        try {
+            for (int i = mapped.length; i <= segmentIndex; i++)
+                grown[i] = map(i);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        segments = grown;
+        return grown[segmentIndex];
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        try (var channel = FileChannel.open(segmentPath(segment),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // a segment of another record size (24 bytes before transfers had a commit time) would be misread
+            long existing = channel.size();
+            if (existing != 0 && existing != SEGMENT_BYTES)
+                throw new IOException(segmentPath(segment) + " is not a journal segment of this version: "
+                        + existing + " bytes instead of " + SEGMENT_BYTES);
+            // the mapping stays valid after the channel is closed
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, SEGMENT_BYTES);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve("transfers." + segment);
+    }
+
+    private static int offset(int id) {
+        return (id & SEGMENT_MASK) * RECORD_SIZE;
+    }
+}
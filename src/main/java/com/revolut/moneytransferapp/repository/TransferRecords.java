@@ -0,0 +1,38 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+
+/**
+ * Storage behind {@link TransferRepository}: transfers addressed directly by their dense id.
+ * Writes are serialised by the repository, reads may run concurrently with them.
+ */
+interface TransferRecords {
+
+    long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    // one past the highest id stored so far
+    int size();
+
+    // null for an id out of range or a slot that has not been filled yet
+    Transfer get(int id);
+
+    // commit time of the transfer without decoding the rest of it, NO_TIMESTAMP where get would return null
+    long timestamp(int id);
+
+    // stores the transfer under its id unless that slot is already taken
+    boolean putIfAbsent(Transfer transfer);
+
+    // recovery only: empties the slot again, size() drops to one past the highest id still stored
+    void remove(int id);
+
+    // throws ArithmeticException if the amount can not be stored without losing precision
+    void checkAmount(BigDecimal amount);
+
+    boolean isPersistent();
+
+    // makes everything stored so far durable, a no-op for memory-only records
+    void force() throws IOException;
+}
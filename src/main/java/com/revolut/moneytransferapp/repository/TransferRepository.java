@@ -2,38 +2,123 @@ package com.revolut.moneytransferapp.repository;
 
 import com.revolut.moneytransferapp.model.Transfer;
 
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
 
 public class TransferRepository implements Repository<Transfer>{
-    private List<Transfer> transfers;
-    private int transferCount;
+    // indexed by transfer id, a slot is empty while a recovered transfer before it has not been restored yet, or
+    // for good if the recovery dropped a journaled transfer whose log entry was lost
+    private final TransferRecords transfers;
+    // serializes id assignment; a lock rather than a monitor so that virtual threads waiting for it can unmount
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // transfer ids by benefactor and beneficiary
+    private final AccountTransferIndex accountIndex = new AccountTransferIndex();
+    // every transfer with a lower id is in the account index; restored and reopened ones are added on first use
+    private volatile int indexed;
+    // commit time of the latest transfer, a transfer saved after it never gets an earlier one; guarded by writeLock
+    private long lastTimestamp = Long.MIN_VALUE;
 
     public TransferRepository() {
-        transfers = new ArrayList<>();
-        transferCount = transfers.size();
+        transfers = new HeapTransferRecords();
+    }
+
+    // keeps the transfers in memory-mapped segment files in the directory, heap usage does not grow with them
+    public TransferRepository(Path directory) throws IOException {
+        transfers = new TransferJournal(directory);
     }
 
     @Override
     public List<Transfer> getAll() {
-        return transfers;
+        var all = new ArrayList<Transfer>();
+        forEach(all::add);
+        return all;
+    }
+
+    @Override
+    public List<Transfer> getPage(int afterId, int limit) {
+        // recorded transfers never change, so a page is stable however many are saved while it is read
+        int count = transfers.size();
+        var page = new ArrayList<Transfer>(Math.min(limit, 1024));
+        for (long id = Math.max(0L, afterId + 1L); id < count && page.size() < limit; id++) {
+            var transfer = transfers.get((int) id);
+            if (transfer != null) page.add(transfer);
+        }
+        return page;
+    }
+
+    @Override
+    public void forEach(Consumer<? super Transfer> action) {
+        // transfers are never removed, so visiting them one by one does not hold off concurrent saves
+        int count = transfers.size();
+        for (int id = 0; id < count; id++) {
+            var transfer = transfers.get(id);
+            if (transfer != null) action.accept(transfer);
+        }
+    }
+
+    /**
+     * Transfers of one account, as benefactor or beneficiary, in id order.
+     * Costs O(log n + limit) for an account with n transfers, independent of the size of the whole history.
+     */
+    public List<Transfer> getPageOfAccount(int accountId, int afterId, int limit) {
+        catchUpAccountIndex();
+        var ids = accountIndex.page(accountId, afterId, limit);
+        var page = new ArrayList<Transfer>(ids.length);
+        for (int id : ids) {
+            // indexed transfers are published (see save); should one not be, the page ends before it rather than
+            // letting the cursor pass it
+            var transfer = transfers.get(id);
+            if (transfer == null) break;
+            page.add(transfer);
+        }
+        return page;
+    }
+
+    /**
+     * Visits the transfers committed in [from, to), in id order. Commit times grow with the id, so the first one is
+     * found by a binary search over the ids and the walk stops at the first transfer past the range: the cost is
+     * O(log n) plus the transfers visited.
+     */
+    public void forEachBetween(long from, long to, Consumer<? super Transfer> action) {
+        int count = transfers.size();
+        for (int id = firstCommittedAtOrAfter(from, count); id < count; id++) {
+            var transfer = transfers.get(id);
+            if (transfer == null) continue;
+            if (transfer.getTimestamp() >= to) return;
+            action.accept(transfer);
+        }
     }
 
     @Override
     public Transfer getById(int id) {
-        for (Transfer transfer : transfers)
-            if(transfer.getId() == id)
-                return transfer;
-        return null;
+        return transfers.get(id);
     }
 
     @Override
     public int save(Transfer transfer) {
-        int id = transfers.size();
-        transfer.setId(id);
-        transfers.add(transfer);
-        ++transferCount;
-        return id;
+        writeLock.lock();
+        try {
+            indexUpTo(transfers.size());
+            int id = transfers.size();
+            transfer.setId(id);
+            // the wall clock may step back, the commit time does not
+            lastTimestamp = Math.max(System.currentTimeMillis(), lastTimestamp);
+            transfer.setTimestamp(lastTimestamp);
+            // published first, so that an account page never holds an id whose record is not there yet; a reader
+            // that finds the record ahead of the index waits for the lock in catchUpAccountIndex
+            transfers.putIfAbsent(transfer);
+            accountIndex.add(id, transfer.getBenefactorId(), transfer.getBeneficiaryId());
+            indexed = id + 1;
+            return id;
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
@@ -41,4 +126,98 @@ public class TransferRepository implements Repository<Transfer>{
         var exceptionMsg = "Transfer object can not be changed";
         throw new UnsupportedOperationException(exceptionMsg);
     }
+
+    // recovery only: a transfer restored after the account index was first used is missing from it
+    @Override
+    public void restore(Transfer transfer) {
+        writeLock.lock();
+        try {
+            transfers.putIfAbsent(transfer);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * @throws ArithmeticException if the amount can not be recorded exactly, checked before any balance is touched
+     */
+    public void checkAmount(BigDecimal amount) {
+        transfers.checkAmount(amount);
+    }
+
+    // true if recorded transfers survive a restart without being part of a snapshot
+    public boolean isPersistent() {
+        return transfers.isPersistent();
+    }
+
+    // one past the highest id recorded so far
+    public int size() {
+        return transfers.size();
+    }
+
+    /**
+     * Recovery only, before the first save or read: removes the recorded transfers from {@code fromId} on that are
+     * not {@code logged}, their log entries were lost in a crash. The next save reuses the ids freed at the end.
+     */
+    public void dropUnlogged(int fromId, IntPredicate logged) throws IOException {
+        writeLock.lock();
+        try {
+            boolean dropped = false;
+            for (int id = transfers.size() - 1; id >= fromId; id--) {
+                if (transfers.get(id) != null && !logged.test(id)) {
+                    transfers.remove(id);
+                    dropped = true;
+                }
+            }
+            if (dropped) transfers.force();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public void force() throws IOException {
+        writeLock.lock();
+        try {
+            transfers.force();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // restores arrive in any order, so they are indexed in one pass in id order once they are all in;
+    // the latest commit time is picked up on the way
+    private void catchUpAccountIndex() {
+        if (indexed >= transfers.size()) return;
+        writeLock.lock();
+        try {
+            indexUpTo(transfers.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void indexUpTo(int size) {
+        for (int id = indexed; id < size; id++) {
+            var transfer = transfers.get(id);
+            if (transfer != null) {
+                accountIndex.add(id, transfer.getBenefactorId(), transfer.getBeneficiaryId());
+                lastTimestamp = Math.max(lastTimestamp, transfer.getTimestamp());
+            }
+        }
+        if (size > indexed) indexed = size;
+    }
+
+    private int firstCommittedAtOrAfter(long time, int count) {
+        int low = 0, high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            // empty slots only exist while transfers are restored or saved, the next filled one stands in for them
+            int probe = middle;
+            long timestamp;
+            while ((timestamp = transfers.timestamp(probe)) == TransferRecords.NO_TIMESTAMP && ++probe < high) { }
+            if (probe < high && timestamp < time) low = probe + 1;
+            else high = middle;
+        }
+        return low;
+    }
 }
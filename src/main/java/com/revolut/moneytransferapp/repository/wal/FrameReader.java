@@ -0,0 +1,95 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/**
+ * Reads {@code [length:int][crc32:int][payload]} frames, the layout shared by log segments and snapshots.
+ * The file is read in large blocks, so small frames do not cost a system call each.
+ *
+ * Both kinds of file start with {@code [magic:int][version:byte]}. The entries in the frames change with the
+ * version, so a file of another version is rejected instead of being decoded as garbage; files written before the
+ * header existed do not start with the magic number and are rejected as well.
+ */
+final class FrameReader {
+
+    static final int HEADER = 8;
+    static final int FILE_HEADER = 5;
+    // "MTWL"
+    static final int MAGIC = 0x4D54574C;
+    // 1: transfers carry their commit time, decimals an int length; 2: snapshots hold the size of the journal
+    static final byte VERSION = 2;
+
+    private static final int BLOCK_SIZE = 1 << 20;
+
+    interface Handler {
+        // the payload is only valid during the call, it is overwritten by the next block
+        void onFrame(ByteBuffer payload) throws IOException;
+    }
+
+    private final FileChannel channel;
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE).limit(0);
+    private long readPosition;
+
+    FrameReader(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    static ByteBuffer fileHeader() {
+        return ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).put(VERSION).flip();
+    }
+
+    /**
+     * Passes every complete frame to the handler, stopping at the end of the file or at the first torn frame.
+     * @return the offset right after the last valid frame, 0 if the file does not even hold a complete header
+     * @throws IOException also if the file is not of the current {@link #VERSION}
+     */
+    long read(Handler handler) throws IOException {
+        long size = channel.size();
+        if (!fill(FILE_HEADER)) return 0;
+        int magic = buffer.getInt();
+        byte version = buffer.get();
+        if (magic != MAGIC)
+            throw new IOException("Not a log or snapshot file of this version (written by an earlier one?)");
+        if (version != VERSION)
+            throw new IOException("Log or snapshot file of format version " + version + ", this one reads " + VERSION);
+        long position = FILE_HEADER;
+        while (fill(HEADER)) {
+            int start = buffer.position();
+            int length = buffer.getInt(start);
+            int checksum = buffer.getInt(start + 4);
+            if (length < 0 || position + HEADER + length > size || !fill(HEADER + length)) break;
+            start = buffer.position();
+            var payload = buffer.duplicate();
+            payload.position(start + HEADER).limit(start + HEADER + length);
+            crc.reset();
+            crc.update(payload.duplicate());
+            if ((int) crc.getValue() != checksum) break;
+            handler.onFrame(payload.slice());
+            buffer.position(start + HEADER + length);
+            position += HEADER + length;
+        }
+        return position;
+    }
+
+    private boolean fill(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return true;
+        if (bytes > buffer.capacity()) {
+            var grown = ByteBuffer.allocate(bytes);
+            grown.put(buffer);
+            buffer = grown;
+        } else {
+            buffer.compact();
+        }
+        while (buffer.position() < bytes) {
+            int read = channel.read(buffer, readPosition);
+            if (read < 0) break;
+            readPosition += read;
+        }
+        buffer.flip();
+        return buffer.remaining() >= bytes;
+    }
+}
@@ -0,0 +1,149 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Binary encoding of log entries. One appended payload holds one or more entries that are made durable
+ * (and replayed) together, e.g. a transfer plus the resulting state of both accounts.
+ *
+ * Account entries carry the committed version, so replay can apply them in any order: the highest version wins.
+ */
+public final class LogRecords {
+
+    static final byte ACCOUNT = 1;
+    static final byte TRANSFER = 2;
+    static final byte DEBIT = 3;
+    static final byte CREDIT = 4;
+
+    public interface Handler {
+        void onAccount(Account account);
+        void onTransfer(Transfer transfer);
+
+        // first leg of a transfer between shards, the transfer is recorded but the beneficiary not credited yet
+        default void onTransferDebited(Transfer transfer) {
+            onTransfer(transfer);
+        }
+
+        // second leg of a transfer between shards
+        default void onTransferCredited(int transferId) {
+        }
+    }
+
+    private LogRecords() {
+    }
+
+    public static byte[] account(Account account) {
+        var buffer = ByteBuffer.allocate(accountSize(account));
+        writeAccount(buffer, account);
+        return buffer.array();
+    }
+
+    public static byte[] transfer(Transfer transfer, Account benefactor, Account beneficiary) {
+        var buffer = ByteBuffer.allocate(transferSize(transfer) + accountSize(benefactor) + accountSize(beneficiary));
+        writeTransfer(buffer, transfer);
+        writeAccount(buffer, benefactor);
+        writeAccount(buffer, beneficiary);
+        return buffer.array();
+    }
+
+    /**
+     * Transfer whose benefactor has been debited, the credit follows in a separate {@link #transferCredit} entry.
+     * A debit without its credit in the log is a hand-off cut short by a crash, recovery has to finish it.
+     */
+    public static byte[] transferDebit(Transfer transfer, Account benefactor) {
+        var buffer = ByteBuffer.allocate(transferSize(transfer) + accountSize(benefactor));
+        writeTransfer(buffer, DEBIT, transfer);
+        writeAccount(buffer, benefactor);
+        return buffer.array();
+    }
+
+    public static byte[] transferCredit(Transfer transfer, Account beneficiary) {
+        var buffer = ByteBuffer.allocate(1 + 4 + accountSize(beneficiary));
+        buffer.put(CREDIT).putInt(transfer.getId());
+        writeAccount(buffer, beneficiary);
+        return buffer.array();
+    }
+
+    static void decode(ByteBuffer payload, Handler handler) {
+        while (payload.hasRemaining()) {
+            var type = payload.get();
+            switch (type) {
+                case ACCOUNT:
+                    int accountId = payload.getInt();
+                    int version = payload.getInt();
+                    handler.onAccount(new Account(accountId, readDecimal(payload), version));
+                    break;
+                case TRANSFER:
+                    handler.onTransfer(readTransfer(payload));
+                    break;
+                case DEBIT:
+                    handler.onTransferDebited(readTransfer(payload));
+                    break;
+                case CREDIT:
+                    handler.onTransferCredited(payload.getInt());
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown log entry type: " + type);
+            }
+        }
+    }
+
+    static int accountSize(Account account) {
+        return 1 + 4 + 4 + decimalSize(account.getBalance());
+    }
+
+    static void writeAccount(ByteBuffer buffer, Account account) {
+        buffer.put(ACCOUNT).putInt(account.getId()).putInt(account.getVersion());
+        writeDecimal(buffer, account.getBalance());
+    }
+
+    static int transferSize(Transfer transfer) {
+        return 1 + 4 + 8 + 4 + 4 + decimalSize(transfer.getAmount());
+    }
+
+    static void writeTransfer(ByteBuffer buffer, Transfer transfer) {
+        writeTransfer(buffer, TRANSFER, transfer);
+    }
+
+    private static void writeTransfer(ByteBuffer buffer, byte type, Transfer transfer) {
+        buffer.put(type).putInt(transfer.getId()).putLong(transfer.getTimestamp())
+                .putInt(transfer.getBenefactorId()).putInt(transfer.getBeneficiaryId());
+        writeDecimal(buffer, transfer.getAmount());
+    }
+
+    private static Transfer readTransfer(ByteBuffer payload) {
+        int transferId = payload.getInt();
+        long timestamp = payload.getLong();
+        int benefactor = payload.getInt();
+        int beneficiary = payload.getInt();
+        var transfer = new Transfer(benefactor, beneficiary, readDecimal(payload));
+        transfer.setId(transferId);
+        transfer.setTimestamp(timestamp);
+        return transfer;
+    }
+
+    private static int decimalSize(BigDecimal value) {
+        return 4 + 4 + value.unscaledValue().toByteArray().length;
+    }
+
+    // scale, then the length of the unscaled value as an int: an amount of any precision the API takes is logged
+    private static void writeDecimal(ByteBuffer buffer, BigDecimal value) {
+        var unscaled = value.unscaledValue().toByteArray();
+        buffer.putInt(value.scale()).putInt(unscaled.length).put(unscaled);
+    }
+
+    private static BigDecimal readDecimal(ByteBuffer buffer) {
+        int scale = buffer.getInt();
+        int length = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining())
+            throw new IllegalStateException("Decimal of " + length + " bytes in an entry of " + buffer.remaining());
+        var unscaled = new byte[length];
+        buffer.get(unscaled);
+        return new BigDecimal(new BigInteger(unscaled), scale);
+    }
+}
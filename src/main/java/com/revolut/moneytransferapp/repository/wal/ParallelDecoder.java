@@ -0,0 +1,74 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decodes frames on an executor while the caller keeps reading the file. A payload is just a sequence of entries,
+ * so small frames (a log frame is usually one transfer) are concatenated into blocks before they are handed over. Only usable with handlers whose
+ * result does not depend on the order of the entries (see {@link com.revolut.moneytransferapp.repository.Repository#restore}).
+ * The number of frames in flight is bounded, so a big snapshot is never held in memory at once.
+ */
+final class ParallelDecoder implements FrameReader.Handler {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int BLOCKS_IN_FLIGHT_PER_THREAD = 4;
+
+    private final ExecutorService executor;
+    private final LogRecords.Handler handler;
+    private final int permits;
+    private final Semaphore inFlight;
+    private final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+    private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+    ParallelDecoder(ExecutorService executor, int threads, LogRecords.Handler handler) {
+        this.executor = executor;
+        this.handler = handler;
+        this.permits = Math.max(1, threads) * BLOCKS_IN_FLIGHT_PER_THREAD;
+        this.inFlight = new Semaphore(permits);
+    }
+
+    @Override
+    public void onFrame(ByteBuffer payload) throws IOException {
+        if (block.remaining() < payload.remaining()) {
+            dispatch();
+            if (block.capacity() < payload.remaining()) block = ByteBuffer.allocate(payload.remaining());
+        }
+        block.put(payload);
+    }
+
+    private void dispatch() throws IOException {
+        if (block.position() == 0) return;
+        var entries = block.flip();
+        block = ByteBuffer.allocate(BLOCK_SIZE);
+        inFlight.acquireUninterruptibly();
+        executor.execute(() -> {
+            try {
+                LogRecords.decode(entries, handler);
+            } catch (RuntimeException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                inFlight.release();
+            }
+        });
+        checkFailure();
+    }
+
+    /**
+     * Waits until every submitted frame has been handled.
+     */
+    void await() throws IOException {
+        dispatch();
+        inFlight.acquireUninterruptibly(permits);
+        inFlight.release(permits);
+        checkFailure();
+    }
+
+    private void checkFailure() throws IOException {
+        var e = failure.get();
+        if (e != null) throw new IOException("Could not decode a recovered frame", e);
+    }
+}
@@ -0,0 +1,119 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Startup recovery: the latest snapshot plus the log segments written after it, instead of the whole history.
+ * Both are decoded on every core; the handler has to be order-independent, like {@code Repository.restore}.
+ *
+ * A transfer journal on disk is written when a transfer is saved, before its log entry is fsynced. After a crash
+ * the journal can therefore hold transfers whose entries were lost with the rest of the unflushed log, and whose
+ * balances the recovered accounts never saw; those are dropped from it.
+ */
+public final class Recovery {
+
+    private Recovery() {
+    }
+
+    public static List<Transfer> recover(SnapshotFile snapshot, WriteAheadLog log, LogRecords.Handler handler)
+            throws IOException {
+        return recover(snapshot, log, null, handler);
+    }
+
+    /**
+     * @param transfers the repository the handler restores transfers into if it keeps them in a journal, whose
+     *                  transfers missing from the snapshot and the log are dropped; may be null
+     * @return the transfers between shards that were debited but never credited, in id order;
+     *         the caller has to credit (and log) them before taking new transfers
+     */
+    public static List<Transfer> recover(SnapshotFile snapshot, WriteAheadLog log, TransferRepository transfers,
+                                         LogRecords.Handler handler) throws IOException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        var threadCount = new AtomicInteger();
+        var executor = Executors.newFixedThreadPool(threads, runnable -> {
+            var thread = new Thread(runnable, "recovery-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        var handOffs = new HandOffs(handler);
+        try {
+            var coverage = snapshot.load(handOffs, executor, threads);
+            boolean journaled = transfers != null && transfers.isPersistent();
+            if (journaled) handOffs.collectLoggedFrom(coverage.journaledTransfers);
+            log.replay(coverage.logSegment, handOffs, executor, threads);
+            log.continueFrom(coverage.logSegment);
+            if (journaled) transfers.dropUnlogged(coverage.journaledTransfers, handOffs::logged);
+        } finally {
+            executor.shutdown();
+        }
+        return handOffs.unfinished();
+    }
+
+    // pairs debits with credits; entries arrive in any order, so both sides are collected before matching
+    private static final class HandOffs implements LogRecords.Handler {
+
+        private final LogRecords.Handler handler;
+        private final Map<Integer, Transfer> debited = new ConcurrentHashMap<>();
+        private final Set<Integer> credited = ConcurrentHashMap.newKeySet();
+        // ids of the transfers in the log from collectFrom on, only collected for a journal
+        private final Set<Integer> logged = ConcurrentHashMap.newKeySet();
+        private volatile int collectFrom = Integer.MAX_VALUE;
+
+        HandOffs(LogRecords.Handler handler) {
+            this.handler = handler;
+        }
+
+        @Override
+        public void onAccount(Account account) {
+            handler.onAccount(account);
+        }
+
+        @Override
+        public void onTransfer(Transfer transfer) {
+            if (transfer.getId() >= collectFrom) logged.add(transfer.getId());
+            handler.onTransfer(transfer);
+        }
+
+        @Override
+        public void onTransferDebited(Transfer transfer) {
+            if (transfer.getId() >= collectFrom) logged.add(transfer.getId());
+            debited.put(transfer.getId(), transfer);
+            handler.onTransferDebited(transfer);
+        }
+
+        @Override
+        public void onTransferCredited(int transferId) {
+            credited.add(transferId);
+            handler.onTransferCredited(transferId);
+        }
+
+        void collectLoggedFrom(int transferId) {
+            collectFrom = transferId;
+        }
+
+        boolean logged(int transferId) {
+            return logged.contains(transferId);
+        }
+
+        List<Transfer> unfinished() {
+            var unfinished = new ArrayList<Transfer>();
+            for (var transfer : debited.values())
+                if (!credited.contains(transfer.getId()))
+                    unfinished.add(transfer);
+            unfinished.sort(Comparator.comparingInt(Transfer::getId));
+            return unfinished;
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.Repository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutorService;
+import java.util.zip.CRC32;
+
+/**
+ * Point-in-time copy of the accounts and transfers, plus the first log segment that is not covered by it.
+ *
+ * The copy is fuzzy: it is read while transfers go on, so accounts may be captured at different moments. That is
+ * fine as long as every change it may have missed is in the log from that segment on, since replay keeps the
+ * highest version of each account no matter in which order entries arrive.
+ *
+ * Same header and framing as the log ({@code [length][crc32][payload]}); the first frame holds the segment number
+ * and the number of transfers in the journal, the following ones hold log entries in blocks of up to 64 KB so they
+ * can be decoded in parallel.
+ */
+public class SnapshotFile {
+
+    /**
+     * What a loaded snapshot covers: the log before {@code logSegment}, and the transfers of the journal below
+     * {@code journaledTransfers} (0 unless transfers are kept in a journal).
+     */
+    static final class Coverage {
+        final long logSegment;
+        final int journaledTransfers;
+
+        Coverage(long logSegment, int journaledTransfers) {
+            this.logSegment = logSegment;
+            this.journaledTransfers = journaledTransfers;
+        }
+    }
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final Path temporary;
+
+    public SnapshotFile(Path file) {
+        this.file = file;
+        this.temporary = file.resolveSibling(file.getFileName() + ".tmp");
+    }
+
+    /**
+     * Writes a new snapshot next to the current one, it replaces it only once {@link #publish()} is called.
+     * Transfers kept in a journal on disk are not copied, only the size of the journal is recorded: it is read
+     * before the accounts, so the copy has seen the balances of every transfer below it.
+     */
+    public void write(long logSegment, Repository<Account> accounts, TransferRepository transfers)
+            throws IOException {
+        int journaledTransfers = transfers.isPersistent() ? transfers.size() : 0;
+        try (var channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            var header = FrameReader.fileHeader();
+            while (header.hasRemaining())
+                channel.write(header);
+            var writer = new BlockWriter(channel);
+            writer.block.putLong(logSegment).putInt(journaledTransfers);
+            writer.flush();
+            try {
+                accounts.forEach(account -> {
+                    writer.reserve(LogRecords.accountSize(account));
+                    LogRecords.writeAccount(writer.block, account);
+                });
+                if (!transfers.isPersistent()) {
+                    transfers.forEach(transfer -> {
+                        writer.reserve(LogRecords.transferSize(transfer));
+                        LogRecords.writeTransfer(writer.block, transfer);
+                    });
+                }
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            writer.flush();
+            channel.force(true);
+        }
+    }
+
+    /**
+     * Atomically replaces the previous snapshot with the one written last.
+     */
+    public void publish() throws IOException {
+        Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        WriteAheadLog.forceDirectory(file);
+    }
+
+    /**
+     * Decodes the snapshot on {@code threads} threads of the executor, entries are handled in no particular order.
+     * @return the first log segment to replay on top of it, every segment (0) and no transfers if there is no
+     *         snapshot yet
+     */
+    Coverage load(LogRecords.Handler handler, ExecutorService executor, int threads) throws IOException {
+        if (!Files.exists(file)) return new Coverage(0, 0);
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            var decoder = new ParallelDecoder(executor, threads, handler);
+            var coverage = new Coverage[1];
+            long end = new FrameReader(channel).read(payload -> {
+                if (coverage[0] == null) coverage[0] = new Coverage(payload.getLong(0), payload.getInt(8));
+                else decoder.onFrame(payload);
+            });
+            decoder.await();
+            // a published snapshot is always complete, anything unreadable in it is damage
+            if (coverage[0] == null || end != channel.size())
+                throw new IOException("Snapshot " + file + " is damaged at offset " + end);
+            return coverage[0];
+        }
+    }
+
+    private static final class BlockWriter {
+
+        private final FileChannel channel;
+        private final ByteBuffer header = ByteBuffer.allocate(FrameReader.HEADER);
+        private final CRC32 crc = new CRC32();
+        private ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+
+        private BlockWriter(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        private void reserve(int bytes) {
+            if (block.remaining() >= bytes) return;
+            try {
+                flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (block.capacity() < bytes) block = ByteBuffer.allocate(bytes);
+        }
+
+        private void flush() throws IOException {
+            if (block.position() == 0) return;
+            block.flip();
+            crc.reset();
+            crc.update(block.duplicate());
+            header.clear();
+            header.putInt(block.remaining()).putInt((int) crc.getValue()).flip();
+            var frame = new ByteBuffer[]{header, block};
+            while (block.hasRemaining())
+                channel.write(frame);
+            block.clear();
+        }
+    }
+}
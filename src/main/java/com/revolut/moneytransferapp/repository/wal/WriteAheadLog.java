@@ -0,0 +1,355 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log written through a {@link FileChannel} with group commit.
+ *
+ * Appends only copy the payload into an in-memory batch and return a future. A single flusher thread writes the
+ * batch and fsyncs it once for everybody in it, then completes their futures. The flusher waits until either
+ * {@code batchSize} payloads are pending or {@code flushInterval} has passed since it started collecting,
+ * while it is writing the next batch is already being filled.
+ *
+ * Every segment starts with the versioned header of {@link FrameReader} and every payload is framed as
+ * {@code [length:int][crc32:int][payload]}; a torn frame at the end of the file (crash in the middle of a write) is
+ * cut off when the log is opened, a segment of another format version is refused.
+ *
+ * Entries are always appended to {@code file}. {@link #roll()} moves it aside as the archived segment
+ * {@code file.<n>} and starts segment n + 1, so that a snapshot only needs the segments written after it.
+ *
+ * A failed write, fsync or roll leaves the end of the file unknown, so the log stops there: everything pending and
+ * every later append or roll fails, the torn frame is cut off when the log is reopened.
+ */
+public class WriteAheadLog implements Closeable {
+
+    private final Path file;
+    private FileChannel channel;
+    private volatile long activeSegment;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition pendingChanged = lock.newCondition();
+    private ByteBuffer pending = ByteBuffer.allocate(64 * 1024);
+    private ByteBuffer spare = ByteBuffer.allocate(64 * 1024);
+    private List<CompletableFuture<Void>> waiters = new ArrayList<>();
+    private List<CompletableFuture<Void>> spareWaiters = new ArrayList<>();
+    private CompletableFuture<Long> rollRequest;
+    private boolean closed;
+    private IOException failure;
+
+    private final Thread flusher;
+
+    public WriteAheadLog(Path file, int batchSize, long flushInterval, TimeUnit unit) throws IOException {
+        this.file = file;
+        var archived = archivedSegments();
+        this.activeSegment = archived.isEmpty() ? 1 : archived.get(archived.size() - 1) + 1;
+        this.channel = FileChannel.open(file,
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.batchSize = Math.max(1, batchSize);
+        this.flushIntervalNanos = unit.toNanos(flushInterval);
+        long end = new FrameReader(channel).read(payload -> { });
+        channel.truncate(end);
+        if (end == 0) end = writeFileHeader(channel);
+        channel.position(end);
+        flusher = new Thread(this::flushLoop, "wal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Decodes every entry of every segment, in the order they were appended.
+     */
+    public void replay(LogRecords.Handler handler) throws IOException {
+        for (var segment : segmentFiles(0))
+            replay(segment, payload -> LogRecords.decode(payload, handler));
+    }
+
+    /**
+     * Decodes the entries of segment {@code fromSegment} and later ones on {@code threads} threads of the executor.
+     * Entries are handled in no particular order, so the handler has to be order-independent.
+     */
+    public void replay(long fromSegment, LogRecords.Handler handler, ExecutorService executor, int threads)
+            throws IOException {
+        var decoder = new ParallelDecoder(executor, threads, handler);
+        for (var segment : segmentFiles(fromSegment))
+            replay(segment, decoder);
+        decoder.await();
+    }
+
+    private static void replay(Path segment, FrameReader.Handler handler) throws IOException {
+        try (var reader = FileChannel.open(segment, StandardOpenOption.READ)) {
+            new FrameReader(reader).read(handler);
+        }
+    }
+
+    /**
+     * Asks the flusher to start a new segment right after the entries appended so far.
+     * @return a future completed with the number of the new segment, the first one that has
+     *         to be replayed on top of a snapshot taken from now on
+     */
+    public CompletableFuture<Long> roll() {
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Write-ahead log is closed");
+            if (failure != null) return CompletableFuture.failedFuture(failed());
+            if (rollRequest == null) {
+                rollRequest = new CompletableFuture<>();
+                pendingChanged.signal();
+            }
+            return rollRequest;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes the archived segments older than {@code segment}, once a snapshot covers them.
+     */
+    public void deleteSegmentsBefore(long segment) throws IOException {
+        for (var archived : archivedSegments())
+            if (archived < segment)
+                Files.deleteIfExists(segmentPath(archived));
+    }
+
+    public long getActiveSegment() {
+        return activeSegment;
+    }
+
+    /**
+     * Numbers the active segment at least {@code segment}, the first one a snapshot does not cover. Once a snapshot
+     * has deleted the segments before it, the archived files no longer tell how far the numbering got; without
+     * this the next roll would archive new entries under a number the snapshot skips on recovery.
+     * Has to be called before the first {@link #roll()}.
+     */
+    public void continueFrom(long segment) {
+        lock.lock();
+        try {
+            if (segment > activeSegment) activeSegment = segment;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private List<Path> segmentFiles(long fromSegment) {
+        var segments = new ArrayList<Path>();
+        for (var archived : archivedSegments())
+            if (archived >= fromSegment)
+                segments.add(segmentPath(archived));
+        segments.add(file);
+        return segments;
+    }
+
+    private List<Long> archivedSegments() {
+        var prefix = file.getFileName() + ".";
+        var segments = new ArrayList<Long>();
+        var names = file.toAbsolutePath().getParent().toFile().list();
+        if (names == null) return segments;
+        for (var name : names) {
+            if (!name.startsWith(prefix)) continue;
+            try {
+                segments.add(Long.parseLong(name.substring(prefix.length())));
+            } catch (NumberFormatException e) {
+                // not a segment, e.g. the snapshot written next to the log
+            }
+        }
+        segments.sort(null);
+        return segments;
+    }
+
+    private Path segmentPath(long segment) {
+        return file.resolveSibling(file.getFileName() + "." + segment);
+    }
+
+    /**
+     * @return a future completed once the payload (and everything appended before it) is on disk
+     */
+    public CompletableFuture<Void> append(byte[] payload) {
+        var durable = new CompletableFuture<Void>();
+        var crc = new CRC32();
+        crc.update(payload);
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Write-ahead log is closed");
+            if (failure != null) return CompletableFuture.failedFuture(failed());
+            ensureCapacity(FrameReader.HEADER + payload.length);
+            pending.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+            waiters.add(durable);
+            if (waiters.size() == 1 || waiters.size() >= batchSize)
+                pendingChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+        return durable;
+    }
+
+    /**
+     * @return a future completed once everything appended so far is on disk
+     */
+    public CompletableFuture<Void> sync() {
+        return append(new byte[0]);
+    }
+
+    private void ensureCapacity(int bytes) {
+        if (pending.remaining() >= bytes) return;
+        var grown = ByteBuffer.allocate(Math.max(pending.capacity() * 2, pending.position() + bytes));
+        grown.put(pending.flip());
+        pending = grown;
+    }
+
+    private void flushLoop() {
+        while (true) {
+            ByteBuffer batch;
+            List<CompletableFuture<Void>> batchWaiters;
+            CompletableFuture<Long> roll;
+            lock.lock();
+            try {
+                while (waiters.isEmpty() && rollRequest == null && !closed)
+                    pendingChanged.awaitUninterruptibly();
+                if (waiters.isEmpty() && rollRequest == null) return;
+                long deadline = System.nanoTime() + flushIntervalNanos;
+                long remaining;
+                while (waiters.size() < batchSize && rollRequest == null && !closed
+                        && (remaining = deadline - System.nanoTime()) > 0)
+                    pendingChanged.awaitNanos(remaining);
+                batch = pending;
+                batchWaiters = waiters;
+                pending = spare;
+                waiters = spareWaiters;
+                // everything appended before the roll was requested is in this batch
+                roll = rollRequest;
+                rollRequest = null;
+            } catch (InterruptedException e) {
+                fail(new InterruptedIOException("Write-ahead log flusher was interrupted"), List.of(), null);
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            try {
+                batch.flip();
+                while (batch.hasRemaining())
+                    channel.write(batch);
+                channel.force(false);
+            } catch (IOException e) {
+                fail(e, batchWaiters, roll);
+                return;
+            }
+            for (var waiter : batchWaiters)
+                waiter.complete(null);
+            batch.clear();
+            batchWaiters.clear();
+            if (roll != null) {
+                try {
+                    rollSegment();
+                } catch (IOException e) {
+                    fail(e, List.of(), roll);
+                    return;
+                }
+                roll.complete(activeSegment);
+            }
+
+            lock.lock();
+            try {
+                spare = batch;
+                spareWaiters = batchWaiters;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Stops the log after the flusher could not write: fails the batch it was writing and everything still pending.
+     */
+    private void fail(IOException cause, List<CompletableFuture<Void>> batchWaiters, CompletableFuture<Long> roll) {
+        List<CompletableFuture<Void>> pendingWaiters;
+        CompletableFuture<Long> pendingRoll;
+        lock.lock();
+        try {
+            failure = cause;
+            pendingWaiters = waiters;
+            waiters = new ArrayList<>();
+            pendingRoll = rollRequest;
+            rollRequest = null;
+        } finally {
+            lock.unlock();
+        }
+        for (var waiter : batchWaiters)
+            waiter.completeExceptionally(failed());
+        for (var waiter : pendingWaiters)
+            waiter.completeExceptionally(failed());
+        if (roll != null) roll.completeExceptionally(failed());
+        if (pendingRoll != null) pendingRoll.completeExceptionally(failed());
+    }
+
+    private UncheckedIOException failed() {
+        return new UncheckedIOException("Write-ahead log failed", failure);
+    }
+
+    private void rollSegment() throws IOException {
+        channel.close();
+        Files.move(file, segmentPath(activeSegment), StandardCopyOption.ATOMIC_MOVE);
+        channel = FileChannel.open(file,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        // made durable by the fsync of the next batch
+        channel.position(writeFileHeader(channel));
+        forceDirectory(file);
+        activeSegment++;
+    }
+
+    // a new segment, or one whose header was torn
+    private static long writeFileHeader(FileChannel channel) throws IOException {
+        var header = FrameReader.fileHeader();
+        while (header.hasRemaining())
+            channel.write(header, header.position());
+        return FrameReader.FILE_HEADER;
+    }
+
+    static void forceDirectory(Path file) {
+        // makes a rename durable; directories can not be opened for syncing on every platform
+        try (var directory = FileChannel.open(file.toAbsolutePath().getParent(), StandardOpenOption.READ)) {
+            directory.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    /**
+     * Flushes whatever is still pending and closes the file.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            closed = true;
+            pendingChanged.signal();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        channel.close();
+    }
+}
@@ -0,0 +1,89 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.metrics.Histogram;
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Striped per-account locks. An account id is mapped onto one of a fixed number of stripes,
+ * so memory stays constant no matter how many accounts exist. When two accounts have to be
+ * locked together the stripes are always taken in ascending stripe order, which rules out
+ * deadlocks between transfers going in opposite directions.
+ *
+ * A stripe is first tried without waiting; only when that fails is the time until it is acquired measured, so the
+ * uncontended path does not read the clock.
+ */
+public class AccountLocks {
+
+    public static final int DEFAULT_STRIPES = 1024;
+
+    private final ReentrantLock[] stripes;
+    private final int mask;
+    private final Histogram lockWait = MetricRegistry.DEFAULT.histogram("account_lock_wait_seconds",
+            "Time transfers waited for a contended account lock");
+
+    public AccountLocks() {
+        this(DEFAULT_STRIPES);
+    }
+
+    public AccountLocks(int stripeCount) {
+        int size = Integer.highestOneBit(Math.max(1, stripeCount - 1)) << 1;
+        stripes = new ReentrantLock[size];
+        for (int i = 0; i < size; i++)
+            stripes[i] = new ReentrantLock();
+        mask = size - 1;
+    }
+
+    public void lock(int accountId) {
+        lock(stripes[stripeOf(accountId)]);
+    }
+
+    public void unlock(int accountId) {
+        stripes[stripeOf(accountId)].unlock();
+    }
+
+    public void lockBoth(int firstId, int secondId) {
+        int first = stripeOf(firstId);
+        int second = stripeOf(secondId);
+        if (first == second) {
+            lock(stripes[first]);
+        } else {
+            lock(stripes[Math.min(first, second)]);
+            lock(stripes[Math.max(first, second)]);
+        }
+    }
+
+    public void unlockBoth(int firstId, int secondId) {
+        int first = stripeOf(firstId);
+        int second = stripeOf(secondId);
+        if (first == second) {
+            stripes[first].unlock();
+        } else {
+            stripes[Math.max(first, second)].unlock();
+            stripes[Math.min(first, second)].unlock();
+        }
+    }
+
+    private void lock(ReentrantLock stripe) {
+        if (stripe.tryLock()) return;
+        long start = System.nanoTime();
+        stripe.lock();
+        lockWait.record(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns once every lock that was held when it was called has been released at least once.
+     */
+    public void awaitUnlocked() {
+        for (var stripe : stripes) {
+            stripe.lock();
+            stripe.unlock();
+        }
+    }
+
+    int stripeOf(int accountId) {
+        // account ids are dense, so the low bits already spread neighbours across stripes
+        return accountId & mask;
+    }
+}
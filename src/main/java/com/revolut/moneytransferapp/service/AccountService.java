@@ -1,35 +1,92 @@
 package com.revolut.moneytransferapp.service;
 
 import com.revolut.moneytransferapp.model.Account;
-import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.DecimalLedger;
+import com.revolut.moneytransferapp.repository.MinorUnitLedger;
+import com.revolut.moneytransferapp.repository.Repository;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.repository.wal.LogRecords;
+import com.revolut.moneytransferapp.repository.wal.WriteAheadLog;
 import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
 
 import java.math.BigDecimal;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 public class AccountService {
 
-    private AccountRepository accountRepository;
+    private Repository<Account> accountRepository;
+    private WriteAheadLog writeAheadLog;
+    // not a monitor: a virtual thread waiting for a monitor pins its carrier thread
+    private final ReentrantLock creationLock = new ReentrantLock();
 
-    public AccountService(AccountRepository accountRepository) {
+    public AccountService(Repository<Account> accountRepository) {
+        this(accountRepository, null);
+    }
+
+    public AccountService(Repository<Account> accountRepository, WriteAheadLog writeAheadLog) {
         this.accountRepository = accountRepository;
+        this.writeAheadLog = writeAheadLog;
     }
+
     public List<Account> getAccounts() { return accountRepository.getAll(); }
 
+    // visits the accounts in id order without copying them into a list
+    public void forEachAccount(Consumer<Account> action) { accountRepository.forEach(action); }
+
+    public List<Account> getAccounts(int afterId, int limit) { return accountRepository.getPage(afterId, limit); }
+
     public Account getAccountById(int id) throws AccountNotFoundException {
         var account = accountRepository.getById(id);
         if (account == null) throw new AccountNotFoundException();
         return account;
     }
 
-    public synchronized int createAccount(){
-        var account = new Account(new BigDecimal("0.0"));
-        return accountRepository.save(account);
+    public int createAccount(){
+        int id;
+        CompletableFuture<Void> durable = null;
+        creationLock.lock();
+        try {
+            var account = new Account(new BigDecimal("0.0"));
+            id = accountRepository.save(account);
+            if (writeAheadLog != null)
+                durable = writeAheadLog.append(LogRecords.account(account));
+        } finally {
+            creationLock.unlock();
+        }
+        // waiting for the fsync outside of the lock lets concurrent creations share it
+        if (durable != null) durable.join();
+        return id;
     }
 
     public void updateAccount(Account updateObject)
             throws AccountNotFoundException, OptimisticLockException {
         accountRepository.update(updateObject);
+        if (writeAheadLog != null)
+            writeAheadLog.append(LogRecords.account(getAccountById(updateObject.getId()))).join();
+    }
+
+    /**
+     * @return the primitive balance ledger if accounts are stored as minor units, null otherwise
+     */
+    public MinorUnitLedger getLedger() {
+        return accountRepository instanceof MinorUnitLedger ? (MinorUnitLedger) accountRepository : null;
+    }
+
+    /**
+     * @return the ledger if accounts are stored as {@link BigDecimal} balances, null otherwise
+     */
+    public DecimalLedger getDecimalLedger() {
+        return accountRepository instanceof DecimalLedger ? (DecimalLedger) accountRepository : null;
+    }
+
+    Repository<Account> getAccountRepository() {
+        return accountRepository;
+    }
+
+    WriteAheadLog getWriteAheadLog() {
+        return writeAheadLog;
     }
 }
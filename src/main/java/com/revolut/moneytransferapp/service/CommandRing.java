@@ -0,0 +1,182 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+
+import java.math.BigDecimal;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Pre-allocated ring of transfer commands drained in order by one writer thread.
+ *
+ * A command is claimed with a sequence number and published by writing that number into its slot; the slot
+ * is reused once the writer has moved {@code size} commands further, so a full ring makes publishers wait.
+ * Besides the ring the writer runs tasks handed to it with {@link #execute(Runnable)}. That queue is unbounded,
+ * so writers of different rings can hand work to each other without ever blocking on one another.
+ */
+final class CommandRing {
+
+    private static final int SPINS_BEFORE_PARKING = 100;
+
+    interface Handler {
+        // runs on the writer thread
+        void handle(Command command);
+    }
+
+    static final class Command {
+        volatile long sequence = -1;
+        int benefactorId;
+        int beneficiaryId;
+        BigDecimal amount;
+        CompletableFuture<Transfer> result;
+    }
+
+    interface Step {
+        CompletableFuture<Transfer> run()
+                throws InvalidTransferException, AccountNotFoundException, OptimisticLockException;
+    }
+
+    // runs a step on the writer thread and passes its outcome on to the waiting request
+    static void complete(CompletableFuture<Transfer> result, Step step) {
+        try {
+            step.run().whenComplete((transfer, e) -> {
+                if (e != null) result.completeExceptionally(e);
+                else result.complete(transfer);
+            });
+        } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException | RuntimeException e) {
+            result.completeExceptionally(e);
+        }
+    }
+
+    private final Handler handler;
+    private final Command[] ring;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    // every command below this sequence has been handled, written by the writer only
+    private volatile long applied;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final AtomicLong tasksSubmitted = new AtomicLong();
+    private volatile long tasksRun;
+    // a task that could not complete yet, written by the writer only
+    private Runnable retry;
+    private volatile boolean writerParked;
+    private volatile boolean running = true;
+    private final Thread writer;
+
+    CommandRing(String name, int size, Handler handler) {
+        this.handler = handler;
+        int capacity = Integer.highestOneBit(Math.max(1, size - 1)) << 1;
+        this.ring = new Command[capacity];
+        for (int i = 0; i < capacity; i++)
+            ring[i] = new Command();
+        this.mask = capacity - 1;
+        this.writer = new Thread(this::writeLoop, name);
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    CompletableFuture<Transfer> publish(int benefactorId, int beneficiaryId, BigDecimal amount) {
+        if (!running) throw new IllegalStateException("Transfer writer is shut down");
+        long sequence = claimed.getAndIncrement();
+        while (sequence - applied >= ring.length)
+            Thread.yield();
+        var command = ring[(int) sequence & mask];
+        var result = new CompletableFuture<Transfer>();
+        command.benefactorId = benefactorId;
+        command.beneficiaryId = beneficiaryId;
+        command.amount = amount;
+        command.result = result;
+        // the volatile write publishes the fields above to the writer
+        command.sequence = sequence;
+        wakeUpWriter();
+        return result;
+    }
+
+    void execute(Runnable task) {
+        tasksSubmitted.incrementAndGet();
+        tasks.add(task);
+        wakeUpWriter();
+    }
+
+    /**
+     * Called by a task on the writer thread that could not complete yet: the writer handles the next command and then
+     * runs the task again, before any task queued after it, so tasks still complete in the order they were submitted.
+     */
+    void retryLater(Runnable task) {
+        retry = task;
+    }
+
+    private void wakeUpWriter() {
+        // the writer sets the flag before it checks for work again, one of the two sides always sees the other
+        if (writerParked) LockSupport.unpark(writer);
+    }
+
+    private void writeLoop() {
+        long next = 0;
+        int idleSpins = 0;
+        while (true) {
+            boolean ranTasks = false;
+            Runnable task;
+            while ((task = retry != null ? retry : tasks.poll()) != null) {
+                retry = null;
+                task.run();
+                if (retry != null) break;
+                tasksRun++;
+                ranTasks = true;
+            }
+            var command = ring[(int) next & mask];
+            if (command.sequence == next) {
+                idleSpins = 0;
+                handler.handle(command);
+                command.amount = null;
+                command.result = null;
+                applied = ++next;
+                continue;
+            }
+            if (ranTasks || retry != null) {
+                idleSpins = 0;
+                // a task to retry is attempted again right away, it never waits for a command to arrive
+                if (!ranTasks) Thread.onSpinWait();
+                continue;
+            }
+            if (!running && next >= claimed.get() && tasks.isEmpty()) return;
+            if (++idleSpins < SPINS_BEFORE_PARKING) {
+                Thread.onSpinWait();
+            } else {
+                writerParked = true;
+                if (command.sequence != next && tasks.isEmpty() && running) LockSupport.park(this);
+                writerParked = false;
+            }
+        }
+    }
+
+    // returns once every command published before the call has been handled
+    void awaitCommands() {
+        long target = claimed.get();
+        while (applied < target)
+            LockSupport.parkNanos(10_000);
+    }
+
+    // returns once every task submitted before the call has run
+    void awaitTasks() {
+        long target = tasksSubmitted.get();
+        while (tasksRun < target)
+            LockSupport.parkNanos(10_000);
+    }
+
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Transfers run on the request thread, holding the locks of the two accounts involved.
+ */
+class LockingTransferExecution implements TransferExecution {
+
+    private final AccountLocks accountLocks;
+    private final Commit commit;
+
+    LockingTransferExecution(AccountLocks accountLocks, Commit commit) {
+        this.accountLocks = accountLocks;
+        this.commit = commit;
+    }
+
+    @Override
+    public CompletableFuture<Transfer> execute(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // only the two accounts involved are locked, transfers between unrelated accounts run in parallel
+        accountLocks.lockBoth(benefactorId, beneficiaryId);
+        try {
+            return commit.apply(benefactorId, beneficiaryId, amount);
+        } finally {
+            accountLocks.unlockBoth(benefactorId, beneficiaryId);
+        }
+    }
+
+    @Override
+    public void awaitInFlight() {
+        accountLocks.awaitUnlocked();
+    }
+
+    @Override
+    public void shutdown() {
+    }
+}
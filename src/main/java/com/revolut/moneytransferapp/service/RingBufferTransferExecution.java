@@ -0,0 +1,38 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Single-writer execution: request threads publish transfer commands into a pre-allocated {@link CommandRing}
+ * and one writer thread applies them in sequence order. Transfers never run concurrently, so there is nothing
+ * to lock and no optimistic conflict between them, and under load the writer drains many commands per wake-up.
+ */
+class RingBufferTransferExecution implements TransferExecution {
+
+    static final int DEFAULT_SIZE = 1 << 14;
+
+    private final CommandRing ring;
+
+    RingBufferTransferExecution(int size, Commit commit) {
+        this.ring = new CommandRing("transfer-writer", size, command -> CommandRing.complete(command.result,
+                () -> commit.apply(command.benefactorId, command.beneficiaryId, command.amount)));
+    }
+
+    @Override
+    public CompletableFuture<Transfer> execute(int benefactorId, int beneficiaryId, BigDecimal amount) {
+        return ring.publish(benefactorId, beneficiaryId, amount);
+    }
+
+    @Override
+    public void awaitInFlight() {
+        ring.awaitCommands();
+    }
+
+    @Override
+    public void shutdown() {
+        ring.shutdown();
+    }
+}
@@ -0,0 +1,100 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Partitioned execution: account {@code id} belongs to shard {@code id % shards} and only that shard's writer
+ * thread changes it. Every shard is a {@link CommandRing} of its own, so shards never wait for each other.
+ *
+ * A transfer is published to the benefactor's shard. If the beneficiary lives there too it is applied in one
+ * commit. Otherwise the benefactor's shard debits and records it (a debit entry in the log) and hands the credit
+ * to the beneficiary's shard, which applies and logs it. A debit whose credit did not reach the log before a crash
+ * is found by the recovery and credited then, so money is never lost in between. A credit that keeps conflicting
+ * with an account update can not be failed, the debit stands: the shard handles its next command and tries again.
+ */
+class ShardedTransferExecution implements TransferExecution {
+
+    private final CommandRing[] shards;
+    private final Commit commit;
+    private final Debit debit;
+    private final Credit credit;
+
+    ShardedTransferExecution(int shardCount, int ringSize, Commit commit, Debit debit, Credit credit) {
+        if (shardCount < 1) throw new IllegalArgumentException("At least one shard is needed: " + shardCount);
+        this.commit = commit;
+        this.debit = debit;
+        this.credit = credit;
+        this.shards = new CommandRing[shardCount];
+        for (int shard = 0; shard < shardCount; shard++)
+            shards[shard] = new CommandRing("transfer-shard-" + shard, ringSize, this::handle);
+    }
+
+    @Override
+    public CompletableFuture<Transfer> execute(int benefactorId, int beneficiaryId, BigDecimal amount) {
+        return shards[shardOf(benefactorId)].publish(benefactorId, beneficiaryId, amount);
+    }
+
+    int shardOf(int accountId) {
+        return Math.floorMod(accountId, shards.length);
+    }
+
+    // runs on the benefactor's shard
+    private void handle(CommandRing.Command command) {
+        int benefactorId = command.benefactorId;
+        int beneficiaryId = command.beneficiaryId;
+        var amount = command.amount;
+        var result = command.result;
+        int beneficiaryShard = shardOf(beneficiaryId);
+        if (beneficiaryShard == shardOf(benefactorId)) {
+            CommandRing.complete(result, () -> commit.apply(benefactorId, beneficiaryId, amount));
+            return;
+        }
+
+        Transfer debited;
+        try {
+            debited = debit.apply(benefactorId, beneficiaryId, amount);
+        } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException | RuntimeException e) {
+            result.completeExceptionally(e);
+            return;
+        }
+        var shard = shards[beneficiaryShard];
+        shard.execute(new Runnable() {
+            @Override
+            public void run() {
+                CompletableFuture<Transfer> credited;
+                try {
+                    credited = credit.apply(debited);
+                } catch (OptimisticLockException e) {
+                    shard.retryLater(this);
+                    return;
+                } catch (InvalidTransferException | AccountNotFoundException | RuntimeException e) {
+                    result.completeExceptionally(e);
+                    return;
+                }
+                CommandRing.complete(result, () -> credited);
+            }
+        });
+    }
+
+    @Override
+    public void awaitInFlight() {
+        for (var shard : shards)
+            shard.awaitCommands();
+        // credits are handed over before their debit counts as applied, so they are all queued by now
+        for (var shard : shards)
+            shard.awaitTasks();
+    }
+
+    @Override
+    public void shutdown() {
+        awaitInFlight();
+        for (var shard : shards)
+            shard.shutdown();
+    }
+}
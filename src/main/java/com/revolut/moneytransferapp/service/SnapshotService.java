@@ -0,0 +1,58 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.repository.Repository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.wal.SnapshotFile;
+import com.revolut.moneytransferapp.repository.wal.WriteAheadLog;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Takes snapshots of the accounts and transfers without stopping traffic, so startup only has to replay the
+ * log written after the latest one.
+ */
+public class SnapshotService {
+
+    private Repository<Account> accountRepository;
+    private TransferRepository transferRepository;
+    private TransferService transferService;
+    private WriteAheadLog writeAheadLog;
+    private SnapshotFile snapshotFile;
+    private final ReentrantLock snapshotLock = new ReentrantLock();
+
+    public SnapshotService(AccountService as, TransferService ts, SnapshotFile snapshotFile) {
+        if (as.getWriteAheadLog() == null)
+            throw new IllegalArgumentException("Snapshots need a write-ahead log");
+        this.accountRepository = as.getAccountRepository();
+        this.transferRepository = ts.getTransferRepository();
+        this.transferService = ts;
+        this.writeAheadLog = as.getWriteAheadLog();
+        this.snapshotFile = snapshotFile;
+    }
+
+    public void takeSnapshot() throws IOException {
+        // not a monitor: waiting for the log while holding one would pin a virtual thread to its carrier
+        snapshotLock.lock();
+        try {
+            // every change logged before the new segment is already applied to the repositories,
+            // so it is captured by the copy below and those segments are not needed anymore
+            long logSegment = writeAheadLog.roll().join();
+            // transfers kept in a journal on disk are not copied, the journal is forced below instead
+            snapshotFile.write(logSegment, accountRepository, transferRepository);
+
+            // the copy may have seen a transfer that was still being appended (and only half of one if it then
+            // gets lost); waiting for the transfers in progress and an fsync guarantees it is in the log
+            transferService.awaitInFlight();
+            writeAheadLog.sync().join();
+            if (transferRepository.isPersistent())
+                transferRepository.force();
+
+            snapshotFile.publish();
+            writeAheadLog.deleteSegmentsBefore(logSegment);
+        } finally {
+            snapshotLock.unlock();
+        }
+    }
+}
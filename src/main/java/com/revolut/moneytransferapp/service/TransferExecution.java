@@ -0,0 +1,43 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Decides which thread applies a transfer and what keeps concurrent transfers apart.
+ * The returned future completes once the transfer is committed (and durable, with a write-ahead log).
+ */
+interface TransferExecution {
+
+    // applies one transfer to the account store and logs it, the caller guarantees exclusive access to both accounts
+    interface Commit {
+        CompletableFuture<Transfer> apply(int benefactorId, int beneficiaryId, BigDecimal amount)
+                throws InvalidTransferException, AccountNotFoundException, OptimisticLockException;
+    }
+
+    // first leg of a transfer between accounts owned by different threads: debits and records it, only the
+    // benefactor has to be exclusive
+    interface Debit {
+        Transfer apply(int benefactorId, int beneficiaryId, BigDecimal amount)
+                throws InvalidTransferException, AccountNotFoundException, OptimisticLockException;
+    }
+
+    // second leg, credits the beneficiary of a transfer returned by Debit, only the beneficiary has to be exclusive
+    interface Credit {
+        CompletableFuture<Transfer> apply(Transfer transfer)
+                throws InvalidTransferException, AccountNotFoundException, OptimisticLockException;
+    }
+
+    CompletableFuture<Transfer> execute(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException;
+
+    // returns once every transfer that had started when it was called has been applied and logged
+    void awaitInFlight();
+
+    void shutdown();
+}
@@ -0,0 +1,37 @@
+package com.revolut.moneytransferapp.service;
+
+import com.revolut.moneytransferapp.model.Transfer;
+
+/**
+ * Outcome of one transfer of a batch: the recorded transfer, or the reason it was rejected.
+ */
+public class TransferResult {
+
+    private final Transfer transfer;
+    private final Throwable failure;
+
+    private TransferResult(Transfer transfer, Throwable failure) {
+        this.transfer = transfer;
+        this.failure = failure;
+    }
+
+    static TransferResult succeeded(Transfer transfer) {
+        return new TransferResult(transfer, null);
+    }
+
+    static TransferResult failed(Throwable failure) {
+        return new TransferResult(null, failure);
+    }
+
+    public boolean isSuccessful() {
+        return failure == null;
+    }
+
+    public Transfer getTransfer() {
+        return transfer;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+}
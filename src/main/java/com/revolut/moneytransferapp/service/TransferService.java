@@ -1,61 +1,370 @@
 package com.revolut.moneytransferapp.service;
 
-import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.metrics.MetricRegistry;
 import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.DecimalLedger;
+import com.revolut.moneytransferapp.repository.MinorUnitLedger;
 import com.revolut.moneytransferapp.repository.TransferRepository;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.repository.wal.LogRecords;
+import com.revolut.moneytransferapp.repository.wal.WriteAheadLog;
 import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
 import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
 import com.revolut.moneytransferapp.service.serviceexception.TransferNotFoundException;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 public class TransferService {
 
+    public enum ExecutionMode {
+        // transfers run on the request threads, locking the two accounts involved
+        LOCKS,
+        // request threads hand transfers to a single writer thread through a ring buffer
+        RING_BUFFER,
+        // accounts are partitioned over several writer threads, transfers between partitions are handed over
+        SHARDED
+    }
+
+    private static final LongAdder COMMITTED = outcome("committed");
+    private static final LongAdder CONFLICTED = outcome(OptimisticLockException.class.getSimpleName());
+    private static final LongAdder INVALID = outcome(InvalidTransferException.class.getSimpleName());
+    private static final LongAdder ACCOUNT_NOT_FOUND = outcome(AccountNotFoundException.class.getSimpleName());
+    private static final LongAdder RETRIES = MetricRegistry.DEFAULT.counter("transfer_retries_total",
+            "Transfers attempted again after an optimistic locking conflict");
+
+    // a conflicted transfer committed nothing, so it is read and attempted again up to this many times in total
+    static final int DEFAULT_MAX_ATTEMPTS = 8;
+    // the backoff before the n-th retry is drawn from [0, min(MAX_BACKOFF, BASE_BACKOFF * 2^(n-1))), the jitter
+    // keeps the transfers that conflicted once from colliding again on the next attempt
+    private static final long BASE_BACKOFF_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(5);
+
     private AccountService accountService;
     private TransferRepository transferRepository;
+    private TransferExecution execution;
+    private MinorUnitLedger ledger;
+    private DecimalLedger decimalLedger;
+    private WriteAheadLog writeAheadLog;
+    private int maxAttempts = DEFAULT_MAX_ATTEMPTS;
 
     public TransferService(AccountService as, TransferRepository ts) {
+        this(as, ts, new AccountLocks());
+    }
+
+    public TransferService(AccountService as, TransferRepository ts, AccountLocks locks) {
+        this(as, ts, ExecutionMode.LOCKS, locks, 0);
+    }
+
+    public TransferService(AccountService as, TransferRepository ts, ExecutionMode mode) {
+        this(as, ts, mode, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param shards number of partitions for {@link ExecutionMode#SHARDED}, ignored by the other modes
+     */
+    public TransferService(AccountService as, TransferRepository ts, ExecutionMode mode, int shards) {
+        this(as, ts, mode, mode == ExecutionMode.LOCKS ? new AccountLocks() : null, shards);
+    }
+
+    // creates only the execution of the mode
+    private TransferService(AccountService as, TransferRepository ts, ExecutionMode mode, AccountLocks locks,
+                            int shards) {
         transferRepository = ts;
         accountService = as;
+        ledger = as.getLedger();
+        decimalLedger = as.getDecimalLedger();
+        if (ledger == null && decimalLedger == null)
+            throw new IllegalArgumentException("Accounts have to be stored in a ledger to be transferred between");
+        writeAheadLog = as.getWriteAheadLog();
+        switch (mode) {
+            case RING_BUFFER:
+                execution = new RingBufferTransferExecution(RingBufferTransferExecution.DEFAULT_SIZE, this::apply);
+                break;
+            case SHARDED:
+                execution = new ShardedTransferExecution(shards, RingBufferTransferExecution.DEFAULT_SIZE,
+                        this::apply, this::debit, this::credit);
+                break;
+            default:
+                execution = new LockingTransferExecution(locks, this::apply);
+        }
     }
 
     public List<Transfer> getTransfers() {
         return transferRepository.getAll();
     }
 
+    // visits the transfers in id order without copying them into a list
+    public void forEachTransfer(Consumer<Transfer> action) {
+        transferRepository.forEach(action);
+    }
+
+    // visits the transfers committed in [from, to), milliseconds since the epoch, in id (and time) order
+    public void forEachTransferBetween(long from, long to, Consumer<Transfer> action) {
+        transferRepository.forEachBetween(from, to, action);
+    }
+
+    public List<Transfer> getTransfers(int afterId, int limit) {
+        return transferRepository.getPage(afterId, limit);
+    }
+
+    /**
+     * Transfers the account took part in, as benefactor or beneficiary, in id order.
+     */
+    public List<Transfer> getTransfersOfAccount(int accountId, int afterId, int limit)
+            throws AccountNotFoundException {
+        accountService.getAccountById(accountId);
+        return transferRepository.getPageOfAccount(accountId, afterId, limit);
+    }
+
     public Transfer getTransfer(Integer id) throws TransferNotFoundException {
         Transfer transfer = transferRepository.getById(id);
         if (transfer == null) throw new TransferNotFoundException();
         return transfer;
     }
 
-    public synchronized void createTransfer(int benefactorId, int beneficiaryId, BigDecimal amount)
+    public void createTransfer(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        try {
+            commit(benefactorId, beneficiaryId, amount, 0);
+            COMMITTED.increment();
+        } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException | RuntimeException e) {
+            countFailure(e);
+            throw e;
+        }
+    }
+
+    /**
+     * Applies every transfer of the batch in turn, one failing transfer does not stop the others.
+     * Nothing waits for the log before the whole batch is committed, so it usually shares one fsync;
+     * transfers that conflicted are retried one by one afterwards.
+     * @return one result per transfer, in the same order
+     */
+    public List<TransferResult> createTransfers(List<Transfer> transfers) {
+        var committed = new ArrayList<CompletableFuture<Transfer>>(transfers.size());
+        for (var transfer : transfers) {
+            try {
+                committed.add(submit(transfer.getBenefactorId(), transfer.getBeneficiaryId(), transfer.getAmount()));
+            } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException
+                    | NullPointerException | ArithmeticException e) {
+                committed.add(CompletableFuture.failedFuture(e));
+            }
+        }
+        var results = new ArrayList<TransferResult>(committed.size());
+        for (int i = 0; i < committed.size(); i++) {
+            var result = result(committed.get(i));
+            if (result.getFailure() instanceof OptimisticLockException && maxAttempts > 1) {
+                var transfer = transfers.get(i);
+                try {
+                    result = TransferResult.succeeded(commit(
+                            transfer.getBenefactorId(), transfer.getBeneficiaryId(), transfer.getAmount(), 1));
+                } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException
+                        | NullPointerException | ArithmeticException e) {
+                    result = TransferResult.failed(e);
+                }
+            }
+            if (result.isSuccessful()) COMMITTED.increment();
+            else countFailure(result.getFailure());
+            results.add(result);
+        }
+        return results;
+    }
+
+    /**
+     * Credits the transfers between shards whose debit was logged but whose credit was lost in a crash,
+     * see {@code Recovery.recover}. Has to run before new transfers are taken.
+     */
+    public void completeHandOffs(List<Transfer> debited) throws AccountNotFoundException {
+        for (var transfer : debited) {
+            int attempts = 0;
+            while (true) {
+                if (attempts > 0) {
+                    RETRIES.increment();
+                    backOff(attempts);
+                }
+                try {
+                    credit(transfer).join();
+                    break;
+                } catch (OptimisticLockException e) {
+                    if (++attempts >= maxAttempts)
+                        throw new IllegalStateException("Account changed while recovering", e);
+                }
+            }
+        }
+    }
+
+    public void shutdown() {
+        execution.shutdown();
+    }
+
+    void awaitInFlight() {
+        execution.awaitInFlight();
+    }
+
+    TransferRepository getTransferRepository() {
+        return transferRepository;
+    }
+
+    void setMaxAttempts(int maxAttempts) {
+        if (maxAttempts < 1) throw new IllegalArgumentException("maxAttempts has to be at least 1");
+        this.maxAttempts = maxAttempts;
+    }
+
+    /**
+     * Commits the transfer, attempting it again after a conflict until {@code maxAttempts} attempts were made.
+     * Retries run on the calling thread outside of any account lock, the writer threads never wait for a backoff.
+     * @param attemptsMade attempts that already conflicted
+     */
+    private Transfer commit(int benefactorId, int beneficiaryId, BigDecimal amount, int attemptsMade)
             throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        int attempts = attemptsMade;
+        while (true) {
+            if (attempts > 0) {
+                RETRIES.increment();
+                backOff(attempts);
+            }
+            try {
+                // the fsync is shared with all transfers committed meanwhile (group commit)
+                return await(submit(benefactorId, beneficiaryId, amount));
+            } catch (OptimisticLockException e) {
+                if (++attempts >= maxAttempts) throw e;
+            }
+        }
+    }
+
+    private static void backOff(int retry) {
+        long bound = Math.min(MAX_BACKOFF_NANOS, BASE_BACKOFF_NANOS << Math.min(retry - 1, 30));
+        LockSupport.parkNanos(1 + ThreadLocalRandom.current().nextLong(bound));
+    }
+
+    private static TransferResult result(CompletableFuture<Transfer> committed) {
+        try {
+            return TransferResult.succeeded(committed.join());
+        } catch (CompletionException e) {
+            return TransferResult.failed(e.getCause());
+        }
+    }
+
+    private CompletableFuture<Transfer> submit(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        transferRepository.checkAmount(amount);
+        return execution.execute(benefactorId, beneficiaryId, amount);
+    }
+
+    private CompletableFuture<Transfer> apply(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        var transfer = ledger != null
+                ? transferMinorUnits(benefactorId, beneficiaryId, amount)
+                : transferDecimal(benefactorId, beneficiaryId, amount);
+        // logged before the accounts are released, so the log order matches the commit order
+        var durable = log(transfer);
+        return durable == null ? CompletableFuture.completedFuture(transfer) : durable.thenApply(v -> transfer);
+    }
 
-        var benefactorAccount = accountService.getAccountById(benefactorId);
-        var beneficiaryAccount = accountService.getAccountById(beneficiaryId);
+    private static LongAdder outcome(String outcome) {
+        return MetricRegistry.DEFAULT.counter("transfers_total",
+                "Transfers requested, by outcome: committed or the exception they failed with", "outcome", outcome);
+    }
+
+    private static void countFailure(Throwable e) {
+        if (e instanceof OptimisticLockException) CONFLICTED.increment();
+        else if (e instanceof InvalidTransferException) INVALID.increment();
+        else if (e instanceof AccountNotFoundException) ACCOUNT_NOT_FOUND.increment();
+        // rare enough to afford the lookup
+        else outcome(e.getClass().getSimpleName()).increment();
+    }
 
-        var benefactorBalance = benefactorAccount.getBalance();
-        var beneficiaryBalance = beneficiaryAccount.getBalance();
-        //  check if transfer is possible
-        if(benefactorBalance.subtract(amount).compareTo(BigDecimal.ZERO) < 0)
+    private static Transfer await(CompletableFuture<Transfer> committed)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        try {
+            return committed.join();
+        } catch (CompletionException e) {
+            var cause = e.getCause();
+            if (cause instanceof InvalidTransferException) throw (InvalidTransferException) cause;
+            if (cause instanceof AccountNotFoundException) throw (AccountNotFoundException) cause;
+            if (cause instanceof OptimisticLockException) throw (OptimisticLockException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw e;
+        }
+    }
+
+    private Transfer transferDecimal(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // both legs commit together or not at all, a conflict leaves nothing behind to revert
+        if (!decimalLedger.transfer(benefactorId, beneficiaryId, amount))
             throw new InvalidTransferException("Insufficient balance in benefactors account");
 
-        // transfer
-        var updatedBenefactor = new Account(benefactorId, benefactorBalance.subtract(amount));
-        accountService.updateAccount(updatedBenefactor);
+        var transfer = new Transfer(benefactorId, beneficiaryId, amount);
+        transferRepository.save(transfer);
+        return transfer;
+    }
 
-        var updatedBeneficiary = new Account(beneficiaryId, beneficiaryBalance.add(amount));
-        accountService.updateAccount(updatedBeneficiary);
+    private Transfer transferMinorUnits(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // the amount is converted once, debit and credit are primitive arithmetic inside the ledger
+        var minorAmount = ledger.getMinorUnits().toMinor(amount);
+        if (!ledger.transfer(benefactorId, beneficiaryId, minorAmount))
+            throw new InvalidTransferException("Insufficient balance in benefactors account");
 
-        // if update for the beneficiary is not successful, we need to revert back the benefactor also
+        var transfer = new Transfer(benefactorId, beneficiaryId, amount);
+        transferRepository.save(transfer);
+        return transfer;
+    }
 
-        // benefactorAccount.setBalance(benefactorBalance.subtract(amount));
-        // beneficiaryAccount.setBalance(beneficiaryBalance.add(amount));
+    private Transfer debit(int benefactorId, int beneficiaryId, BigDecimal amount)
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // the credit runs later on another thread and must not fail on an unknown account
+        accountService.getAccountById(beneficiaryId);
+        if (ledger != null) {
+            if (!ledger.debit(benefactorId, ledger.getMinorUnits().toMinor(amount)))
+                throw new InvalidTransferException("Insufficient balance in benefactors account");
+        } else if (!decimalLedger.debit(benefactorId, amount)) {
+            throw new InvalidTransferException("Insufficient balance in benefactors account");
+        }
 
         var transfer = new Transfer(benefactorId, beneficiaryId, amount);
         transferRepository.save(transfer);
+        // nobody waits for this entry: the credit entry is appended after it, so its fsync covers both
+        if (writeAheadLog != null)
+            writeAheadLog.append(LogRecords.transferDebit(transfer, accountService.getAccountById(benefactorId)));
+        return transfer;
+    }
+
+    /**
+     * Only an account update can race with the owning shard. A conflicting credit is not backed off here, that would
+     * stall the shard's writer: the shard handles its next command and attempts the credit again, the debited money
+     * must arrive.
+     */
+    private CompletableFuture<Transfer> credit(Transfer transfer)
+            throws AccountNotFoundException, OptimisticLockException {
+        int beneficiaryId = transfer.getBeneficiaryId();
+        try {
+            if (ledger != null)
+                ledger.credit(beneficiaryId, ledger.getMinorUnits().toMinor(transfer.getAmount()));
+            else
+                decimalLedger.credit(beneficiaryId, transfer.getAmount());
+        } catch (OptimisticLockException e) {
+            RETRIES.increment();
+            throw e;
+        }
+        if (writeAheadLog == null) return CompletableFuture.completedFuture(transfer);
+        var beneficiary = accountService.getAccountById(beneficiaryId);
+        return writeAheadLog.append(LogRecords.transferCredit(transfer, beneficiary)).thenApply(v -> transfer);
+    }
+
+    private CompletableFuture<Void> log(Transfer transfer) throws AccountNotFoundException {
+        if (writeAheadLog == null) return null;
+        // the accounts are read back with their committed versions, replay keeps the highest version
+        var benefactor = accountService.getAccountById(transfer.getBenefactorId());
+        var beneficiary = accountService.getAccountById(transfer.getBeneficiaryId());
+        return writeAheadLog.append(LogRecords.transfer(transfer, benefactor, beneficiary));
     }
 }
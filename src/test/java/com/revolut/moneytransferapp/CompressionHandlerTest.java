@@ -0,0 +1,171 @@
+package com.revolut.moneytransferapp;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CompressionHandlerTest {
+
+    private static final String LARGE_BODY = "{\"balance\":1.01,\"id\":1},".repeat(1_000);
+
+    private Server server;
+
+    @AfterEach
+    void teardown() throws Exception {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void handle__givenLargeBodyWrittenInPiecesAndGzipAccepted__streamsItGzipped() throws Exception {
+        // given
+        int port = start(100);
+
+        // when
+        var conn = get(port, "deflate, gzip");
+
+        // then
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+        assertEquals("Accept-Encoding", conn.getHeaderField("Vary"));
+        assertEquals("\"1--gzip\"", conn.getHeaderField("ETag"));
+        var compressed = conn.getInputStream().readAllBytes();
+        assertTrue(compressed.length < LARGE_BODY.length() / 10, "compressed to " + compressed.length + " bytes");
+        assertEquals(LARGE_BODY, read(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+
+    @Test
+    void handle__givenTagOfTheGzippedBodyInIfNoneMatch__passesTheRouteItsOwnTag() throws Exception {
+        // given
+        int port = start(100);
+
+        // when
+        var conn = get(port, "gzip");
+        conn.setRequestProperty("If-None-Match", "\"1--gzip\"");
+
+        // then
+        assertEquals(304, conn.getResponseCode());
+    }
+
+    @Test
+    void handle__givenBodyBelowMinBytesOrNoAcceptEncoding__sendsItAsItIs() throws Exception {
+        // given
+        int port = start(LARGE_BODY.length() + 1);
+
+        // when
+        var small = get(port, "gzip");
+        var notAccepted = get(port, "deflate");
+
+        // then
+        assertNull(small.getHeaderField("Content-Encoding"));
+        assertEquals(String.valueOf(LARGE_BODY.length()), small.getHeaderField("Content-Length"));
+        assertEquals("\"1\"", small.getHeaderField("ETag"));
+        assertEquals(LARGE_BODY, read(small.getInputStream()));
+        assertNull(notAccepted.getHeaderField("Content-Encoding"));
+        assertEquals(LARGE_BODY, read(notAccepted.getInputStream()));
+    }
+
+    @Test
+    void handle__givenLongListFlushedWhileItIsWritten__startsSendingItBeforeTheRouteFinishes() throws Exception {
+        // given - the route flushes every 100 bytes and only finishes once the client got the start of the response
+        var clientGotTheStart = new CountDownLatch(1);
+        var routeFinished = new AtomicBoolean();
+        server = CompressionHandler.serverFactory(100, 6).create(new QueuedThreadPool(8, 2));
+        var connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+                var bytes = LARGE_BODY.getBytes(StandardCharsets.UTF_8);
+                var out = response.getOutputStream();
+                for (int offset = 0; offset < bytes.length; offset += 100) {
+                    out.write(bytes, offset, Math.min(100, bytes.length - offset));
+                    out.flush();
+                    if (offset == bytes.length / 2) {
+                        try {
+                            clientGotTheStart.await(10, TimeUnit.SECONDS);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                    }
+                }
+                routeFinished.set(true);
+            }
+        });
+        server.start();
+
+        // when
+        var conn = get(connector.getLocalPort(), "gzip");
+        var in = new GZIPInputStream(conn.getInputStream());
+        var start = new byte[100];
+        int read = in.readNBytes(start, 0, start.length);
+        boolean finishedBeforeTheStartArrived = routeFinished.get();
+        clientGotTheStart.countDown();
+
+        // then
+        assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+        assertFalse(finishedBeforeTheStartArrived);
+        assertEquals(LARGE_BODY, new String(start, 0, read, StandardCharsets.UTF_8) + read(in));
+    }
+
+    // serves LARGE_BODY in writes of 100 bytes, the way a streamed list arrives
+    private int start(int minBytes) throws Exception {
+        server = CompressionHandler.serverFactory(minBytes, 6).create(new QueuedThreadPool(8, 2));
+        var connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+                baseRequest.setHandled(true);
+                response.setHeader("ETag", "\"1\"");
+                if ("\"1\"".equals(request.getHeader("If-None-Match"))) {
+                    response.setStatus(304);
+                    return;
+                }
+                response.setStatus(200);
+                var bytes = LARGE_BODY.getBytes(StandardCharsets.UTF_8);
+                var out = response.getOutputStream();
+                for (int offset = 0; offset < bytes.length; offset += 100)
+                    out.write(bytes, offset, Math.min(100, bytes.length - offset));
+            }
+        });
+        server.start();
+        return connector.getLocalPort();
+    }
+
+    private static HttpURLConnection get(int port, String acceptEncoding) throws IOException {
+        var conn = (HttpURLConnection) new URL("http://localhost:" + port).openConnection();
+        if (acceptEncoding != null) conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        return conn;
+    }
+
+    private static String read(InputStream in) throws IOException {
+        try (in) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+}
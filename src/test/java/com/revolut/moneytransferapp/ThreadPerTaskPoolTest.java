@@ -0,0 +1,143 @@
+package com.revolut.moneytransferapp;
+
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.jupiter.api.Test;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class ThreadPerTaskPoolTest {
+
+    @Test
+    void execute__givenMoreBlockedTasksThanCores__runsAllOfThemAtOnce() throws Exception {
+        // given
+        var pool = new ThreadPerTaskPool(Thread::new);
+        pool.start();
+        var started = new CountDownLatch(100);
+        var release = new CountDownLatch(1);
+
+        // when
+        for (int i = 0; i < 100; i++)
+            pool.execute(() -> {
+                started.countDown();
+                try { release.await(); } catch (InterruptedException e) { /* stopping */ }
+            });
+
+        // then
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        assertEquals(100, pool.getThreads());
+        release.countDown();
+        pool.stop();
+        assertEquals(0, pool.getThreads());
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }));
+    }
+
+    @Test
+    void stop__givenTasksFinishingWhileItStops__returnsOnceNoThreadIsLeft() throws Exception {
+        // given
+        var pool = new ThreadPerTaskPool(Thread::new);
+        pool.start();
+        for (int i = 0; i < 100; i++) {
+            long nanos = TimeUnit.MICROSECONDS.toNanos(i * 10);
+            pool.execute(() -> LockSupport.parkNanos(nanos));
+        }
+
+        // when
+        pool.stop();
+
+        // then
+        assertEquals(0, pool.getThreads());
+        assertThrows(RejectedExecutionException.class, () -> pool.execute(() -> { }));
+    }
+
+    @Test
+    void stop__givenTaskThatDoesNotFinish__interruptsItAfterTheStopTimeout() throws Exception {
+        // given
+        var pool = new ThreadPerTaskPool(Thread::new);
+        pool.setStopTimeout(50);
+        pool.start();
+        var interrupted = new CountDownLatch(1);
+        pool.execute(() -> {
+            try { Thread.sleep(60_000); } catch (InterruptedException e) { interrupted.countDown(); }
+        });
+
+        // when
+        pool.stop();
+
+        // then
+        assertTrue(interrupted.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void jetty__givenSlowRequests__servesThemConcurrently() throws Exception {
+        // given
+        var server = new Server(new ThreadPerTaskPool(Thread::new));
+        var connector = new ServerConnector(server);
+        connector.setPort(0);
+        server.addConnector(connector);
+        server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(String target, Request baseRequest, HttpServletRequest request,
+                               HttpServletResponse response) {
+                try { Thread.sleep(500); } catch (InterruptedException e) { /* stopping */ }
+                baseRequest.setHandled(true);
+                response.setStatus(200);
+            }
+        });
+        server.start();
+        var clients = Executors.newFixedThreadPool(50);
+        var responses = new ArrayList<Future<Integer>>();
+
+        // when
+        long start = System.nanoTime();
+        for (int i = 0; i < 50; i++)
+            responses.add(clients.submit(() -> {
+                var conn = (HttpURLConnection) new URL("http://localhost:" + connector.getLocalPort()).openConnection();
+                return conn.getResponseCode();
+            }));
+        for (var response : responses)
+            assertEquals(200, response.get());
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        clients.shutdown();
+        server.stop();
+
+        // then - 50 requests of 500ms one after the other would take 25s
+        assertTrue(elapsedMillis < 10_000, "took " + elapsedMillis + "ms");
+    }
+
+    @Test
+    void virtual__givenJava21__runsTasksOnVirtualThreads() throws Exception {
+        // given
+        assumeTrue(ThreadPerTaskPool.virtualThreadsSupported());
+        var pool = ThreadPerTaskPool.virtual();
+        pool.start();
+        var name = new String[1];
+        var done = new CountDownLatch(1);
+
+        // when
+        pool.execute(() -> {
+            name[0] = Thread.currentThread().toString();
+            done.countDown();
+        });
+
+        // then
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertTrue(name[0].startsWith("VirtualThread"), name[0]);
+        pool.stop();
+    }
+}
@@ -0,0 +1,100 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.model.Account;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AccountJsonCacheTest {
+
+    @Test
+    void render__givenSameVersionTwice__rendersOnceAndReusesTheBytes() {
+        // given
+        var cache = new AccountJsonCache(10);
+        var account = new Account(1, new BigDecimal("1.01"), 3);
+
+        // when
+        var first = cache.render(account);
+        var second = cache.render(new Account(1, new BigDecimal("1.01"), 3));
+
+        // then
+        assertSame(first, second);
+        assertEquals(JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, account)),
+                new String(first, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void render__givenNewerAndThenOlderVersion__rendersBothAndKeepsTheNewer() {
+        // given
+        var cache = new AccountJsonCache(10);
+        var older = new Account(1, new BigDecimal("1.01"), 3);
+        var newer = new Account(1, new BigDecimal("2.02"), 4);
+
+        // when
+        var newerBody = cache.render(newer);
+        var olderBody = cache.render(older);
+
+        // then
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":{\"balance\":1.01,\"id\":1}}",
+                new String(olderBody, StandardCharsets.UTF_8));
+        assertSame(newerBody, cache.render(newer));
+    }
+
+    @Test
+    void render__givenMoreAccountsThanMaxAccounts__dropsTheFirstRendered() {
+        // given
+        var cache = new AccountJsonCache(10);
+        var first = cache.render(new Account(0, BigDecimal.ONE, 1));
+
+        // when
+        for (int id = 1; id <= 100; id++)
+            cache.render(new Account(id, BigDecimal.ONE, 1));
+
+        // then
+        assertEquals(10, cache.size());
+        assertNotSame(first, cache.render(new Account(0, BigDecimal.ONE, 1)));
+    }
+
+    @Test
+    void render__givenThreadsRenderingManyAccounts__staysWithinMaxAccountsPlusOnePerThread()
+            throws InterruptedException {
+        // given
+        var cache = new AccountJsonCache(10);
+        var threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            int from = t * 10_000;
+            threads[t] = new Thread(() -> {
+                for (int id = from; id < from + 10_000; id++)
+                    cache.render(new Account(id, BigDecimal.ONE, 1));
+            });
+        }
+
+        // when
+        for (var thread : threads) thread.start();
+        for (var thread : threads) thread.join();
+
+        // then
+        assertTrue(cache.size() <= 10 + threads.length, "size " + cache.size());
+        cache.render(new Account(-1, BigDecimal.ONE, 1));
+        assertEquals(10, cache.size());
+    }
+
+    @Test
+    void etag__givenAnotherCache__differsForTheSameVersion() {
+        // given
+        var account = new Account(1, new BigDecimal("1.01"), 3);
+        var cache = new AccountJsonCache(10);
+
+        // when
+        var etag = cache.etag(account, WireFormat.JSON);
+
+        // then
+        assertEquals(etag, cache.etag(new Account(1, new BigDecimal("1.01"), 3), WireFormat.JSON));
+        assertNotEquals(etag, cache.etag(account, WireFormat.BINARY));
+        assertNotEquals(etag, new AccountJsonCache(10).etag(account, WireFormat.JSON));
+        assertTrue(etag.startsWith("\"") && etag.endsWith("-3\""));
+    }
+}
@@ -0,0 +1,93 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BinaryCodecsTest {
+
+    @Test
+    void read__givenTransferFrames__readsAmountsAsScaledLongsAndSkipsUnknownTrailingBytes() {
+        // given - the second frame is 3 bytes longer, as written by a newer client
+        var body = ByteBuffer.allocate(2 * (4 + BinaryCodecs.TRANSFER_SIZE) + 3)
+                .putInt(BinaryCodecs.TRANSFER_SIZE).putInt(-1).putInt(1).putInt(2).put((byte) 2).putLong(1050)
+                .putLong(Long.MIN_VALUE)
+                .putInt(BinaryCodecs.TRANSFER_SIZE + 3).putInt(-1).putInt(2).putInt(0).put((byte) 0).putLong(7)
+                .putLong(Long.MIN_VALUE).put(new byte[3])
+                .array();
+
+        // when
+        var transfers = BinaryCodecs.read(body, Transfer[].class);
+
+        // then
+        assertEquals(2, transfers.length);
+        assertEquals(1, transfers[0].getBenefactorId());
+        assertEquals(2, transfers[0].getBeneficiaryId());
+        assertEquals(new BigDecimal("10.50"), transfers[0].getAmount());
+        assertNull(transfers[0].getId());
+        assertEquals(new BigDecimal("7"), transfers[1].getAmount());
+    }
+
+    @Test
+    void read__givenTruncatedOrTrailingFrames__throws() {
+        // given
+        var truncated = ByteBuffer.allocate(4 + 8).putInt(BinaryCodecs.ACCOUNT_SIZE).putInt(1).putInt(2).array();
+        var account = ByteBuffer.allocate(4 + BinaryCodecs.ACCOUNT_SIZE)
+                .putInt(BinaryCodecs.ACCOUNT_SIZE).putInt(1).put((byte) 2).putLong(101).array();
+        var twoAccounts = ByteBuffer.allocate(2 * account.length).put(account).put(account).array();
+
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodecs.read(truncated, Account.class));
+        assertThrows(IllegalArgumentException.class, () -> BinaryCodecs.read(twoAccounts, Account.class));
+        assertEquals(new BigDecimal("1.01"), BinaryCodecs.read(account, Account.class).getBalance());
+        assertNull(BinaryCodecs.read(new byte[0], Transfer.class));
+    }
+
+    @Test
+    void write__givenBatchResults__writesHeaderThenAResultFramePerTransfer() {
+        // given
+        var transfer = new Transfer(1, 2, new BigDecimal("0.5"));
+        transfer.setId(3);
+        transfer.setTimestamp(1_577_836_800_000L);
+        var results = List.of(new JsonResponse(ResponseStatus.SUCCESS, transfer),
+                new JsonResponse(ResponseStatus.ERROR, "Account not found"));
+
+        // when
+        var in = ByteBuffer.wrap(BinaryCodecs.write(new JsonResponse(ResponseStatus.SUCCESS, results)));
+
+        // then
+        assertEquals(BinaryCodecs.HEADER_SIZE, in.getInt());
+        assertEquals(0, in.get());
+        assertEquals(-1, in.getInt());
+        assertEquals(1 + BinaryCodecs.TRANSFER_SIZE, in.getInt());
+        assertEquals(0, in.get());
+        assertEquals(3, in.getInt());
+        assertEquals(1, in.getInt());
+        assertEquals(2, in.getInt());
+        assertEquals(1, in.get());
+        assertEquals(5, in.getLong());
+        assertEquals(1_577_836_800_000L, in.getLong());
+        var message = new byte[in.getInt() - 1];
+        assertEquals(1, in.get());
+        in.get(message);
+        assertEquals("Account not found", new String(message, StandardCharsets.UTF_8));
+        assertFalse(in.hasRemaining());
+    }
+
+    @Test
+    void write__givenAmountThatDoesNotFitALong__throwsArithmeticException() {
+        // given
+        var account = new Account(1, new BigDecimal("1e30").setScale(2));
+
+        // when / then
+        assertThrows(ArithmeticException.class,
+                () -> BinaryCodecs.write(new JsonResponse(ResponseStatus.SUCCESS, account)));
+    }
+}
@@ -0,0 +1,178 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IdempotencyCacheTest {
+
+    private static final byte[] BODY = "{\"benefactor\":1,\"beneficiary\":2,\"amount\":1}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void handle__givenSameKeyTwice__runsOnceAndReplaysTheReply() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+        var runs = new AtomicInteger();
+
+        // when
+        var first = cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok " + runs.incrementAndGet()));
+        var second = cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok " + runs.incrementAndGet()));
+
+        // then
+        assertEquals(1, runs.get());
+        assertFalse(first.replayed);
+        assertTrue(second.replayed);
+        assertEquals(200, second.status);
+        assertEquals("ok 1", second.body);
+    }
+
+    @Test
+    void handle__givenSameKeyWithDifferentBody__throws() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+        cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // when / then
+        assertThrows(IdempotencyCache.KeyReusedException.class,
+                () -> cache.handle("key", new byte[]{'{', '}'}, () -> new IdempotencyCache.Reply(200, "ok")));
+    }
+
+    @Test
+    void handle__givenIllegalArgumentFromTheAction__passesItOnAndRunsTheRetry() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+
+        // when
+        assertThrows(IllegalArgumentException.class, () -> cache.handle("key", BODY, () -> {
+            throw new IllegalArgumentException("Truncated frame");
+        }));
+        var retry = cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // then
+        assertFalse(retry.replayed);
+        assertEquals("ok", retry.body);
+    }
+
+    @Test
+    void handle__givenConflictReply__doesNotKeepItSoTheRetryRuns() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+        cache.handle("key", BODY, () -> new IdempotencyCache.Reply(409, "conflict"));
+
+        // when
+        var retry = cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // then
+        assertFalse(retry.replayed);
+        assertEquals("ok", retry.body);
+    }
+
+    @Test
+    void handle__givenMoreKeysThanMaxKeys__dropsTheOldestOnes() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+
+        // when
+        for (int i = 0; i < 1_000; i++)
+            cache.handle("key-" + i, BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // then
+        assertEquals(10, cache.size());
+        assertTrue(cache.handle("key-999", BODY, () -> new IdempotencyCache.Reply(200, "again")).replayed);
+        assertFalse(cache.handle("key-0", BODY, () -> new IdempotencyCache.Reply(200, "again")).replayed);
+    }
+
+    @Test
+    void handle__givenManyRepliesThatAreNotKept__doesNotCountThemAgainstMaxKeys() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+        cache.handle("kept", BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // when
+        for (int i = 0; i < 1_000; i++)
+            cache.handle("conflict-" + i, BODY, () -> new IdempotencyCache.Reply(409, "conflict"));
+
+        // then
+        assertEquals(1, cache.size());
+        assertTrue(cache.handle("kept", BODY, () -> new IdempotencyCache.Reply(200, "again")).replayed);
+    }
+
+    @Test
+    void handle__givenMoreKeysThanMaxKeysWhileTheOldestIsRunning__keepsItSoTheRetryWaits() throws Exception {
+        // given
+        var cache = new IdempotencyCache(1, 1, TimeUnit.HOURS);
+        var runs = new AtomicInteger();
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var executor = Executors.newSingleThreadExecutor();
+        var original = executor.submit(() -> cache.handle("key", BODY, () -> {
+            runs.incrementAndGet();
+            running.countDown();
+            release.await();
+            return new IdempotencyCache.Reply(200, "ok");
+        }));
+        running.await();
+
+        // when
+        cache.handle("other", BODY, () -> new IdempotencyCache.Reply(200, "other"));
+        var retry = executor.submit(() -> cache.handle("key", BODY, () -> {
+            runs.incrementAndGet();
+            return new IdempotencyCache.Reply(200, "again");
+        }));
+        release.countDown();
+        executor.shutdown();
+
+        // then
+        assertEquals("ok", original.get().body);
+        assertTrue(retry.get().replayed);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void handle__givenExpiredKey__runsAgain() throws Exception {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.MILLISECONDS);
+        cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "ok"));
+
+        // when
+        Thread.sleep(5);
+        var retry = cache.handle("key", BODY, () -> new IdempotencyCache.Reply(200, "again"));
+
+        // then
+        assertFalse(retry.replayed);
+        assertEquals("again", retry.body);
+    }
+
+    @Test
+    void handle__whenCalledConcurrentlyWithSameKey__runsOnce() throws InterruptedException, ExecutionException {
+        // given
+        var cache = new IdempotencyCache(10, 1, TimeUnit.HOURS);
+        var runs = new AtomicInteger();
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<IdempotencyCache.Reply>>();
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++)
+            responses.add(executor.submit(() -> cache.handle("key", BODY, () -> {
+                runs.incrementAndGet();
+                Thread.sleep(50);
+                return new IdempotencyCache.Reply(200, "ok");
+            })));
+        executor.shutdown();
+
+        // then
+        for (var response : responses)
+            assertEquals("ok", response.get().body);
+        assertEquals(1, runs.get());
+    }
+}
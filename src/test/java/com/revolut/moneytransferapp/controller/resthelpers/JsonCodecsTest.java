@@ -0,0 +1,110 @@
+package com.revolut.moneytransferapp.controller.resthelpers;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class JsonCodecsTest {
+
+    @Test
+    void toJson__givenResponsesWithEntities__thenWritesTheSameBytesAsReflection(){
+        // given
+        var account = new Account(1, new BigDecimal("1.01"), 3);
+        var transfer = new Transfer(1, 2, new BigDecimal("0.99"));
+        transfer.setId(0);
+        var reflective = new Gson();
+        var exposedOnly = new GsonBuilder().excludeFieldsWithoutExposeAnnotation().create();
+
+        // when
+        var accountJson = JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, account));
+        var transferJson = JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, transfer));
+        var batchJson = JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS, List.of(
+                new JsonResponse(ResponseStatus.SUCCESS, transfer),
+                new JsonResponse(ResponseStatus.ERROR, "Account not found"))));
+
+        // then
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":" + exposedOnly.toJson(account) + "}", accountJson);
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":" + reflective.toJson(transfer) + "}", transferJson);
+        assertEquals("{\"status\":\"SUCCESS\",\"data\":["
+                + "{\"status\":\"SUCCESS\",\"data\":{\"benefactor\":1,\"beneficiary\":2,\"amount\":0.99,\"id\":0}},"
+                + "{\"status\":\"ERROR\",\"message\":\"Account not found\"}]}", batchJson);
+    }
+
+    @Test
+    void fromJson__givenWrittenResponse__thenReadsStatusMessageAndData(){
+        // given
+        var json = JsonCodecs.GSON.toJson(new JsonResponse(ResponseStatus.SUCCESS,
+                new Account(1, new BigDecimal("1.01"), 3)));
+
+        // when
+        var response = JsonCodecs.GSON.fromJson(json, JsonResponse.class);
+        var error = JsonCodecs.GSON.fromJson("{\"status\":\"ERROR\",\"message\":\"Account not found\"}",
+                JsonResponse.class);
+
+        // then
+        assertEquals(ResponseStatus.SUCCESS, response.getStatus());
+        assertEquals(1.01, ((Map<?, ?>) response.getData()).get("balance"));
+        assertEquals(ResponseStatus.ERROR, error.getStatus());
+        assertEquals("Account not found", error.getMessage());
+        assertNull(error.getData());
+    }
+
+    @Test
+    void read__givenUrlEncodedBody__thenDecodesWhileParsing(){
+        // given
+        var body = URLEncoder.encode("[{\"benefactor\":1, \"beneficiary\":2, \"amount\":0.5, \"note\":\"café & co 💶\"},"
+                + " {\"benefactor\":2}]", StandardCharsets.UTF_8);
+
+        // when
+        var transfers = JsonCodecs.read(body.getBytes(StandardCharsets.UTF_8), Transfer[].class);
+
+        // then
+        assertEquals(2, transfers.length);
+        assertEquals(2, transfers[0].getBeneficiaryId());
+        assertEquals(new BigDecimal("0.5"), transfers[0].getAmount());
+        assertNull(transfers[1].getAmount());
+        assertNull(JsonCodecs.read(new byte[0], Account.class));
+    }
+
+    @Test
+    void urlDecodingReader__givenMultiByteCharactersAndEscapes__thenMatchesUrlDecoder(){
+        // given
+        var text = "{\"note\":\"café & co 💶 100%\"}";
+        var body = URLEncoder.encode(text, StandardCharsets.UTF_8).getBytes(StandardCharsets.UTF_8);
+        var reader = new UrlDecodingReader(body);
+        var decoded = new StringBuilder();
+        var buffer = new char[3];
+
+        // when
+        int read;
+        while ((read = reader.read(buffer, 0, buffer.length)) > 0)
+            decoded.append(buffer, 0, read);
+
+        // then
+        assertEquals(text, decoded.toString());
+    }
+
+    @Test
+    void read__givenMalformedBody__thenFailsLikeUrlDecoderAndReflection(){
+        // when / then
+        assertThrows(IllegalArgumentException.class, () -> URLDecoder.decode("%4", StandardCharsets.UTF_8));
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonCodecs.read("%4".getBytes(StandardCharsets.UTF_8), Account.class));
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonCodecs.read("%zz".getBytes(StandardCharsets.UTF_8), Account.class));
+        assertThrows(JsonSyntaxException.class,
+                () -> JsonCodecs.read("{\"balance\":\"abc\"}".getBytes(StandardCharsets.UTF_8), Account.class));
+    }
+}
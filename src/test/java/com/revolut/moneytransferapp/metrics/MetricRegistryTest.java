@@ -0,0 +1,89 @@
+package com.revolut.moneytransferapp.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MetricRegistryTest {
+
+    @Test
+    void render__givenCounterAndGauge__writesPrometheusTextWithEscapedLabels(){
+        // given
+        var registry = new MetricRegistry();
+        registry.counter("requests_total", "Requests", "route", "GET /a\"b").add(3);
+        registry.gauge("queue", "Queued", () -> 7);
+
+        // when
+        var text = registry.render();
+
+        // then
+        assertEquals("# HELP queue Queued\n"
+                + "# TYPE queue gauge\n"
+                + "queue 7\n"
+                + "# HELP requests_total Requests\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{route=\"GET /a\\\"b\"} 3\n", text);
+    }
+
+    @Test
+    void counter__givenSameNameAndLabels__returnsSameRecorder(){
+        // given
+        var registry = new MetricRegistry();
+
+        // when / then
+        assertSame(registry.counter("c", "C", "a", "1"), registry.counter("c", "C", "a", "1"));
+        assertNotSame(registry.counter("c", "C", "a", "1"), registry.counter("c", "C", "a", "2"));
+        assertThrows(IllegalArgumentException.class, () -> registry.histogram("c", "C"));
+    }
+
+    @Test
+    void histogram__givenValues__writesCumulativeBucketsSumAndCount(){
+        // given
+        var registry = new MetricRegistry();
+        var histogram = registry.histogram("latency_seconds", "Latency", "route", "x");
+
+        // when
+        histogram.record(40_000);          // 40µs
+        histogram.record(2_000_000);       // 2ms
+        histogram.record(60_000_000_000L); // 60s, above the highest bound
+
+        // then
+        var text = registry.render();
+        assertTrue(text.contains("latency_seconds_bucket{route=\"x\",le=\"0.00005\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"x\",le=\"0.001\"} 1\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"x\",le=\"0.0025\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"x\",le=\"10\"} 2\n"));
+        assertTrue(text.contains("latency_seconds_bucket{route=\"x\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("latency_seconds_sum{route=\"x\"} 60.00204\n"));
+        assertTrue(text.contains("latency_seconds_count{route=\"x\"} 3\n"));
+    }
+
+    @Test
+    void histogram__whenRecordedConcurrently__countsEveryValue() throws InterruptedException, ExecutionException {
+        // given
+        var histogram = new MetricRegistry().histogram("h", "H");
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++)
+            responses.add(executor.submit(() -> {
+                for (int j = 0; j < 10_000; j++) histogram.record(j * 1_000L);
+            }));
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+
+        // then
+        long total = 0;
+        for (var count : histogram.counts())
+            total += count;
+        assertEquals(degreeOfParallelism * 10_000L, total);
+    }
+}
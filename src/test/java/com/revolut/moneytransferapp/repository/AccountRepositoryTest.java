@@ -8,9 +8,14 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class AccountRepositoryTest {
 
@@ -108,6 +113,27 @@ public class AccountRepositoryTest {
         assertEquals(newBalance, updatedBalance);
     }
 
+    @Test
+    void updateAccount__whenCalled__thenPublishesNewVersionAndLeavesReadSnapshotIntact()
+            throws OptimisticLockException, AccountNotFoundException {
+        // given
+        int accId1 = 1; var initialBalance = new BigDecimal("1.01");
+        var accountsIn = new ArrayList<Account>(){{ add(new Account(accId1, initialBalance)); }};
+        accountRepository.setAccounts(accountsIn);
+        var snapshotBefore = accountRepository.getById(accId1);
+
+        // when
+        accountRepository.update(new Account(accId1, new BigDecimal("2.01")));
+        accountRepository.update(new Account(accId1, new BigDecimal("3.01")));
+
+        // then
+        var snapshotAfter = accountRepository.getById(accId1);
+        assertEquals(initialBalance, snapshotBefore.getBalance());
+        assertEquals(0, snapshotBefore.getVersion());
+        assertEquals(new BigDecimal("3.01"), snapshotAfter.getBalance());
+        assertEquals(2, snapshotAfter.getVersion());
+    }
+
     @Test
     void updateAccount__whenCalledWithInvalidAccountRef__thenDoesNotModifyAccount(){
         // given
@@ -124,4 +150,137 @@ public class AccountRepositoryTest {
         assertEquals(accountIn.getBalance(), balance1);
         assertEquals(0, accountIn.getVersion());
     }
+
+    @Test
+    void saveAccount__whenCalledConcurrently__thenAssignsUniqueSequentialIds()
+            throws InterruptedException, ExecutionException {
+        // given
+        accountRepository.setAccounts(new ArrayList<>());
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var accountsPerThread = 5_000;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++)
+            responses.add(executor.submit(() -> {
+                for (int j = 0; j < accountsPerThread; j++)
+                    accountRepository.save(new Account(BigDecimal.ONE));
+            }));
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+
+        // then
+        var expectedCount = degreeOfParallelism * accountsPerThread;
+        var ids = new HashSet<Integer>();
+        for (var account : accountRepository.getAll())
+            ids.add(account.getId());
+        assertEquals(expectedCount, accountRepository.getAccountCount());
+        assertEquals(expectedCount, ids.size());
+        for (int id = 0; id < expectedCount; id++)
+            assertTrue(ids.contains(id));
+    }
+
+    @Test
+    void getAccountById__whenIdsAreFarApart__thenReturnsCorrespondingAccounts(){
+        // given
+        int accId1 = 7; var balance1 = new BigDecimal("1.01");
+        int accId2 = 1_000_000; var balance2 = new BigDecimal("2.01");
+        var accountsIn =  new ArrayList<Account>(){{
+            add(new Account(accId1, balance1));
+            add(new Account(accId2, balance2));
+        }};
+        accountRepository.setAccounts(accountsIn);
+
+        // when / then
+        assertEquals(accountsIn.get(0), accountRepository.getById(accId1));
+        assertEquals(accountsIn.get(1), accountRepository.getById(accId2));
+        assertEquals(null, accountRepository.getById(accId2 - 1));
+        assertEquals(null, accountRepository.getById(-1));
+        assertEquals(accountsIn, accountRepository.getAll());
+    }
+
+    @Test
+    void getPage__whenCalledWithCursor__thenReturnsNextAccountsInIdOrderSkippingGaps(){
+        // given
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            add(new Account(0, new BigDecimal("0.01")));
+            add(new Account(2, new BigDecimal("2.01")));
+            add(new Account(3, new BigDecimal("3.01")));
+            add(new Account(5, new BigDecimal("5.01")));
+        }});
+
+        // when
+        var firstPage = accountRepository.getPage(-1, 2);
+        var secondPage = accountRepository.getPage(firstPage.get(1).getId(), 2);
+        var lastPage = accountRepository.getPage(secondPage.get(1).getId(), 2);
+
+        // then
+        assertEquals(2, firstPage.size());
+        assertEquals(2, firstPage.get(1).getId());
+        assertEquals(3, secondPage.get(0).getId());
+        assertEquals(5, secondPage.get(1).getId());
+        assertTrue(lastPage.isEmpty());
+        assertTrue(accountRepository.getPage(Integer.MAX_VALUE, 2).isEmpty());
+    }
+
+    @Test
+    void transfer__givenSameAccountOnBothSides__keepsTheBalance()
+            throws OptimisticLockException, AccountNotFoundException {
+        // given
+        var balance = new BigDecimal("1.01");
+        accountRepository.setAccounts(new ArrayList<>(){{ add(new Account(1, balance)); }});
+
+        // when
+        var transferred = accountRepository.transfer(1, 1, new BigDecimal("1.00"));
+
+        // then
+        assertTrue(transferred);
+        assertEquals(balance, accountRepository.getById(1).getBalance());
+        assertEquals(1, accountRepository.getById(1).getVersion());
+    }
+
+    @Test
+    void transfer__whenCalledConcurrentlyWithoutLocks__appliesBothLegsOrNone()
+            throws InterruptedException, ExecutionException {
+        // given
+        var initialBalance = new BigDecimal("1000");
+        accountRepository.setAccounts(new ArrayList<>(){{
+            for (int id = 0; id < 3; id++) add(new Account(id, initialBalance));
+        }});
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<Integer>>();
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++) {
+            var from = i % 3; var to = (i + 1) % 3;
+            responses.add(executor.submit(() -> {
+                int committed = 0;
+                for (int j = 0; j < 1_000; j++) {
+                    try {
+                        if (accountRepository.transfer(from, to, BigDecimal.ONE)) committed++;
+                    } catch (OptimisticLockException | AccountNotFoundException e) {
+                        // nothing was written, the transfer is just not counted
+                    }
+                }
+                return committed;
+            }));
+        }
+        executor.shutdown();
+        int committed = 0;
+        for (var response : responses)
+            committed += response.get();
+
+        // then - every committed transfer bumped the versions of both of its accounts
+        var total = BigDecimal.ZERO;
+        long versions = 0;
+        for (var account : accountRepository.getAll()) {
+            total = total.add(account.getBalance());
+            versions += account.getVersion();
+        }
+        assertEquals(initialBalance.multiply(new BigDecimal("3")), total);
+        assertEquals(2L * committed, versions);
+    }
 }
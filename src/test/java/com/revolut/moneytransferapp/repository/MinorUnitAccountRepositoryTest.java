@@ -0,0 +1,180 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class MinorUnitAccountRepositoryTest {
+
+    MinorUnitAccountRepository accountRepository;
+
+    @BeforeEach
+    public void initRepo(){
+        accountRepository = new MinorUnitAccountRepository(MinorUnits.of("EUR"));
+        accountRepository.setAccounts(new ArrayList<>(){{
+            add(new Account(1, new BigDecimal("1.01")));
+            add(new Account(2, new BigDecimal("2.01")));
+        }});
+    }
+
+    @Test
+    void getAccountById__whenCalledWithExistingID__thenReturnsBalanceAtCurrencyScale(){
+        // when
+        var account = accountRepository.getById(1);
+
+        // then
+        assertEquals(new BigDecimal("1.01"), account.getBalance());
+        assertEquals(0, account.getVersion());
+    }
+
+    @Test
+    void getAccountById__whenCalledWithIdInGapOrOutOfRange__thenReturnsNull(){
+        // when / then
+        assertNull(accountRepository.getById(0));
+        assertNull(accountRepository.getById(3));
+        assertNull(accountRepository.getById(-1));
+        assertEquals(2, accountRepository.getAll().size());
+    }
+
+    @Test
+    void saveAccount__whenCalled__thenAppendsAfterHighestId(){
+        // when
+        int createdAccId = accountRepository.save(new Account(new BigDecimal("0.0")));
+
+        // then
+        assertEquals(3, createdAccId);
+        assertEquals(new BigDecimal("0.00"), accountRepository.getById(createdAccId).getBalance());
+    }
+
+    @Test
+    void updateAccount__whenCalledWithValidAccountRef__thenModifiesBalanceAndBumpsVersion()
+            throws OptimisticLockException, AccountNotFoundException {
+        // when
+        accountRepository.update(new Account(1, new BigDecimal("5.5")));
+
+        // then
+        var account = accountRepository.getById(1);
+        assertEquals(new BigDecimal("5.50"), account.getBalance());
+        assertEquals(1, account.getVersion());
+    }
+
+    @Test
+    void restoreAccount__whenVersionIsAboveHalfTheIntRange__thenKeepsVersionAndAccountStaysPresent()
+            throws OptimisticLockException, AccountNotFoundException {
+        // when
+        accountRepository.restore(new Account(1, new BigDecimal("7.00"), Integer.MAX_VALUE - 1));
+        accountRepository.update(new Account(1, new BigDecimal("8.00")));
+
+        // then
+        var account = accountRepository.getById(1);
+        assertEquals(new BigDecimal("8.00"), account.getBalance());
+        assertEquals(Integer.MAX_VALUE, account.getVersion());
+    }
+
+    @Test
+    void updateAccount__whenBalanceHasMoreDigitsThanCurrency__thenThrowsAndKeepsBalance(){
+        // when / then
+        assertThrows(ArithmeticException.class,
+                () -> accountRepository.update(new Account(1, new BigDecimal("5.555"))));
+        assertEquals(new BigDecimal("1.01"), accountRepository.getById(1).getBalance());
+    }
+
+    @Test
+    void updateAccount__whenCalledWithInvalidAccountRef__thenThrows(){
+        // when / then
+        assertThrows(AccountNotFoundException.class,
+                () -> accountRepository.update(new Account(0, BigDecimal.ONE)));
+        assertThrows(AccountNotFoundException.class,
+                () -> accountRepository.update(new Account(7, BigDecimal.ONE)));
+    }
+
+    @Test
+    void transfer__givenSufficientFunds__movesMinorUnitsBetweenAccounts()
+            throws OptimisticLockException, AccountNotFoundException {
+        // when
+        var transferred = accountRepository.transfer(1, 2, 101);
+
+        // then
+        assertTrue(transferred);
+        assertEquals(new BigDecimal("0.00"), accountRepository.getById(1).getBalance());
+        assertEquals(new BigDecimal("3.02"), accountRepository.getById(2).getBalance());
+        assertEquals(1, accountRepository.getById(1).getVersion());
+        assertEquals(1, accountRepository.getById(2).getVersion());
+    }
+
+    @Test
+    void transfer__givenInsufficientFunds__changesNothing()
+            throws OptimisticLockException, AccountNotFoundException {
+        // when
+        var transferred = accountRepository.transfer(1, 2, 102);
+
+        // then
+        assertFalse(transferred);
+        assertEquals(new BigDecimal("1.01"), accountRepository.getById(1).getBalance());
+        assertEquals(new BigDecimal("2.01"), accountRepository.getById(2).getBalance());
+        assertEquals(0, accountRepository.getById(1).getVersion());
+    }
+
+    @Test
+    void transfer__givenNonExistingBeneficiary__throwsAndReleasesBenefactor()
+            throws OptimisticLockException, AccountNotFoundException {
+        // when / then
+        assertThrows(AccountNotFoundException.class, () -> accountRepository.transfer(1, 5, 1));
+        assertTrue(accountRepository.transfer(1, 2, 1));
+    }
+
+    @Test
+    void transfer__givenCreditOverflow__throwsAndChangesNothing(){
+        // given
+        accountRepository.setAccounts(new ArrayList<>(){{
+            add(new Account(0, new BigDecimal("1.00")));
+            add(new Account(1, new BigDecimal(Long.MAX_VALUE).movePointLeft(2)));
+        }});
+
+        // when / then
+        assertThrows(ArithmeticException.class, () -> accountRepository.transfer(0, 1, 1));
+        assertEquals(new BigDecimal("1.00"), accountRepository.getById(0).getBalance());
+        assertEquals(0, accountRepository.getById(0).getVersion());
+    }
+
+    @Test
+    void transfer__whenCalledConcurrently__keepsTotalBalance()
+            throws InterruptedException, ExecutionException {
+        // given
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+        var conflictCounter = new AtomicInteger(0);
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++) {
+            var from = i % 2 + 1; var to = 2 - i % 2;
+            responses.add(executor.submit(() -> {
+                for (int j = 0; j < 1_000; j++) {
+                    try { accountRepository.transfer(from, to, 1); }
+                    catch (OptimisticLockException e) { conflictCounter.incrementAndGet(); }
+                    catch (AccountNotFoundException e) { /* skip */ }
+                }
+            }));
+        }
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+
+        // then
+        var total = accountRepository.getById(1).getBalance().add(accountRepository.getById(2).getBalance());
+        assertEquals(new BigDecimal("3.02"), total);
+    }
+}
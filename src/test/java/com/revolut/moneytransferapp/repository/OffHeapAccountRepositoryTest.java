@@ -0,0 +1,86 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.MinorUnits;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OffHeapAccountRepositoryTest {
+
+    @Test
+    void saveAndTransfer__whenRecordsSpanSeveralSegments__thenAddressesAccountsById()
+            throws OptimisticLockException, AccountNotFoundException {
+        // given
+        var accountRepository = new OffHeapAccountRepository(MinorUnits.of("EUR"));
+        int lastId = (1 << 20) + 5;
+        accountRepository.setAccounts(new ArrayList<>(){{
+            add(new Account(0, new BigDecimal("10.00")));
+            add(new Account(lastId, new BigDecimal("0.50")));
+        }});
+
+        // when
+        var transferred = accountRepository.transfer(0, lastId, 250);
+        int createdAccId = accountRepository.save(new Account(new BigDecimal("7.77")));
+
+        // then
+        assertTrue(transferred);
+        assertEquals(new BigDecimal("7.50"), accountRepository.getById(0).getBalance());
+        assertEquals(new BigDecimal("3.00"), accountRepository.getById(lastId).getBalance());
+        assertEquals(lastId + 1, createdAccId);
+        assertEquals(new BigDecimal("7.77"), accountRepository.getById(createdAccId).getBalance());
+        assertEquals(3, accountRepository.getAll().size());
+    }
+
+    @Test
+    void update__whenBackedByFile__thenWritesFixedWidthRecordsToTheMappedFile(@TempDir Path dir)
+            throws IOException, OptimisticLockException, AccountNotFoundException {
+        // given
+        var file = dir.resolve("accounts.dat");
+        var accountRepository = new OffHeapAccountRepository(MinorUnits.of("EUR"), file);
+
+        // when
+        accountRepository.update(new Account(1, new BigDecimal("12.34")));
+
+        // then
+        assertEquals(new BigDecimal("12.34"), accountRepository.getById(1).getBalance());
+        assertEquals(1, accountRepository.getById(1).getVersion());
+        assertTrue(Files.size(file) >= 3 * OffHeapAccountRecords.RECORD_SIZE);
+    }
+
+    @Test
+    void constructor__whenFileIsLeftFromAnEarlierRun__thenStartsFromTheSeedAndCloseDeletesTheFile(@TempDir Path dir)
+            throws IOException, OptimisticLockException, AccountNotFoundException {
+        // given
+        var file = dir.resolve("accounts.dat");
+        var earlier = new OffHeapAccountRepository(MinorUnits.of("EUR"), file);
+        earlier.update(new Account(1, new BigDecimal("12.34")));
+        Files.copy(file, dir.resolve("left.dat"));
+        earlier.close();
+        Files.move(dir.resolve("left.dat"), file);
+
+        // when
+        var accountRepository = new OffHeapAccountRepository(MinorUnits.of("EUR"), file);
+        accountRepository.setAccounts(new ArrayList<>(){{
+            add(new Account(0, new BigDecimal("5.00")));
+            add(new Account(1, new BigDecimal("6.00")));
+        }});
+
+        // then
+        assertEquals(new BigDecimal("6.00"), accountRepository.getById(1).getBalance());
+        assertEquals(0, accountRepository.getById(1).getVersion());
+        accountRepository.close();
+        assertFalse(Files.exists(file));
+    }
+}
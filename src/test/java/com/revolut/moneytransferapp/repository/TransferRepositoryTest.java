@@ -0,0 +1,219 @@
+package com.revolut.moneytransferapp.repository;
+
+import com.revolut.moneytransferapp.model.Transfer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TransferRepositoryTest {
+
+    @Test
+    void saveTransfer__whenBackedByJournal__thenReadsItBackFromTheMappedRecord(@TempDir Path dir) throws IOException {
+        // given
+        var transferRepository = new TransferRepository(dir);
+
+        // when
+        int first = transferRepository.save(new Transfer(1, 2, new BigDecimal("0.99")));
+        int second = transferRepository.save(new Transfer(2, 1, new BigDecimal("12.5")));
+
+        // then
+        assertEquals(0, first);
+        assertEquals(1, second);
+        var transfer = transferRepository.getById(second);
+        assertEquals(2, transfer.getBenefactorId());
+        assertEquals(1, transfer.getBeneficiaryId());
+        assertEquals(new BigDecimal("12.5"), transfer.getAmount());
+        assertEquals(second, transfer.getId());
+        assertNull(transferRepository.getById(2));
+        assertTrue(Files.exists(dir.resolve("transfers.0")));
+    }
+
+    @Test
+    void restoreTransfer__whenIdsArriveOutOfOrderAcrossSegments__thenFillsGapsAndKeepsFirstCopy(@TempDir Path dir)
+            throws IOException {
+        // given
+        var transferRepository = new TransferRepository(dir);
+        int farId = (1 << 20) + 3;
+
+        // when
+        transferRepository.restore(transfer(farId, new BigDecimal("3.00")));
+        transferRepository.restore(transfer(0, new BigDecimal("1.00")));
+        transferRepository.restore(transfer(0, new BigDecimal("9.99")));
+
+        // then
+        assertEquals(new BigDecimal("1.00"), transferRepository.getById(0).getAmount());
+        assertEquals(new BigDecimal("3.00"), transferRepository.getById(farId).getAmount());
+        assertNull(transferRepository.getById(1));
+        assertEquals(2, transferRepository.getAll().size());
+        assertEquals(farId + 1, transferRepository.save(new Transfer(1, 2, BigDecimal.ONE)));
+    }
+
+    @Test
+    void saveTransfer__whenJournalIsReopened__thenKeepsRecordedTransfersAndContinuesAfterThem(@TempDir Path dir)
+            throws IOException {
+        // given
+        var transferRepository = new TransferRepository(dir);
+        transferRepository.save(new Transfer(1, 2, new BigDecimal("0.01")));
+        transferRepository.save(new Transfer(2, 1, new BigDecimal("0.02")));
+        transferRepository.force();
+
+        // when
+        var reopened = new TransferRepository(dir);
+        int createdId = reopened.save(new Transfer(0, 1, new BigDecimal("0.03")));
+
+        // then
+        assertEquals(2, createdId);
+        assertEquals(new BigDecimal("0.02"), reopened.getById(1).getAmount());
+        assertEquals(3, reopened.getAll().size());
+    }
+
+    @Test
+    void constructor__whenJournalSegmentHasTheEarlierRecordSize__thenRefusesIt(@TempDir Path dir) throws IOException {
+        // given - 1M records of 24 bytes
+        try (var raf = new RandomAccessFile(dir.resolve("transfers.0").toFile(), "rw")) {
+            raf.setLength(24L << 20);
+        }
+
+        // when / then
+        assertThrows(IOException.class, () -> new TransferRepository(dir));
+    }
+
+    @Test
+    void getPage__whenTransfersAreSavedAfterThePageWasRead__thenNextPageContinuesAfterTheCursor(){
+        // given
+        var transferRepository = new TransferRepository();
+        for (int i = 0; i < 5; i++)
+            transferRepository.save(new Transfer(1, 2, BigDecimal.ONE));
+
+        // when
+        var firstPage = transferRepository.getPage(-1, 3);
+        transferRepository.save(new Transfer(2, 1, BigDecimal.TEN));
+        var secondPage = transferRepository.getPage(firstPage.get(2).getId(), 3);
+
+        // then
+        assertEquals(3, firstPage.size());
+        assertEquals(2, firstPage.get(2).getId());
+        assertEquals(3, secondPage.size());
+        assertEquals(3, secondPage.get(0).getId());
+        assertEquals(BigDecimal.TEN, secondPage.get(2).getAmount());
+    }
+
+    @Test
+    void checkAmount__whenUnscaledAmountDoesNotFitARecord__thenThrows(@TempDir Path dir) throws IOException {
+        // given
+        var transferRepository = new TransferRepository(dir);
+
+        // when / then
+        assertThrows(ArithmeticException.class,
+                () -> transferRepository.checkAmount(new BigDecimal("123456789012345678901.5")));
+        transferRepository.checkAmount(new BigDecimal("1234567890.12"));
+        new TransferRepository().checkAmount(new BigDecimal("123456789012345678901.5"));
+    }
+
+    @Test
+    void getPageOfAccount__givenTransfersOfSeveralAccounts__thenReturnsOnlyThoseOfTheAccountPageByPage() {
+        // given
+        var transferRepository = new TransferRepository();
+        for (int i = 0; i < 100; i++)
+            transferRepository.save(new Transfer(i % 10, (i + 1) % 10, BigDecimal.ONE));
+
+        // when
+        var firstPage = transferRepository.getPageOfAccount(3, -1, 15);
+        var secondPage = transferRepository.getPageOfAccount(3, firstPage.get(14).getId(), 15);
+
+        // then - account 3 sends in transfers 3, 13, ... and receives in 2, 12, ...
+        assertEquals(15, firstPage.size());
+        assertEquals(2, firstPage.get(0).getId());
+        assertEquals(3, firstPage.get(1).getId());
+        assertEquals(72, firstPage.get(14).getId());
+        assertEquals(5, secondPage.size());
+        assertEquals(93, secondPage.get(4).getId());
+        assertTrue(transferRepository.getPageOfAccount(10, -1, 15).isEmpty());
+        assertTrue(transferRepository.getPageOfAccount(-1, -1, 15).isEmpty());
+    }
+
+    @Test
+    void getPageOfAccount__givenTransfersSavedWhilePaging__thenTheCursorNeverPassesOneOfThem()
+            throws InterruptedException {
+        // given
+        var transferRepository = new TransferRepository();
+        int total = 20_000;
+        var saver = new Thread(() -> {
+            for (int i = 0; i < total; i++)
+                transferRepository.save(new Transfer(1, 2, BigDecimal.ONE));
+        });
+
+        // when
+        saver.start();
+        var read = new ArrayList<Integer>();
+        int afterId = -1;
+        while (read.size() < total) {
+            for (var transfer : transferRepository.getPageOfAccount(1, afterId, 100)) {
+                read.add(transfer.getId());
+                afterId = transfer.getId();
+            }
+        }
+        saver.join();
+
+        // then
+        for (int i = 0; i < total; i++)
+            assertEquals(i, read.get(i));
+    }
+
+    @Test
+    void getPageOfAccount__givenTransfersRestoredOutOfOrder__thenReturnsThemInIdOrder(@TempDir Path dir)
+            throws IOException {
+        // given
+        var transferRepository = new TransferRepository(dir);
+        for (int id = 9; id >= 0; id--)
+            transferRepository.restore(transfer(id, BigDecimal.ONE));
+
+        // when
+        int saved = transferRepository.save(new Transfer(2, 1, BigDecimal.ONE));
+        var page = transferRepository.getPageOfAccount(1, 7, 10);
+
+        // then
+        assertEquals(3, page.size());
+        assertEquals(8, page.get(0).getId());
+        assertEquals(9, page.get(1).getId());
+        assertEquals(saved, page.get(2).getId());
+    }
+
+    @Test
+    void forEachBetween__givenTimeRange__thenVisitsTransfersCommittedInItInIdOrder(@TempDir Path dir)
+            throws IOException {
+        // given - committed at 1000 + id, 50 not restored (yet)
+        var transferRepository = new TransferRepository(dir);
+        for (int id = 99; id >= 0; id--)
+            if (id != 50) transferRepository.restore(transfer(id, BigDecimal.ONE));
+        var visited = new ArrayList<Integer>();
+
+        // when
+        transferRepository.forEachBetween(1_048, 1_053, transfer -> visited.add(transfer.getId()));
+
+        // then
+        assertEquals(List.of(48, 49, 51, 52), visited);
+        var saved = transferRepository.save(new Transfer(1, 2, BigDecimal.ONE));
+        assertTrue(transferRepository.getById(saved).getTimestamp() >= System.currentTimeMillis() - 60_000);
+        visited.clear();
+        transferRepository.forEachBetween(Long.MIN_VALUE, 1_001, transfer -> visited.add(transfer.getId()));
+        assertEquals(List.of(0), visited);
+        assertEquals(1_099L, new TransferRepository(dir).getById(99).getTimestamp());
+    }
+
+    private static Transfer transfer(int id, BigDecimal amount) {
+        var transfer = new Transfer(1, 2, amount);
+        transfer.setId(id);
+        transfer.setTimestamp(1_000L + id);
+        return transfer;
+    }
+}
@@ -0,0 +1,274 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.AccountService;
+import com.revolut.moneytransferapp.service.SnapshotService;
+import com.revolut.moneytransferapp.service.TransferService;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SnapshotFileTest {
+
+    @Test
+    void roll__whenLogIsReplayedFromNewSegment__thenSkipsEntriesBeforeTheRoll(@TempDir Path dir) throws IOException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        log.append(LogRecords.account(new Account(1, new BigDecimal("1.00"), 1))).join();
+
+        // when
+        long newSegment = log.roll().join();
+        log.append(LogRecords.account(new Account(1, new BigDecimal("2.00"), 2))).join();
+        log.close();
+
+        // then
+        assertEquals(2, newSegment);
+        assertTrue(Files.exists(dir.resolve("wal.log.1")));
+        var reopened = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        assertEquals(2, reopened.getActiveSegment());
+        assertEquals(List.of("Account{id=1, balance=2.00, version=2}"), replay(reopened, newSegment));
+        assertEquals(2, replay(reopened, 0).size());
+        reopened.close();
+    }
+
+    @Test
+    void takeSnapshot__whenServiceIsRecovered__thenLoadsSnapshotAndReplaysOnlyTheTail(@TempDir Path dir)
+            throws IOException, InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // given
+        var file = dir.resolve("wal.log");
+        var snapshotFile = new SnapshotFile(dir.resolve("wal.log.snapshot"));
+        var log = new WriteAheadLog(file, 8, 1, TimeUnit.MILLISECONDS);
+        var accountService = new AccountService(new AccountRepository(), log);
+        var transferService = new TransferService(accountService, new TransferRepository());
+        var snapshotService = new SnapshotService(accountService, transferService, snapshotFile);
+        var createdAccountId = accountService.createAccount();
+        accountService.updateAccount(new Account(createdAccountId, new BigDecimal("10.00")));
+        transferService.createTransfer(createdAccountId, 1, new BigDecimal("2.50"));
+
+        // when
+        snapshotService.takeSnapshot();
+        transferService.createTransfer(2, createdAccountId, new BigDecimal("1.01"));
+        log.close();
+
+        var recoveredAccounts = new AccountRepository();
+        var recoveredTransfers = new TransferRepository();
+        var reopened = new WriteAheadLog(file, 8, 1, TimeUnit.MILLISECONDS);
+        Recovery.recover(snapshotFile, reopened, new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { recoveredAccounts.restore(account); }
+            @Override
+            public void onTransfer(Transfer transfer) { recoveredTransfers.restore(transfer); }
+        });
+        reopened.close();
+
+        // then
+        assertFalse(Files.exists(dir.resolve("wal.log.1")));
+        assertEquals(new BigDecimal("8.51"), recoveredAccounts.getById(createdAccountId).getBalance());
+        assertEquals(new BigDecimal("3.51"), recoveredAccounts.getById(1).getBalance());
+        assertEquals(new BigDecimal("1.00"), recoveredAccounts.getById(2).getBalance());
+        assertEquals(2, recoveredTransfers.getAll().size());
+        assertEquals(createdAccountId + 1, recoveredAccounts.save(new Account(BigDecimal.ZERO)));
+    }
+
+    @Test
+    void recover__whenJournalHoldsATransferWhoseLogEntryWasLost__thenDropsItAndKeepsTheOthers(@TempDir Path dir)
+            throws IOException, InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // given - transfer 0 is covered by the snapshot, 1 is in the log after it
+        var file = dir.resolve("wal.log");
+        var snapshotFile = new SnapshotFile(dir.resolve("wal.log.snapshot"));
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        var accountService = new AccountService(new AccountRepository(), log);
+        var journal = new TransferRepository(dir.resolve("transfers"));
+        var transferService = new TransferService(accountService, journal);
+        transferService.createTransfer(1, 2, new BigDecimal("0.50"));
+        new SnapshotService(accountService, transferService, snapshotFile).takeSnapshot();
+        transferService.createTransfer(2, 1, new BigDecimal("0.25"));
+        // the process dies after transfer 2 reached the mapped journal, before its log entry was flushed
+        journal.save(new Transfer(1, 2, new BigDecimal("0.99")));
+        log.close();
+
+        // when
+        var recoveredAccounts = new AccountRepository();
+        var recoveredJournal = new TransferRepository(dir.resolve("transfers"));
+        var reopened = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        Recovery.recover(snapshotFile, reopened, recoveredJournal, new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { recoveredAccounts.restore(account); }
+            @Override
+            public void onTransfer(Transfer transfer) { recoveredJournal.restore(transfer); }
+        });
+        reopened.close();
+
+        // then
+        assertEquals(2, recoveredJournal.getAll().size());
+        assertNotNull(recoveredJournal.getById(0));
+        assertNull(recoveredJournal.getById(2));
+        assertEquals(new BigDecimal("0.76"), recoveredAccounts.getById(1).getBalance());
+        assertEquals(2, new TransferRepository(dir.resolve("transfers")).size());
+        assertEquals(2, recoveredJournal.save(new Transfer(1, 2, BigDecimal.ONE)));
+    }
+
+    @Test
+    void recover__whenRestartedAfterSnapshotDeletedEverySegment__thenLaterRollsKeepEntriesReplayable(@TempDir Path dir)
+            throws IOException, AccountNotFoundException, OptimisticLockException {
+        // given - a snapshot that deleted every archived segment, then a restart
+        var file = dir.resolve("wal.log");
+        var snapshotFile = new SnapshotFile(dir.resolve("wal.log.snapshot"));
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        var accountService = new AccountService(new AccountRepository(), log);
+        accountService.updateAccount(new Account(1, new BigDecimal("5.00")));
+        new SnapshotService(accountService, new TransferService(accountService, new TransferRepository()),
+                snapshotFile).takeSnapshot();
+        log.close();
+        var restartedAccounts = new AccountRepository();
+        var restarted = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        recover(snapshotFile, restarted, restartedAccounts);
+
+        // when - an acknowledged write moves to an archived segment
+        new AccountService(restartedAccounts, restarted).updateAccount(new Account(1, new BigDecimal("9.00")));
+        long segment = restarted.roll().join();
+        restarted.close();
+
+        // then
+        assertEquals(3, segment);
+        var recoveredAccounts = new AccountRepository();
+        var reopened = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        recover(snapshotFile, reopened, recoveredAccounts);
+        reopened.close();
+        assertEquals(new BigDecimal("9.00"), recoveredAccounts.getById(1).getBalance());
+    }
+
+    @Test
+    void recover__whenDebitWasLoggedWithoutItsCredit__thenReturnsTheTransferToBeCredited(@TempDir Path dir)
+            throws IOException, AccountNotFoundException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        var credited = new Transfer(1, 2, new BigDecimal("0.50"));
+        credited.setId(0);
+        credited.setTimestamp(1_000L);
+        var debited = new Transfer(1, 0, new BigDecimal("0.25"));
+        debited.setId(1);
+        debited.setTimestamp(1_001L);
+        log.append(LogRecords.transferDebit(credited, new Account(1, new BigDecimal("0.51"), 1))).join();
+        log.append(LogRecords.transferCredit(credited, new Account(2, new BigDecimal("2.51"), 1))).join();
+        log.append(LogRecords.transferDebit(debited, new Account(1, new BigDecimal("0.26"), 2))).join();
+        log.close();
+
+        // when
+        var recoveredAccounts = new AccountRepository();
+        var recoveredTransfers = new TransferRepository();
+        var reopened = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        var unfinished = Recovery.recover(new SnapshotFile(dir.resolve("wal.log.snapshot")), reopened,
+                new LogRecords.Handler() {
+                    @Override
+                    public void onAccount(Account account) { recoveredAccounts.restore(account); }
+                    @Override
+                    public void onTransfer(Transfer transfer) { recoveredTransfers.restore(transfer); }
+                });
+        var accountService = new AccountService(recoveredAccounts, reopened);
+        new TransferService(accountService, recoveredTransfers).completeHandOffs(unfinished);
+        reopened.close();
+
+        // then
+        assertEquals(1, unfinished.size());
+        assertEquals(1, unfinished.get(0).getId());
+        assertEquals(2, recoveredTransfers.getAll().size());
+        assertEquals(new BigDecimal("0.26"), recoveredAccounts.getById(1).getBalance());
+        assertEquals(new BigDecimal("2.51"), recoveredAccounts.getById(2).getBalance());
+        assertEquals(new BigDecimal("0.26"), recoveredAccounts.getById(0).getBalance());
+        assertTrue(Recovery.recover(new SnapshotFile(dir.resolve("wal.log.snapshot")),
+                new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS), new LogRecords.Handler() {
+                    @Override
+                    public void onAccount(Account account) { }
+                    @Override
+                    public void onTransfer(Transfer transfer) { }
+                }).isEmpty());
+    }
+
+    @Test
+    void load__whenSnapshotIsDamaged__thenThrows(@TempDir Path dir) throws IOException {
+        // given
+        var snapshotFile = new SnapshotFile(dir.resolve("snapshot"));
+        snapshotFile.write(3, new AccountRepository(), new TransferRepository());
+        snapshotFile.publish();
+        try (var raf = new RandomAccessFile(dir.resolve("snapshot").toFile(), "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write(raf.read() ^ 0xFF);
+        }
+        var executor = Executors.newSingleThreadExecutor();
+
+        // when / then
+        assertThrows(IOException.class, () -> snapshotFile.load(new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { }
+            @Override
+            public void onTransfer(Transfer transfer) { }
+        }, executor, 1));
+        executor.shutdown();
+    }
+
+    @Test
+    void load__whenSnapshotIsOfAnotherFormatVersion__thenThrows(@TempDir Path dir) throws IOException {
+        // given
+        var snapshotFile = new SnapshotFile(dir.resolve("snapshot"));
+        snapshotFile.write(3, new AccountRepository(), new TransferRepository());
+        snapshotFile.publish();
+        try (var raf = new RandomAccessFile(dir.resolve("snapshot").toFile(), "rw")) {
+            raf.seek(FrameReader.FILE_HEADER - 1);
+            raf.write(FrameReader.VERSION + 1);
+        }
+        var executor = Executors.newSingleThreadExecutor();
+
+        // when / then
+        var e = assertThrows(IOException.class, () -> snapshotFile.load(new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { }
+            @Override
+            public void onTransfer(Transfer transfer) { }
+        }, executor, 1));
+        assertTrue(e.getMessage().contains("format version"), e.getMessage());
+        executor.shutdown();
+    }
+
+    private static void recover(SnapshotFile snapshotFile, WriteAheadLog log, AccountRepository accounts)
+            throws IOException {
+        Recovery.recover(snapshotFile, log, new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { accounts.restore(account); }
+            @Override
+            public void onTransfer(Transfer transfer) { }
+        });
+    }
+
+    private static List<String> replay(WriteAheadLog log, long fromSegment) throws IOException {
+        var replayed = new ArrayList<String>();
+        var executor = Executors.newSingleThreadExecutor();
+        log.replay(fromSegment, new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { replayed.add(account.toString()); }
+            @Override
+            public void onTransfer(Transfer transfer) { replayed.add(transfer.toString()); }
+        }, executor, 1);
+        executor.shutdown();
+        return replayed;
+    }
+}
@@ -0,0 +1,215 @@
+package com.revolut.moneytransferapp.repository.wal;
+
+import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
+import com.revolut.moneytransferapp.repository.AccountRepository;
+import com.revolut.moneytransferapp.repository.TransferRepository;
+import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
+import com.revolut.moneytransferapp.service.AccountService;
+import com.revolut.moneytransferapp.service.TransferService;
+import com.revolut.moneytransferapp.service.serviceexception.AccountNotFoundException;
+import com.revolut.moneytransferapp.service.serviceexception.InvalidTransferException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WriteAheadLogTest {
+
+    @Test
+    void append__whenLogIsReopened__thenReplaysEveryEntryInOrder(@TempDir Path dir) throws IOException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 16, 1, TimeUnit.MILLISECONDS);
+        var transfer = new Transfer(1, 2, new BigDecimal("0.99"));
+        transfer.setId(0);
+        transfer.setTimestamp(1_000L);
+
+        // when
+        var durable = new ArrayList<CompletableFuture<Void>>();
+        durable.add(log.append(LogRecords.account(new Account(3, new BigDecimal("0.0"), 0))));
+        durable.add(log.append(LogRecords.transfer(transfer,
+                new Account(1, new BigDecimal("0.02"), 4), new Account(2, new BigDecimal("3.00"), 7))));
+        durable.forEach(CompletableFuture::join);
+        log.close();
+
+        // then
+        var replayed = replay(file);
+        assertEquals(List.of(
+                "Account{id=3, balance=0.0, version=0}",
+                "Transfer{benefactor=1, beneficiary=2, amount=0.99}",
+                "Account{id=1, balance=0.02, version=4}",
+                "Account{id=2, balance=3.00, version=7}"), replayed);
+    }
+
+    @Test
+    void append__givenBalancesWhoseUnscaledValueOutgrowsAByteLength__thenReplaysThemAndTheEntriesAfter(
+            @TempDir Path dir) throws IOException {
+        // given - unscaled values of 255 and 256 bytes, and one of about 700 digits
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 16, 1, TimeUnit.MILLISECONDS);
+        var accounts = List.of(
+                new Account(1, new BigDecimal(BigInteger.ONE.shiftLeft(8 * 254), 2), 1),
+                new Account(2, new BigDecimal(BigInteger.ONE.shiftLeft(8 * 255).negate(), 2), 1),
+                new Account(3, new BigDecimal("9".repeat(700) + ".99"), 1),
+                new Account(4, new BigDecimal("1.00"), 1));
+
+        // when
+        for (var account : accounts)
+            log.append(LogRecords.account(account)).join();
+        log.close();
+
+        // then
+        var expected = new ArrayList<String>();
+        accounts.forEach(account -> expected.add(account.toString()));
+        assertEquals(expected, replay(file));
+    }
+
+    @Test
+    void open__whenLastFrameIsTorn__thenCutsItOffAndKeepsAppending(@TempDir Path dir) throws IOException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        log.append(LogRecords.account(new Account(1, new BigDecimal("1.00"), 1))).join();
+        log.close();
+        var validSize = Files.size(file);
+        try (var channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0, 0, 0, 50, 1, 2, 3}));
+        }
+
+        // when
+        var reopened = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        var sizeAfterOpen = Files.size(file);
+        reopened.append(LogRecords.account(new Account(1, new BigDecimal("2.00"), 2))).join();
+        reopened.close();
+
+        // then
+        assertEquals(validSize, sizeAfterOpen);
+        assertEquals(List.of(
+                "Account{id=1, balance=1.00, version=1}",
+                "Account{id=1, balance=2.00, version=2}"), replay(file));
+    }
+
+    @Test
+    void open__whenSegmentWasWrittenBeforeTheFormatWasVersioned__thenRefusesIt(@TempDir Path dir) throws IOException {
+        // given - a frame right at the start of the file, as the log used to write it
+        var file = dir.resolve("wal.log");
+        var payload = LogRecords.account(new Account(1, new BigDecimal("1.00"), 1));
+        var crc = new CRC32();
+        crc.update(payload);
+        Files.write(file, ByteBuffer.allocate(8 + payload.length)
+                .putInt(payload.length).putInt((int) crc.getValue()).put(payload).array());
+
+        // when / then
+        assertThrows(IOException.class, () -> new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS));
+        assertEquals(8 + payload.length, Files.size(file));
+    }
+
+    @Test
+    void append__whenCalledConcurrently__thenEveryCallerIsAcknowledged(@TempDir Path dir)
+            throws IOException, InterruptedException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 64, 2, TimeUnit.MILLISECONDS);
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 4;
+        var threads = new ArrayList<Thread>();
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++) {
+            var id = i;
+            var thread = new Thread(() -> {
+                for (int version = 1; version <= 50; version++)
+                    log.append(LogRecords.account(new Account(id, BigDecimal.ONE, version))).join();
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        for (var thread : threads)
+            thread.join();
+        log.close();
+
+        // then
+        assertEquals(degreeOfParallelism * 50, replay(file).size());
+    }
+
+    @Test
+    void append__whenFlusherIsInterrupted__thenPendingAndLaterAppendsFail(@TempDir Path dir) throws IOException {
+        // given
+        var log = new WriteAheadLog(dir.resolve("wal.log"), 16, 1, TimeUnit.MINUTES);
+        var pending = log.append(LogRecords.account(new Account(1, BigDecimal.ONE, 1)));
+
+        // when
+        Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals("wal-flusher"))
+                .forEach(Thread::interrupt);
+
+        // then
+        assertThrows(CompletionException.class, pending::join);
+        assertThrows(CompletionException.class, () -> log.append(new byte[1]).join());
+        assertThrows(CompletionException.class, () -> log.roll().join());
+        log.close();
+    }
+
+    @Test
+    void createTransfer__whenServicesAreRebuiltFromTheLog__thenBalancesAndTransfersAreRecovered(@TempDir Path dir)
+            throws IOException, InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // given
+        var file = dir.resolve("wal.log");
+        var log = new WriteAheadLog(file, 8, 1, TimeUnit.MILLISECONDS);
+        var accountService = new AccountService(new AccountRepository(), log);
+        var transferService = new TransferService(accountService, new TransferRepository());
+        var createdAccountId = accountService.createAccount();
+        accountService.updateAccount(new Account(createdAccountId, new BigDecimal("10.00")));
+
+        // when
+        transferService.createTransfer(createdAccountId, 1, new BigDecimal("2.50"));
+        transferService.createTransfer(2, createdAccountId, new BigDecimal("1.01"));
+        log.close();
+
+        var recoveredAccounts = new AccountRepository();
+        var recoveredTransfers = new TransferRepository();
+        new WriteAheadLog(file, 8, 1, TimeUnit.MILLISECONDS).replay(new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { recoveredAccounts.restore(account); }
+            @Override
+            public void onTransfer(Transfer transfer) { recoveredTransfers.restore(transfer); }
+        });
+
+        // then
+        assertEquals(new BigDecimal("8.51"), recoveredAccounts.getById(createdAccountId).getBalance());
+        assertEquals(new BigDecimal("3.51"), recoveredAccounts.getById(1).getBalance());
+        assertEquals(new BigDecimal("1.00"), recoveredAccounts.getById(2).getBalance());
+        assertEquals(2, recoveredTransfers.getAll().size());
+        assertTrue(recoveredAccounts.getById(createdAccountId).getVersion() >= 3);
+    }
+
+    private static List<String> replay(Path file) throws IOException {
+        var replayed = new ArrayList<String>();
+        var log = new WriteAheadLog(file, 1, 0, TimeUnit.MILLISECONDS);
+        log.replay(new LogRecords.Handler() {
+            @Override
+            public void onAccount(Account account) { replayed.add(account.toString()); }
+            @Override
+            public void onTransfer(Transfer transfer) { replayed.add(transfer.toString()); }
+        });
+        log.close();
+        return replayed;
+    }
+}
@@ -1,6 +1,7 @@
 package com.revolut.moneytransferapp.service;
 
 import com.revolut.moneytransferapp.model.Account;
+import com.revolut.moneytransferapp.model.Transfer;
 import com.revolut.moneytransferapp.repository.AccountRepository;
 import com.revolut.moneytransferapp.repository.TransferRepository;
 import com.revolut.moneytransferapp.repository.repositoryexceptions.OptimisticLockException;
@@ -11,9 +12,16 @@ import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TransferServiceTest {
 
@@ -104,4 +112,292 @@ public class TransferServiceTest {
         assertThrows(AccountNotFoundException.class,
                 () -> transferService.createTransfer(benefactorId, beneficiaryId, amountToTransfer));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void createTransfer__givenConcurrentTransfersInOppositeDirections__completesAndKeepsTotalBalance()
+            throws InterruptedException, ExecutionException, AccountNotFoundException {
+        // given
+        var accId1 = 1; var accId2 = 2; var accId3 = 3;
+        var initialBalance = new BigDecimal("1000");
+        var accounts =  new ArrayList<Account>(){{
+            add(new Account(accId1, initialBalance));
+            add(new Account(accId2, initialBalance));
+            add(new Account(accId3, initialBalance));
+        }};
+        accountRepository.setAccounts(accounts);
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+        var failureCounter = new AtomicInteger(0);
+
+        // when
+        for (int i = 0; i < degreeOfParallelism * 10; i++) {
+            var from = i % 3 + 1; var to = (i + 1) % 3 + 1;
+            responses.add(executor.submit(() -> {
+                try {
+                    transferService.createTransfer(from, to, BigDecimal.ONE);
+                    transferService.createTransfer(to, from, BigDecimal.ONE);
+                } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException e) {
+                    failureCounter.incrementAndGet();
+                }
+            }));
+        }
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+
+        // then
+        var totalBalance = accountService.getAccountById(accId1).getBalance()
+                .add(accountService.getAccountById(accId2).getBalance())
+                .add(accountService.getAccountById(accId3).getBalance());
+        assertEquals(0, failureCounter.get());
+        assertEquals(initialBalance.multiply(new BigDecimal("3")), totalBalance);
+        assertEquals(responses.size() * 2, transferService.getTransfers().size());
+    }
+
+    @Test
+    public void createTransfers__givenBatchWithInvalidTransfers__appliesValidOnesAndReportsEachOutcome()
+            throws AccountNotFoundException {
+        // given
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            add(new Account(1, new BigDecimal("1.00")));
+            add(new Account(2, new BigDecimal("2.00")));
+        }});
+        var batch = List.of(
+                new Transfer(1, 2, new BigDecimal("0.40")),
+                new Transfer(1, 2, new BigDecimal("5.00")),
+                new Transfer(1, 7, new BigDecimal("0.10")),
+                new Transfer(2, 1, new BigDecimal("1.00")));
+
+        // when
+        var results = transferService.createTransfers(batch);
+
+        // then
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).isSuccessful());
+        assertEquals(0, results.get(0).getTransfer().getId());
+        assertTrue(results.get(1).getFailure() instanceof InvalidTransferException);
+        assertTrue(results.get(2).getFailure() instanceof AccountNotFoundException);
+        assertFalse(results.get(2).isSuccessful());
+        assertEquals(1, results.get(3).getTransfer().getId());
+        assertEquals(new BigDecimal("1.60"), accountService.getAccountById(1).getBalance());
+        assertEquals(new BigDecimal("1.40"), accountService.getAccountById(2).getBalance());
+        assertEquals(2, transferService.getTransfers().size());
+    }
+
+    @Test
+    public void createTransfer__givenRingBufferExecutionAndConcurrentTransfersOnHotAccounts__appliesAllOfThem()
+            throws InterruptedException, ExecutionException, AccountNotFoundException {
+        // given
+        var initialBalance = new BigDecimal("1000");
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            add(new Account(1, initialBalance));
+            add(new Account(2, initialBalance));
+        }});
+        var ringBufferService = new TransferService(accountService, transferRepository,
+                TransferService.ExecutionMode.RING_BUFFER);
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+        var failureCounter = new AtomicInteger(0);
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++) {
+            var from = i % 2 + 1; var to = 2 - i % 2;
+            responses.add(executor.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    try {
+                        ringBufferService.createTransfer(from, to, BigDecimal.ONE);
+                    } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException e) {
+                        failureCounter.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+        ringBufferService.shutdown();
+
+        // then
+        var totalBalance = accountService.getAccountById(1).getBalance()
+                .add(accountService.getAccountById(2).getBalance());
+        assertEquals(0, failureCounter.get());
+        assertEquals(initialBalance.multiply(new BigDecimal("2")), totalBalance);
+        assertEquals(degreeOfParallelism * 100, transferRepository.getAll().size());
+    }
+
+    @Test
+    public void createTransfer__givenRingBufferExecutionAndInsufficientAmount__throwsException(){
+        // given
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            add(new Account(1, new BigDecimal("1")));
+            add(new Account(2, new BigDecimal("2")));
+        }});
+        var ringBufferService = new TransferService(accountService, transferRepository,
+                TransferService.ExecutionMode.RING_BUFFER);
+
+        // when / then
+        assertThrows(InvalidTransferException.class,
+                () -> ringBufferService.createTransfer(1, 2, new BigDecimal("1.01")));
+        assertThrows(AccountNotFoundException.class,
+                () -> ringBufferService.createTransfer(1, 3, new BigDecimal("0.01")));
+        ringBufferService.shutdown();
+    }
+
+    @Test
+    public void createTransfer__givenShardedExecutionAndConcurrentTransfersWithinAndAcrossShards__keepsTotalBalance()
+            throws InterruptedException, ExecutionException, AccountNotFoundException {
+        // given
+        var initialBalance = new BigDecimal("1000");
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            for (int id = 0; id < 4; id++)
+                add(new Account(id, initialBalance));
+        }});
+        var shardedService = new TransferService(accountService, transferRepository,
+                TransferService.ExecutionMode.SHARDED, 2);
+        var degreeOfParallelism = Runtime.getRuntime().availableProcessors() * 2 + 1;
+        var executor = Executors.newFixedThreadPool(degreeOfParallelism);
+        var responses = new ArrayList<Future<?>>();
+        var failureCounter = new AtomicInteger(0);
+
+        // when
+        for (int i = 0; i < degreeOfParallelism; i++) {
+            var from = i % 4;
+            responses.add(executor.submit(() -> {
+                for (int j = 0; j < 100; j++) {
+                    try {
+                        // offsets 1 and 3 cross to the other shard, offset 2 stays within the benefactor's one
+                        shardedService.createTransfer(from, (from + 1 + j % 3) % 4, BigDecimal.ONE);
+                    } catch (InvalidTransferException | AccountNotFoundException | OptimisticLockException e) {
+                        failureCounter.incrementAndGet();
+                    }
+                }
+            }));
+        }
+        executor.shutdown();
+        for (var response : responses)
+            response.get();
+        shardedService.shutdown();
+
+        // then
+        var totalBalance = BigDecimal.ZERO;
+        for (int id = 0; id < 4; id++)
+            totalBalance = totalBalance.add(accountService.getAccountById(id).getBalance());
+        assertEquals(0, failureCounter.get());
+        assertEquals(initialBalance.multiply(new BigDecimal("4")), totalBalance);
+        assertEquals(degreeOfParallelism * 100, transferRepository.getAll().size());
+    }
+
+    @Test
+    public void createTransfer__givenShardedExecutionAndInvalidTransferAcrossShards__changesNothing()
+            throws AccountNotFoundException {
+        // given
+        accountRepository.setAccounts(new ArrayList<Account>(){{
+            add(new Account(1, new BigDecimal("1")));
+            add(new Account(2, new BigDecimal("2")));
+        }});
+        var shardedService = new TransferService(accountService, transferRepository,
+                TransferService.ExecutionMode.SHARDED, 2);
+
+        // when / then
+        assertThrows(InvalidTransferException.class,
+                () -> shardedService.createTransfer(1, 2, new BigDecimal("1.01")));
+        assertThrows(AccountNotFoundException.class,
+                () -> shardedService.createTransfer(1, 4, new BigDecimal("0.01")));
+        shardedService.shutdown();
+        assertEquals(new BigDecimal("1"), accountService.getAccountById(1).getBalance());
+        assertEquals(new BigDecimal("2"), accountService.getAccountById(2).getBalance());
+        assertEquals(0, transferRepository.getAll().size());
+    }
+
+    @Test
+    public void createTransfer__givenConflictingCommits__retriesUntilItCommits()
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // given
+        var conflicting = new ConflictingAccountRepository(2);
+        conflicting.setAccounts(new ArrayList<>(){{
+            add(new Account(1, BigDecimal.TEN));
+            add(new Account(2, BigDecimal.ZERO));
+        }});
+        var service = new TransferService(new AccountService(conflicting), new TransferRepository());
+
+        // when
+        service.createTransfer(1, 2, BigDecimal.ONE);
+
+        // then
+        assertEquals(3, conflicting.attempts.get());
+        assertEquals(new BigDecimal("9"), conflicting.getById(1).getBalance());
+        assertEquals(BigDecimal.ONE, conflicting.getById(2).getBalance());
+    }
+
+    @Test
+    public void createTransfer__givenConflictOnEveryAttempt__throwsAfterMaxAttempts() {
+        // given
+        var conflicting = new ConflictingAccountRepository(Integer.MAX_VALUE);
+        conflicting.setAccounts(new ArrayList<>(){{
+            add(new Account(1, BigDecimal.TEN));
+            add(new Account(2, BigDecimal.ZERO));
+        }});
+        var service = new TransferService(new AccountService(conflicting), new TransferRepository());
+
+        // when / then
+        assertThrows(OptimisticLockException.class, () -> service.createTransfer(1, 2, BigDecimal.ONE));
+        var results = service.createTransfers(List.of(new Transfer(1, 2, BigDecimal.ONE)));
+        assertTrue(results.get(0).getFailure() instanceof OptimisticLockException);
+        assertEquals(2 * TransferService.DEFAULT_MAX_ATTEMPTS, conflicting.attempts.get());
+        assertEquals(BigDecimal.TEN, conflicting.getById(1).getBalance());
+    }
+
+    @Test
+    public void createTransfer__givenShardedExecutionAndCreditConflictingRepeatedly__creditsItLater()
+            throws InvalidTransferException, AccountNotFoundException, OptimisticLockException {
+        // given
+        var conflicting = new ConflictingAccountRepository(0, 2 * TransferService.DEFAULT_MAX_ATTEMPTS + 1);
+        conflicting.setAccounts(new ArrayList<>(){{
+            add(new Account(1, BigDecimal.TEN));
+            add(new Account(2, BigDecimal.ZERO));
+        }});
+        var shardedService = new TransferService(new AccountService(conflicting), new TransferRepository(),
+                TransferService.ExecutionMode.SHARDED, 2);
+
+        // when
+        shardedService.createTransfer(1, 2, BigDecimal.ONE);
+        shardedService.shutdown();
+
+        // then
+        assertEquals(2 * TransferService.DEFAULT_MAX_ATTEMPTS + 2, conflicting.creditAttempts.get());
+        assertEquals(new BigDecimal("9"), conflicting.getById(1).getBalance());
+        assertEquals(BigDecimal.ONE, conflicting.getById(2).getBalance());
+    }
+
+    // reports a conflict for the first transfers (or credits), as if another writer got in between every time
+    private static class ConflictingAccountRepository extends AccountRepository {
+        final AtomicInteger attempts = new AtomicInteger();
+        final AtomicInteger creditAttempts = new AtomicInteger();
+        private final int conflicts;
+        private final int creditConflicts;
+
+        ConflictingAccountRepository(int conflicts) {
+            this(conflicts, 0);
+        }
+
+        ConflictingAccountRepository(int conflicts, int creditConflicts) {
+            this.conflicts = conflicts;
+            this.creditConflicts = creditConflicts;
+        }
+
+        @Override
+        public void credit(int accountId, BigDecimal amount) throws OptimisticLockException, AccountNotFoundException {
+            if (creditAttempts.incrementAndGet() <= creditConflicts) throw new OptimisticLockException();
+            super.credit(accountId, amount);
+        }
+
+        @Override
+        public boolean transfer(int benefactorId, int beneficiaryId, BigDecimal amount)
+                throws OptimisticLockException, AccountNotFoundException {
+            if (attempts.incrementAndGet() <= conflicts) throw new OptimisticLockException();
+            return super.transfer(benefactorId, beneficiaryId, amount);
+        }
+    }
+}